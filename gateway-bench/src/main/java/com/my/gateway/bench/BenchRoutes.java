@@ -0,0 +1,37 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.context.GatewayRoute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 生成基准测试用的路由配置：/svc{i}/api/v{i % 3}，每条一个 upstream
+ */
+final class BenchRoutes {
+
+    private BenchRoutes() {}
+
+    static String path(int i) {
+        return "/svc" + i + "/api/v" + (i % 3);
+    }
+
+    static GatewayRoute route(int i, String upstream) {
+        return GatewayRoute.builder()
+                .id("r" + i)
+                .path(path(i))
+                .backendUrl(upstream)
+                .build();
+    }
+
+    static GatewayConfig config(int n) {
+        List<GatewayRoute> routes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            routes.add(route(i, "http://127.0.0.1:" + (9000 + i % 100)));
+        }
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setRoutes(routes);
+        return cfg;
+    }
+}
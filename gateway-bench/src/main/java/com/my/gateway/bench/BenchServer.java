@@ -0,0 +1,76 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.config.ServerConfig;
+import com.my.gateway.netty.GatewayChannelInitializer;
+import com.my.gateway.netty.NettyTransport;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的网关入站端：和 NettyHttpServer 一样的 bootstrap / pipeline，绑定在 127.0.0.1 的随机端口
+ *
+ * 不加载配置文件，请求走 404 兜底链（没有路由），测的是传输层 + HTTP 编解码 + 过滤器链本身的开销。
+ */
+final class BenchServer implements AutoCloseable {
+
+    private final NettyTransport transport;
+    private final EventLoopGroup boss;
+    private final EventLoopGroup workers;
+    private final List<Channel> listeners = new ArrayList<>();
+    private final int port;
+
+    BenchServer(String transportName, int workerThreads) throws Exception {
+        NettyTransport t = NettyTransport.select(transportName);
+        if (!t.name().equalsIgnoreCase(transportName)) {
+            throw new IllegalStateException(transportName + " not available here (would fall back to " + t + ")");
+        }
+        this.transport = t;
+        ServerConfig sc = new ServerConfig();
+        ChannelOption<Boolean> reusePort = sc.isReusePort() ? t.reusePortOption() : null;
+        this.workers = t.newEventLoopGroup(workerThreads);
+        this.boss = reusePort != null ? workers : t.newEventLoopGroup(1);
+        ServerBootstrap b = new ServerBootstrap()
+                .group(boss, workers)
+                .channel(t.serverChannelClass())
+                .option(ChannelOption.SO_BACKLOG, sc.getBacklog())
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new GatewayChannelInitializer(sc, 65536));
+        if (reusePort != null) {
+            b.option(reusePort, true);
+        }
+        // reuseport 模式下每个 worker eventLoop 各绑一个监听 socket，和 NettyHttpServer 一致
+        int acceptors = reusePort != null ? workerThreads : 1;
+        Channel first = b.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        listeners.add(first);
+        this.port = ((InetSocketAddress) first.localAddress()).getPort();
+        for (int i = 1; i < acceptors; i++) {
+            listeners.add(b.bind(new InetSocketAddress("127.0.0.1", port)).sync().channel());
+        }
+    }
+
+    int port() {
+        return port;
+    }
+
+    NettyTransport transport() {
+        return transport;
+    }
+
+    @Override
+    public void close() {
+        for (Channel ch : listeners) {
+            ch.close().syncUninterruptibly();
+        }
+        if (boss != workers) {
+            boss.shutdownGracefully().syncUninterruptibly();
+        }
+        workers.shutdownGracefully().syncUninterruptibly();
+    }
+}
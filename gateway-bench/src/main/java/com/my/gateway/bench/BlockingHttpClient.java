@@ -0,0 +1,90 @@
+package com.my.gateway.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 最简单的阻塞 HTTP/1.1 客户端：一个 socket，发一个请求读完一个响应
+ *
+ * 故意不用 Netty，客户端一侧和被测的服务端传输实现无关；只认 Content-Length 响应。
+ */
+final class BlockingHttpClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final InputStream in;
+    private final byte[] buf = new byte[16 * 1024];
+
+    BlockingHttpClient(int port) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        out = socket.getOutputStream();
+        in = socket.getInputStream();
+    }
+
+    static byte[] get(String path, boolean keepAlive) {
+        return ("GET " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+                + (keepAlive ? "" : "Connection: close\r\n") + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 发请求并读完响应，返回状态码
+     */
+    int exchange(byte[] request) throws IOException {
+        out.write(request);
+        out.flush();
+        int len = 0;
+        int headerEnd;
+        while ((headerEnd = indexOfHeaderEnd(len)) < 0) {
+            len = fill(len);
+        }
+        String head = new String(buf, 0, headerEnd, StandardCharsets.US_ASCII);
+        int status = Integer.parseInt(head.substring(9, 12));
+        int body = contentLength(head);
+        int need = headerEnd + 4 + body;
+        if (need > buf.length) {
+            throw new IOException("response too large for bench client: " + need);
+        }
+        while (len < need) {
+            len = fill(len);
+        }
+        return status;
+    }
+
+    private int fill(int len) throws IOException {
+        int n = in.read(buf, len, buf.length - len);
+        if (n < 0) {
+            throw new IOException("connection closed by server");
+        }
+        return len + n;
+    }
+
+    private int indexOfHeaderEnd(int len) {
+        for (int i = 0; i + 3 < len; i++) {
+            if (buf[i] == '\r' && buf[i + 1] == '\n' && buf[i + 2] == '\r' && buf[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int contentLength(String head) {
+        for (String line : head.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("content-length")) {
+                return Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
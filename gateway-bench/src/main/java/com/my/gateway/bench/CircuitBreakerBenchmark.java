@@ -0,0 +1,73 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.config.HealthConfig;
+import com.my.gateway.health.UpstreamCircuitBreaker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 熔断器请求路径：tryAcquire + 上报结果，2% 失败（不会触发熔断），对比三种判定方式（CallWindow）
+ *
+ * <pre>
+ * java -jar gateway-bench/target/benchmarks.jar CircuitBreakerBenchmark -prof gc
+ * </pre>
+ *
+ * - report：单线程
+ * - reportContended：4 个线程打同一个熔断器（同一个 upstream），看 CAS 竞争
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CircuitBreakerBenchmark {
+
+    @Param({"consecutive", "count", "time"})
+    public String windowType;
+
+    private UpstreamCircuitBreaker circuit;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        int calls;
+
+        // 每 50 次失败一次
+        boolean nextFails() {
+            return ++calls % 50 == 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        HealthConfig c = new HealthConfig();
+        c.setSlidingWindowType(windowType);
+        c.setSlidingWindowSize("time".equals(windowType) ? 10 : 100);
+        c.setFailureThreshold(Integer.MAX_VALUE);
+        circuit = new UpstreamCircuitBreaker(c);
+    }
+
+    private boolean call(Caller caller) {
+        if (!circuit.tryAcquire()) {
+            return false;
+        }
+        if (caller.nextFails()) {
+            circuit.onFailure(1_000_000);
+        } else {
+            circuit.onSuccess(1_000_000);
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean report(Caller caller) {
+        return call(caller);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean reportContended(Caller caller) {
+        return call(caller);
+    }
+}
@@ -0,0 +1,106 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRequest;
+import com.my.gateway.filter.DefaultGatewayFilterChain;
+import com.my.gateway.filter.GatewayFilter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过滤器链每个请求的分配：要配合 -prof gc 看 gc.alloc.rate.norm（B/op）
+ *
+ * <pre>
+ * java -jar gateway-bench/target/benchmarks.jar FilterChainBenchmark -prof gc
+ * </pre>
+ *
+ * contextOnly 只创建 / 释放 GatewayContext（每个请求本来就有的对象），其余两项减去它就是链本身的分配：
+ * - syncChain：过滤器都返回 null（同步完成）
+ * - completedStageChain：过滤器都返回已经完成的 CompletableFuture（走 trampoline 的快速路径，不挂回调）
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilterChainBenchmark {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    @Param({"8"})
+    public int filters;
+
+    private ChannelHandlerContext nettyCtx;
+    private GatewayRequest request;
+    private DefaultGatewayFilterChain syncChain;
+    private DefaultGatewayFilterChain stageChain;
+
+    private static final class SyncFilter implements GatewayFilter {
+        @Override
+        public CompletionStage<?> onRequest(GatewayContext ctx) {
+            return null;
+        }
+
+        @Override
+        public void onComplete(GatewayContext ctx) {
+        }
+    }
+
+    private static final class CompletedStageFilter implements GatewayFilter {
+        @Override
+        public CompletionStage<?> onRequest(GatewayContext ctx) {
+            return DONE;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        nettyCtx = ch.pipeline().firstContext();
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/bench/items/1");
+        // 流式模式的请求对象：没有 FullHttpRequest，release 时不涉及引用计数
+        request = new GatewayRequest("127.0.0.1", head, null);
+        GatewayFilter[] sync = new GatewayFilter[filters];
+        GatewayFilter[] stage = new GatewayFilter[filters];
+        for (int i = 0; i < filters; i++) {
+            sync[i] = new SyncFilter();
+            stage[i] = new CompletedStageFilter();
+        }
+        syncChain = new DefaultGatewayFilterChain(sync, new Object[filters]);
+        stageChain = new DefaultGatewayFilterChain(stage, new Object[filters]);
+    }
+
+    @Benchmark
+    public GatewayContext contextOnly() {
+        GatewayContext ctx = new GatewayContext(nettyCtx, request);
+        ctx.release();
+        return ctx;
+    }
+
+    @Benchmark
+    public GatewayContext syncChain() {
+        GatewayContext ctx = new GatewayContext(nettyCtx, request);
+        syncChain.execute(ctx);
+        ctx.release();
+        return ctx;
+    }
+
+    @Benchmark
+    public GatewayContext completedStageChain() {
+        GatewayContext ctx = new GatewayContext(nettyCtx, request);
+        stageChain.execute(ctx);
+        ctx.release();
+        return ctx;
+    }
+}
@@ -0,0 +1,81 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.config.RateLimitConfig;
+import com.my.gateway.ratelimit.LocalRateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单机限流取令牌（LocalRateLimiter.tryAcquire，含 System.nanoTime()），随机访问 keys 个不同的 key
+ *
+ * <pre>
+ * java -jar gateway-bench/target/benchmarks.jar RateLimiterBenchmark -prof gc
+ * </pre>
+ *
+ * 表按 maxKeys = 100 万创建：
+ * - keys = 1000：热点 key，表里用到的部分都在缓存里
+ * - keys = 100 万：表的大小正好，主要是随机访存的 cache miss
+ * - keys = 400 万：key 数是表的 4 倍，大部分请求要挤掉别的桶
+ * perRoute 是 key: route（整条路由一个桶，不建表）作为对照。
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateLimiterBenchmark {
+
+    @Param({"1000", "1000000", "4000000"})
+    public int keys;
+
+    private String[] names;
+    private LocalRateLimiter perKey;
+    private LocalRateLimiter perRoute;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        long seed = System.nanoTime() | 1;
+
+        int next(int bound) {
+            // xorshift64，不分配、不竞争
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            return (int) ((seed >>> 1) % bound);
+        }
+    }
+
+    private static RateLimitConfig config(String key) {
+        RateLimitConfig c = new RateLimitConfig();
+        c.setRate(100);
+        c.setKey(key);
+        c.setMaxKeys(1_000_000);
+        return c;
+    }
+
+    @Setup
+    public void setup() {
+        names = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            names[i] = "10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF) + "#" + (i >>> 24);
+        }
+        perKey = new LocalRateLimiter(config("ip"));
+        perRoute = new LocalRateLimiter(config("route"));
+        // 先把表填满，测的是稳态
+        for (String n : names) {
+            perKey.tryAcquire(n);
+        }
+    }
+
+    @Benchmark
+    public boolean perKey(Cursor c) {
+        return perKey.tryAcquire(names[c.next(keys)]);
+    }
+
+    @Benchmark
+    public boolean perRoute() {
+        return perRoute.tryAcquire(null);
+    }
+}
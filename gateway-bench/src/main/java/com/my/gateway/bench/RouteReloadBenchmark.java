@@ -0,0 +1,78 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteTable;
+import com.my.gateway.context.GatewayRoute;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由热更新耗时（RouteManager.refresh：diff + 编译 + 发布 + 注销）
+ *
+ * - fullBuild：从空路由表发布全部路由（启动 / 全量替换）
+ * - oneChanged：只改一条路由，其余原样复用
+ * - unchanged：配置内容没变，diff 后保留当前快照
+ *
+ * 每次调用前在 Setup(Level.Invocation) 里把路由表准备成对应的起始状态，不计入耗时。
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RouteReloadBenchmark {
+
+    @Param({"50000"})
+    public int routes;
+
+    private GatewayConfig base;
+    private GatewayConfig changed;
+    private GatewayConfig copy;
+    private final GatewayConfig empty = new GatewayConfig();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        base = BenchRoutes.config(routes);
+        copy = BenchRoutes.config(routes);
+        changed = BenchRoutes.config(routes);
+        List<GatewayRoute> list = new ArrayList<>(changed.getRoutes());
+        list.set(routes / 2, BenchRoutes.route(routes / 2, "http://127.0.0.1:8999"));
+        changed.setRoutes(list);
+    }
+
+    @State(Scope.Thread)
+    public static class FromEmpty {
+        @Setup(Level.Invocation)
+        public void reset(RouteReloadBenchmark b) {
+            RouteManager.getInstance().refresh(b.empty);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FromBase {
+        @Setup(Level.Invocation)
+        public void reset(RouteReloadBenchmark b) {
+            RouteManager.getInstance().refresh(b.base);
+        }
+    }
+
+    @Benchmark
+    public RouteTable fullBuild(FromEmpty s) {
+        return RouteManager.getInstance().refresh(base);
+    }
+
+    @Benchmark
+    public RouteTable oneChanged(FromBase s) {
+        return RouteManager.getInstance().refresh(changed);
+    }
+
+    @Benchmark
+    public RouteTable unchanged(FromBase s) {
+        return RouteManager.getInstance().refresh(copy);
+    }
+}
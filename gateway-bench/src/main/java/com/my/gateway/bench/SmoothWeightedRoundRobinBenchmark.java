@@ -0,0 +1,138 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRequest;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.context.UpstreamInstance;
+import com.my.gateway.loadbalance.LoadBalancer;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 平滑加权轮询在多线程下的选择吞吐：预计算序列 + 原子游标 vs 原来 synchronized 逐次计算 currentWeight
+ *
+ * <pre>
+ * java -jar gateway-bench/target/benchmarks.jar SmoothWeightedRoundRobinBenchmark
+ * </pre>
+ *
+ * 8 个 upstream，权重 5/1/1/3/2/4/1/1，所有线程打同一条路由的同一个负载均衡器；
+ * 候选列表用路由快照里的可用集合（和请求路径上是同一个 List 对象，不触发重算）。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SmoothWeightedRoundRobinBenchmark {
+
+    private static final int[] WEIGHTS = {5, 1, 1, 3, 2, 4, 1, 1};
+
+    private LoadBalancer precomputed;
+    private SynchronizedSwrr synchronizedSwrr;
+    private List<RouteUpstream> candidates;
+
+    /**
+     * 原来的实现：每次选择在锁里对所有候选 current += weight，选最大的再减去总权重
+     */
+    static final class SynchronizedSwrr {
+        private final int[] current;
+
+        SynchronizedSwrr(int size) {
+            this.current = new int[size];
+        }
+
+        RouteUpstream choose(List<RouteUpstream> upstreams) {
+            int total = 0;
+            RouteUpstream best = null;
+            synchronized (current) {
+                for (int i = 0, n = upstreams.size(); i < n; i++) {
+                    RouteUpstream u = upstreams.get(i);
+                    int idx = u.getIndex();
+                    current[idx] += u.getWeight();
+                    total += u.getWeight();
+                    if (best == null || current[idx] > current[best.getIndex()]) {
+                        best = u;
+                    }
+                }
+                current[best.getIndex()] -= total;
+            }
+            return best;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+        GatewayContext ctx;
+
+        @Setup
+        public void setup() {
+            // 没有重试过的请求：choose 不看 tried 集合
+            ctx = new GatewayContext(null, new GatewayRequest("127.0.0.1",
+                    new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/swrr-bench"), null));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<UpstreamInstance> upstreams = new ArrayList<>();
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            upstreams.add(new UpstreamInstance("http://127.0.0.1:" + (20001 + i), WEIGHTS[i]));
+        }
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setRoutes(new ArrayList<>(List.of(GatewayRoute.builder()
+                .id("swrr-bench")
+                .path("/swrr-bench")
+                .lb("smooth_wrr")
+                .upstreams(upstreams)
+                .build())));
+        RouteRuntime runtime = RouteManager.getInstance().refresh(cfg).getRuntimes().get(0);
+        precomputed = runtime.getLoadBalancer();
+        candidates = runtime.getHealthy().list();
+        synchronizedSwrr = new SynchronizedSwrr(WEIGHTS.length);
+    }
+
+    @Benchmark
+    public RouteUpstream precomputed(Request r) {
+        return precomputed.choose(candidates, r.ctx);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public RouteUpstream precomputed16(Request r) {
+        return precomputed.choose(candidates, r.ctx);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public RouteUpstream precomputed32(Request r) {
+        return precomputed.choose(candidates, r.ctx);
+    }
+
+    @Benchmark
+    public RouteUpstream synchronizedSwrr() {
+        return synchronizedSwrr.choose(candidates);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public RouteUpstream synchronizedSwrr16() {
+        return synchronizedSwrr.choose(candidates);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public RouteUpstream synchronizedSwrr32() {
+        return synchronizedSwrr.choose(candidates);
+    }
+}
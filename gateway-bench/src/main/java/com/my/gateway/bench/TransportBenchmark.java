@@ -0,0 +1,79 @@
+package com.my.gateway.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站传输层对比：io_uring / epoll / nio
+ *
+ * - accept：每次新建连接、发一个 Connection: close 请求、读完响应后关闭，吞吐即 accept 速率（连接/秒）
+ * - keepAlive：每个线程一条长连接连续发请求，SampleTime 模式给出 p50 / p99 / p999
+ *
+ * 客户端是阻塞 socket，与被测传输实现无关；当前平台不支持的传输直接报错跳过（不会悄悄降级成别的实现）。
+ *
+ * <pre>
+ * java -jar gateway-bench/target/benchmarks.jar TransportBenchmark -p transport=epoll,nio
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+public class TransportBenchmark {
+
+    @Param({"io_uring", "epoll", "nio"})
+    public String transport;
+
+    @Param({"2"})
+    public int workers;
+
+    private BenchServer server;
+    private byte[] closeRequest;
+    private byte[] keepAliveRequest;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        server = new BenchServer(transport, workers);
+        closeRequest = BlockingHttpClient.get("/bench", false);
+        keepAliveRequest = BlockingHttpClient.get("/bench", true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        BlockingHttpClient client;
+
+        @Setup(Level.Iteration)
+        public void open(TransportBenchmark b) throws IOException {
+            client = new BlockingHttpClient(b.server.port());
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int accept() throws IOException {
+        try (BlockingHttpClient c = new BlockingHttpClient(server.port())) {
+            return c.exchange(closeRequest);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int keepAlive(Connection conn) throws IOException {
+        return conn.client.exchange(keepAliveRequest);
+    }
+}
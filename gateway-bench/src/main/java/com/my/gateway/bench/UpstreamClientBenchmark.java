@@ -0,0 +1,114 @@
+package com.my.gateway.bench;
+
+import com.my.gateway.netty.upstream.UpstreamAddress;
+import com.my.gateway.netty.upstream.UpstreamExchange;
+import com.my.gateway.netty.upstream.UpstreamHttpClient;
+import com.my.gateway.netty.upstream.UpstreamResponseListener;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.http.*;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.Dsl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * upstream 客户端前后对比：原来的 AsyncHttpClient（和当初 AsyncHttpHelper 相同的配置）vs 自研 UpstreamHttpClient
+ *
+ * 两边都用 2 个 NIO eventLoop、keep-alive 连接，请求同一个本地 upstream。
+ * AsyncHttpClient 按原来的用法把 body 转成 String；UpstreamHttpClient 直接拿 ByteBuf（转发时也是原样交接）。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UpstreamClientBenchmark {
+
+    @Param({"64", "16384"})
+    public int payload;
+
+    private BenchBackend backend;
+    private AsyncHttpClient ahc;
+    private EventLoopGroup loops;
+    private UpstreamAddress address;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backend = new BenchBackend(2, payload);
+        ahc = Dsl.asyncHttpClient(new DefaultAsyncHttpClientConfig.Builder()
+                .setEventLoopGroup(new NioEventLoopGroup(2))
+                .setConnectTimeout(2000)
+                .setRequestTimeout(3000)
+                .setMaxConnections(10000));
+        loops = new NioEventLoopGroup(2);
+        address = UpstreamAddress.of(backend.url());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        ahc.close();
+        loops.shutdownGracefully().syncUninterruptibly();
+        backend.close();
+    }
+
+    /**
+     * 每个压测线程固定用一个 eventLoop，相当于一条入站连接
+     */
+    @State(Scope.Thread)
+    public static class Caller implements UpstreamResponseListener {
+        EventLoop loop;
+        CompletableFuture<Integer> done;
+        int status;
+        int bytes;
+
+        @Setup(Level.Trial)
+        public void pick(UpstreamClientBenchmark b) {
+            loop = (EventLoop) b.loops.next();
+        }
+
+        @Override
+        public void onResponseHead(UpstreamExchange exchange, HttpResponse head) {
+            status = head.status().code();
+            bytes = 0;
+        }
+
+        @Override
+        public void onResponseContent(UpstreamExchange exchange, HttpContent content) {
+            bytes += content.content().readableBytes();
+            content.release();
+        }
+
+        @Override
+        public void onResponseEnd(UpstreamExchange exchange) {
+            done.complete(bytes);
+        }
+
+        @Override
+        public void onError(UpstreamExchange exchange, Throwable cause) {
+            done.completeExceptionally(cause);
+        }
+    }
+
+    @Benchmark
+    public int asyncHttpClient() throws Exception {
+        return ahc.prepareGet(backend.url() + "/bench").execute().get().getResponseBody().length();
+    }
+
+    @Benchmark
+    public int upstreamHttpClient(Caller c) throws Exception {
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/bench");
+        head.headers().set(HttpHeaderNames.HOST, address.getHostHeader());
+        c.done = new CompletableFuture<>();
+        UpstreamHttpClient.getInstance().execute(c.loop, address, head, null, null, c);
+        return c.done.get();
+    }
+}
@@ -3,7 +3,6 @@ package com.my.gateway;
 import com.my.gateway.bootstrap.RouteHotReloaderPoller;
 import com.my.gateway.config.ConfigLoader;
 import com.my.gateway.config.GatewayConfig;
-import com.my.gateway.config.RouteRegistry;
 import com.my.gateway.container.RouteManager;
 import com.my.gateway.netty.NettyHttpServer;
 import lombok.extern.slf4j.Slf4j;
@@ -25,7 +24,7 @@ public class Bootstrap {
 
         // 2) 启动时 reload 一次
         GatewayConfig cfg = ConfigLoader.getInstance().reload();
-        RouteManager.getInstance().refresh(cfg.getRoutes());
+        RouteManager.getInstance().refresh(cfg);
 
         // 3) 启动热更新线程（轮询版）
         if (configPath != null && !configPath.isBlank()) {
@@ -59,8 +58,7 @@ public class Bootstrap {
         var cfg = ConfigLoader.getInstance().reload();
 
         // 2) 初始化路由表快照
-        RouteManager.getInstance().refresh(cfg.getRoutes());
-        RouteRegistry.getInstance().setRoutes(cfg.getRoutes());
+        RouteManager.getInstance().refresh(cfg);
 
         // 3) 启动监听（只有外部路径才监听，classpath 文件不好监听）
         if (configPath != null && !configPath.isBlank()) {
@@ -2,8 +2,8 @@ package com.my.gateway.bootstrap;
 
 import com.my.gateway.config.ConfigLoader;
 import com.my.gateway.config.GatewayConfig;
-import com.my.gateway.config.RouteRegistry;
 import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteTable;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.file.*;
@@ -47,11 +47,10 @@ public class RouteHotReloader implements Runnable {
                     try {
                         // 文件变化后：
                         GatewayConfig newCfg = ConfigLoader.getInstance().reload();
-                        RouteRegistry.getInstance().setRoutes(newCfg.getRoutes());
-                        RouteManager.getInstance().refresh(newCfg.getRoutes());
-                        log.info("[RouteHotReload] reloaded routes, size={}, ids={}",
-                                RouteRegistry.getInstance().getRoutes().size(),
-                                RouteRegistry.getInstance().getRoutes().stream().map(r -> r.getId()).toList());
+                        RouteTable table = RouteManager.getInstance().refresh(newCfg);
+                        log.info("[RouteHotReload] reloaded routes, version={}, size={}, ids={}",
+                                table.getVersion(), table.getRoutes().size(),
+                                table.getRoutes().stream().map(r -> r.getId()).toList());
                     } catch (Exception e) {
                         log.error("[RouteHotReload] reload failed, keep old routes. err={}", e.toString());
                     }
@@ -3,6 +3,7 @@ package com.my.gateway.bootstrap;
 import com.my.gateway.config.ConfigLoader;
 import com.my.gateway.config.GatewayConfig;
 import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteTable;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
@@ -37,10 +38,10 @@ public class RouteHotReloaderPoller implements Runnable {
                         lastModified = lm;
 
                         GatewayConfig cfg = ConfigLoader.getInstance().reload();
-                        RouteManager.getInstance().refresh(cfg.getRoutes());
+                        RouteTable table = RouteManager.getInstance().refresh(cfg);
 
-                        log.info("[RouteHotReload] reloaded routes, size={}",
-                                cfg.getRoutes() == null ? 0 : cfg.getRoutes().size());
+                        log.info("[RouteHotReload] reloaded routes, version={}, size={}",
+                                table.getVersion(), table.getRoutes().size());
                     }
                 }
                 Thread.sleep(intervalMs);
@@ -0,0 +1,27 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+/**
+ * 主动健康检查配置：定时向 upstream 发 HTTP 探测请求，结果驱动同一个熔断器
+ *
+ * 开启后熔断恢复只看探测结果，OPEN 的 upstream 不再用真实请求做半开探测。
+ */
+@Data
+public class ActiveHealthConfig {
+
+    // 探测路径（拼在 upstream url 的基础路径后面），为空时关闭主动检查
+    private String path;
+
+    // 探测间隔（毫秒），实际间隔在 ±10% 内随机抖动
+    private long intervalMs = 5_000;
+
+    // 单次探测超时（毫秒）
+    private long timeoutMs = 1_000;
+
+    // 连续成功多少次 -> CLOSED
+    private int healthyThreshold = 2;
+
+    // 连续失败多少次 -> OPEN
+    private int unhealthyThreshold = 3;
+}
@@ -0,0 +1,41 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+/**
+ * 自适应并发限制配置：每个 upstream 的并发上限根据 RTT 相对 min-RTT 的变化自动增减
+ *
+ * 全局配置对所有路由生效，路由可以单独覆盖；不配置时不限制。
+ */
+@Data
+public class ConcurrencyLimitConfig {
+
+    // 路由覆盖全局配置时可以用 false 关掉
+    private boolean enabled = true;
+
+    // gradient（默认，按 min-RTT / RTT 的比例缩放）/ vegas（按估计的排队数加减）
+    private String algorithm = "gradient";
+
+    private int initialLimit = 20;
+
+    private int minLimit = 1;
+
+    private int maxLimit = 1000;
+
+    // 统计窗口：窗口结束且样本数够了才调整一次上限
+    private long windowMs = 250;
+
+    private int minSamples = 10;
+
+    // gradient：RTT 在 min-RTT 的这个倍数以内都不收缩
+    private double tolerance = 1.5;
+
+    // gradient：新上限的平滑系数（0, 1]
+    private double smoothing = 0.2;
+
+    // min-RTT 基线多久重新测一次（upstream 本身变快 / 变慢后基线跟着更新）
+    private long minRttResetMs = 30_000;
+
+    // 窗口内有失败（超时 / 连接错误）时上限乘以这个系数
+    private double backoffRatio = 0.9;
+}
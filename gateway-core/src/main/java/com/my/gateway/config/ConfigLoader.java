@@ -3,6 +3,7 @@ package com.my.gateway.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import lombok.extern.slf4j.Slf4j;
+import org.yaml.snakeyaml.LoaderOptions;
 
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -14,7 +15,12 @@ public class ConfigLoader {
 
     private static final ConfigLoader INSTANCE = new ConfigLoader();
 
-    private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+    // SnakeYAML 默认只接受 3M 字符以内的文档，几万条路由的配置会超限
+    private static final int MAX_CONFIG_CODE_POINTS = 256 * 1024 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper(YAMLFactory.builder()
+            .loaderOptions(loaderOptions())
+            .build());
 
     // 注意：这里有缓存
     private volatile GatewayConfig config;
@@ -28,6 +34,12 @@ public class ConfigLoader {
         return INSTANCE;
     }
 
+    private static LoaderOptions loaderOptions() {
+        LoaderOptions opts = new LoaderOptions();
+        opts.setCodePointLimit(MAX_CONFIG_CODE_POINTS);
+        return opts;
+    }
+
     public synchronized GatewayConfig loadConfig() {
         if (config != null) return config;
 
@@ -13,6 +13,18 @@ public class GatewayConfig {
     // 应用名称
     private String appName = "my-gateway";
 
+    // 网络层配置（传输实现 / socket 参数）
+    private ServerConfig server = new ServerConfig();
+
+    // upstream 客户端（超时 / 连接池）配置
+    private UpstreamClientConfig upstreamClient = new UpstreamClientConfig();
+
+    // 聚合模式下允许的最大请求体（字节），超出返回 413
+    private int maxContentLength = 65535;
+
+    // upstream 响应体不超过该值（且带 Content-Length）时整包写回，否则边收边转发
+    private int responseBufferSize = 64 * 1024;
+
     // 路由列表
     private List<GatewayRoute> routes;
 
@@ -21,4 +33,10 @@ public class GatewayConfig {
 
     // 重试配置
     private RetryConfig retry = new RetryConfig();
+
+    // 慢启动配置（默认关闭），路由可以单独覆盖
+    private SlowStartConfig slowStart = new SlowStartConfig();
+
+    // 每个 upstream 的自适应并发上限（默认不限制），路由可以单独覆盖
+    private ConcurrencyLimitConfig concurrencyLimit;
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+/**
+ * 一致性哈希配置（路由 lb 为 consistent_hash 时生效）
+ */
+@Data
+public class HashConfig {
+
+    // 哈希 key 来源：ip / header / cookie / query / path；取不到值时退回客户端 IP
+    private String on = "ip";
+
+    // header / cookie / query 参数名
+    private String name;
+
+    // 每个权重单位的虚拟节点数
+    private int virtualNodes = 160;
+
+    // 有界负载系数（例如 1.25）：每个节点的 in-flight 不超过平均值的该倍数，超过时顺着环找下一个；<= 1 关闭
+    private double boundedLoadFactor = 0;
+}
@@ -15,4 +15,28 @@ public class HealthConfig {
 
     // HALF_OPEN 连续成功多少次 -> CLOSED
     private int successThresholdToClose = 2;
+
+    // CLOSED 状态的熔断判定：consecutive（连续失败 failureThreshold 次）/ count（最近 N 次调用）/ time（最近 N 秒）
+    private String slidingWindowType = "consecutive";
+
+    // 滑动窗口大小：count 为调用次数，time 为秒数
+    private int slidingWindowSize = 100;
+
+    // 窗口内至少有这么多次调用才计算比例
+    private int minimumCalls = 20;
+
+    // 失败率（%）达到该值 -> OPEN
+    private double failureRateThreshold = 50;
+
+    // 慢调用率（%）达到该值 -> OPEN
+    private double slowCallRateThreshold = 100;
+
+    // 耗时（到收到响应头）超过该值算慢调用，<= 0 不统计慢调用
+    private long slowCallDurationMs = 0;
+
+    // 主动健康检查，为空或没配 path 时只做被动检查
+    private ActiveHealthConfig active;
+
+    // 离群摘除（同一路由的 upstream 互相比较），为空时关闭
+    private OutlierConfig outlier;
 }
@@ -0,0 +1,34 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+/**
+ * 离群摘除配置：周期性地把一条路由的 upstream 互相比较，摘除明显比同伴差的实例
+ *
+ * 三个判定条件各自独立，阈值 <= 0 时关闭对应条件。
+ */
+@Data
+public class OutlierConfig {
+
+    // 检测周期（毫秒），<= 0 关闭离群摘除
+    private long intervalMs = 10_000;
+
+    // 第 n 次摘除的时长 = baseEjectionTimeMs × 2^(n-1)，不超过 maxEjectionTimeMs；没被摘除的周期 n 减 1
+    private long baseEjectionTimeMs = 30_000;
+    private long maxEjectionTimeMs = 300_000;
+
+    // 同时被摘除（非 CLOSED）的 upstream 占比上限（%），至少允许摘一个，且永远保留至少一个可用
+    private double maxEjectionPercent = 10;
+
+    // 连续网关错误（502 / 503 / 504 / 连接失败）达到该次数 -> 摘除
+    private int consecutiveGatewayErrors = 5;
+
+    // 成功率：周期内请求数达到 requestVolume 的 upstream 不少于 minimumHosts 个时，
+    // 成功率低于 平均值 - stdevFactor × 标准差 -> 摘除
+    private int successRateMinimumHosts = 5;
+    private int successRateRequestVolume = 100;
+    private double successRateStdevFactor = 1.9;
+
+    // 延迟：周期内 p99 超过同伴 p99 中位数的 latencyFactor 倍 -> 摘除（参与比较的主机数 / 请求量要求同成功率）
+    private double latencyFactor = 3.0;
+}
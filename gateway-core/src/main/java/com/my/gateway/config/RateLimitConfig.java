@@ -0,0 +1,69 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+/**
+ * 路由级限流配置（路由 filters 里的 rateLimit）
+ *
+ * <pre>
+ * filters:
+ *   rateLimit:
+ *     rate: 100          # 每秒令牌数
+ *     burst: 200         # 桶容量（允许的突发），不配时等于 rate
+ *     key: ip            # ip（默认）/ route / header:X-Api-Key
+ *     maxKeys: 100000    # 最多同时保留多少个 key 的桶，超出后挤掉最闲的
+ *     mode: cluster      # local（默认，单节点各自限流）/ cluster（多个网关实例共享一个全局额度）
+ *     store: file:/dev/shm/gateway-ratelimit   # cluster 模式的计数存储：memory[:name] / file:路径
+ *     syncIntervalMs: 100                      # 每次从存储领取约这么长时间的额度
+ *     batch: 0           # 每次领取的令牌数，0 = rate × syncIntervalMs / 1000
+ * </pre>
+ */
+@Data
+public class RateLimitConfig {
+
+    private double rate;
+
+    private long burst;
+
+    private String key = "ip";
+
+    private int maxKeys = 100_000;
+
+    private String mode = "local";
+
+    private String store = "memory";
+
+    private long syncIntervalMs = 100;
+
+    private long batch;
+
+    public boolean isPerRoute() {
+        return "route".equalsIgnoreCase(key);
+    }
+
+    public boolean isCluster() {
+        return "cluster".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 实际生效的桶容量：没配 burst 时取 rate 向上取整，至少 1
+     */
+    public long effectiveBurst() {
+        return Math.max(1, burst > 0 ? burst : (long) Math.ceil(rate));
+    }
+
+    /**
+     * cluster 模式每次从存储领取的令牌数：没配时取一个同步间隔内按 rate 能发出的令牌，至少 1，不超过桶容量
+     */
+    public long effectiveBatch() {
+        long b = batch > 0 ? batch : (long) Math.ceil(rate * syncIntervalMs / 1000.0);
+        return Math.max(1, Math.min(b, effectiveBurst()));
+    }
+
+    /**
+     * key 为 header:Name 时的 header 名，否则 null
+     */
+    public String headerName() {
+        return key != null && key.regionMatches(true, 0, "header:", 0, 7) ? key.substring(7).trim() : null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+@Data
+public class ServerConfig {
+
+    // 传输层实现：auto / io_uring / epoll / nio（auto 按 io_uring > epoll > nio 选择可用的）
+    private String transport = "auto";
+
+    // worker 线程数，0 表示 Netty 默认（CPU 核数 * 2）
+    private int workerThreads = 0;
+
+    // SO_REUSEPORT：每个 worker eventLoop 各绑一个监听 socket，由内核分散 accept（仅 epoll / io_uring 生效）
+    private boolean reusePort = true;
+
+    // 全连接队列长度
+    private int backlog = 1024;
+
+    private boolean tcpNoDelay = true;
+
+    // TCP Fast Open 队列长度，0 表示关闭（仅 epoll / io_uring 生效）
+    private int tcpFastOpen = 0;
+
+    // socket 收发缓冲区（字节），0 表示使用系统默认
+    private int soRcvBuf = 0;
+    private int soSndBuf = 0;
+
+    // HTTP/2：明文端口支持 h2c（prior-knowledge / Upgrade），开启 TLS 时通过 ALPN 协商 h2
+    private boolean http2 = true;
+
+    // 单个连接上允许的最大并发 stream 数
+    private int http2MaxConcurrentStreams = 256;
+
+    // 每个 stream 的初始流控窗口（字节）
+    private int http2InitialWindowSize = 1024 * 1024;
+
+    // 连接级流控窗口（字节），不超过 65535 时使用协议默认值
+    private int http2ConnectionWindowSize = 4 * 1024 * 1024;
+
+    // TLS 证书 / 私钥（PEM），都配置了才开启 TLS
+    private String sslCertFile;
+    private String sslKeyFile;
+}
@@ -0,0 +1,19 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+/**
+ * 慢启动（预热）配置：熔断恢复（HALF_OPEN -> CLOSED）或热更新新加入的 upstream，在窗口期内权重从低到高爬坡
+ */
+@Data
+public class SlowStartConfig {
+
+    // 预热窗口（毫秒），<= 0 关闭
+    private long windowMs = 0;
+
+    // 爬坡曲线：有效权重 = weight × (已预热时间 / 窗口) ^ (1 / aggression)；1 为线性，> 1 前期涨得快，< 1 前期更保守
+    private double aggression = 1.0;
+
+    // 有效权重的下限（占配置权重的百分比）
+    private double minWeightPercent = 10;
+}
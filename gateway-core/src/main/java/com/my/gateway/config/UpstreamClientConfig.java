@@ -0,0 +1,28 @@
+package com.my.gateway.config;
+
+import lombok.Data;
+
+@Data
+public class UpstreamClientConfig {
+
+    // 建连超时
+    private int connectTimeoutMs = 2000;
+
+    // 请求超时（空闲超时）：请求写出过程中按写入进度计时，写完到收到响应头为首字节超时，之后为读空闲超时
+    private int requestTimeoutMs = 3000;
+
+    // 每个 eventLoop 对同一个 upstream 最多保持的连接数（含正在使用的），超出的请求排队等待空闲连接
+    private int maxConnectionsPerUpstream = 256;
+
+    // 每个 eventLoop 对同一个 upstream 最多排队的请求数，超出直接失败
+    private int maxPendingAcquires = 1024;
+
+    // 空闲连接存活时间，超过后关闭
+    private long idleTimeoutMs = 60_000;
+
+    // HTTP/2 upstream（h2c:// / h2://）单连接最多并发的 stream 数，实际还受对端 SETTINGS_MAX_CONCURRENT_STREAMS 限制
+    private int http2MaxConcurrentStreams = 100;
+
+    // HTTP/2 upstream 每个 stream 的初始流控窗口（字节）
+    private int http2InitialWindowSize = 1024 * 1024;
+}
@@ -0,0 +1,117 @@
+package com.my.gateway.container;
+
+import com.my.gateway.health.UpstreamCircuitBreaker;
+import com.my.gateway.health.UpstreamState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一条路由当前可用的 upstream 集合
+ *
+ * 只在熔断器状态变化时重算（熔断器回调 refresh），请求期间直接读一个不可变 List，不再逐个询问熔断器、不分配对象。
+ * 可用 = 非 OPEN，或 OPEN 但冷却已结束（等着被选中后转 HALF_OPEN 做探测）；冷却结束是按时间发生的，
+ * 所以记下最早的冷却截止时间，读的时候过了这个时间就重算一次。
+ *
+ * 列表按 RouteUpstream 下标升序，状态不变时是同一个对象，负载均衡器可以按引用判断集合有没有变。
+ */
+public final class HealthyUpstreams {
+
+    private static final class Snapshot {
+        final List<RouteUpstream> list;
+        // 最早的冷却截止时间，没有 OPEN 的熔断器时为 Long.MAX_VALUE
+        final long reviveAtMs;
+
+        Snapshot(List<RouteUpstream> list, long reviveAtMs) {
+            this.list = list;
+            this.reviveAtMs = reviveAtMs;
+        }
+    }
+
+    private final RouteUpstream[] all;
+    private volatile Snapshot snapshot;
+
+    HealthyUpstreams(RouteUpstream[] all) {
+        this.all = all;
+        this.snapshot = compute();
+    }
+
+    /**
+     * 路由快照发布时调用：开始接收熔断器的状态变化
+     */
+    void activate() {
+        for (RouteUpstream u : all) {
+            u.getCircuit().setStateListener(() -> onStateChanged(u));
+        }
+        refresh();
+    }
+
+    private void onStateChanged(RouteUpstream u) {
+        if (u.getCircuit().getState() == UpstreamState.CLOSED && u.getSlowStart().isEnabled()) {
+            // 熔断恢复：从低权重开始预热；可用集合没变也换一个 List 对象，让按引用缓存状态的负载均衡器按新权重重算
+            u.startWarmup();
+            synchronized (this) {
+                Snapshot s = snapshot;
+                snapshot = new Snapshot(Collections.unmodifiableList(new ArrayList<>(s.list)), s.reviveAtMs);
+            }
+        }
+        refresh();
+    }
+
+    public List<RouteUpstream> list() {
+        Snapshot s = snapshot;
+        if (s.reviveAtMs != Long.MAX_VALUE && System.currentTimeMillis() >= s.reviveAtMs) {
+            refresh();
+            s = snapshot;
+        }
+        return s.list;
+    }
+
+    /**
+     * u 在 list() 里的位置，不在时返回 -1
+     */
+    public int positionOf(List<RouteUpstream> list, RouteUpstream u) {
+        int lo = 0;
+        int hi = list.size() - 1;
+        int index = u.getIndex();
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = list.get(mid).getIndex();
+            if (v < index) {
+                lo = mid + 1;
+            } else if (v > index) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    synchronized void refresh() {
+        Snapshot next = compute();
+        if (!next.list.equals(snapshot.list) || next.reviveAtMs != snapshot.reviveAtMs) {
+            // 集合没变时保留原来的 List 对象，负载均衡器不用重建状态
+            snapshot = next.list.equals(snapshot.list) ? new Snapshot(snapshot.list, next.reviveAtMs) : next;
+        }
+    }
+
+    private Snapshot compute() {
+        long now = System.currentTimeMillis();
+        long reviveAt = Long.MAX_VALUE;
+        List<RouteUpstream> list = new ArrayList<>(all.length);
+        for (RouteUpstream u : all) {
+            UpstreamCircuitBreaker cb = u.getCircuit();
+            if (cb.getState() == UpstreamState.OPEN) {
+                long until = cb.getOpenUntilEpochMs();
+                if (now < until) {
+                    reviveAt = Math.min(reviveAt, until);
+                    continue;
+                }
+            }
+            list.add(u);
+        }
+        return new Snapshot(Collections.unmodifiableList(list), reviveAt);
+    }
+}
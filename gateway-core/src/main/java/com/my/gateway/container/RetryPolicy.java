@@ -0,0 +1,69 @@
+package com.my.gateway.container;
+
+import com.my.gateway.config.RetryConfig;
+import io.netty.handler.codec.http.HttpMethod;
+
+import java.util.List;
+
+/**
+ * 发布时解析好的重试策略：状态码转成查表数组，方法判断按 HttpMethod 常量比较
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy NONE = new RetryPolicy(0, true, null, 0);
+
+    private final int maxRetries;
+    private final boolean idempotentOnly;
+    // 下标为状态码
+    private final boolean[] retryOnStatus = new boolean[600];
+    private final long backoffMs;
+
+    private RetryPolicy(int maxRetries, boolean idempotentOnly, List<Integer> statusCodes, long backoffMs) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.idempotentOnly = idempotentOnly;
+        this.backoffMs = Math.max(0, backoffMs);
+        if (statusCodes != null) {
+            for (Integer code : statusCodes) {
+                if (code != null && code >= 0 && code < retryOnStatus.length) {
+                    retryOnStatus[code] = true;
+                }
+            }
+        }
+    }
+
+    static RetryPolicy of(RetryConfig cfg) {
+        if (cfg == null) {
+            return NONE;
+        }
+        return new RetryPolicy(cfg.getMaxRetries(), cfg.isIdempotentOnly(), cfg.getRetryOnStatus(), cfg.getBackoffMs());
+    }
+
+    /**
+     * 本次请求最多还能重试几次
+     *
+     * @param streaming 流式 body 已经边收边发出去了，无法重放
+     */
+    public int maxRetries(HttpMethod method, boolean streaming) {
+        if (streaming || maxRetries == 0) {
+            return 0;
+        }
+        if (idempotentOnly && !isIdempotent(method)) {
+            return 0;
+        }
+        return maxRetries;
+    }
+
+    public boolean retryOn(int statusCode) {
+        return statusCode >= 0 && statusCode < retryOnStatus.length && retryOnStatus[statusCode];
+    }
+
+    public long getBackoffMs() {
+        return backoffMs;
+    }
+
+    // 幂等：GET/HEAD/OPTIONS/PUT/DELETE（很多网关只放 GET/HEAD，保守起见可以只放 GET/HEAD）
+    private static boolean isIdempotent(HttpMethod m) {
+        return m == HttpMethod.GET || m == HttpMethod.HEAD || m == HttpMethod.OPTIONS
+                || m == HttpMethod.PUT || m == HttpMethod.DELETE;
+    }
+}
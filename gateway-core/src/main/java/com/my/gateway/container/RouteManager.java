@@ -1,10 +1,14 @@
 package com.my.gateway.container;
 
-import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.config.GatewayConfig;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * 路由快照的唯一来源：数据面（NettyHttpServerHandler）和管理端点（/routes）读的都是同一个 RouteTable
+ */
+@Slf4j
 public class RouteManager {
 
     private static final RouteManager INSTANCE = new RouteManager();
@@ -21,7 +25,26 @@ public class RouteManager {
         return ref.get();
     }
 
-    public void refresh(List<GatewayRoute> routes) {
-        ref.set(new RouteTable(routes));
+    /**
+     * 按配置和当前快照做 diff，编译一份新快照并原子替换；没有任何变化时保留当前快照（版本号不变）
+     *
+     * 编译失败时抛异常，旧快照保持不变
+     */
+    public synchronized RouteTable refresh(GatewayConfig cfg) {
+        long start = System.nanoTime();
+        RouteTable prev = ref.get();
+        RouteTable next = new RouteTable(prev.getVersion() + 1, cfg, prev);
+        if (next.isSameAs(prev)) {
+            log.info("[RouteHotReload] no route changes, keep version={}", prev.getVersion());
+            return prev;
+        }
+        next.activate();
+        ref.set(next);
+        // 正在处理的请求还拿着旧快照里的对象，注销只是让它们不再出现在注册表里
+        next.releaseRemoved(prev);
+        log.info("[RouteHotReload] published version={}, added={}, removed={}, changed={}, unchanged={}, cost={}ms",
+                next.getVersion(), next.getAdded(), next.getRemoved(), next.getChanged(), next.getUnchanged(),
+                (System.nanoTime() - start) / 1_000_000);
+        return next;
     }
 }
@@ -0,0 +1,155 @@
+package com.my.gateway.container;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 路由匹配决策结构：Host -> path 前缀树 -> method / header / query 条件
+ *
+ * 1) 精确 Host（开放寻址表，忽略大小写、忽略端口，不分配对象）
+ * 2) 通配 Host（*.example.com，后缀越长越优先）
+ * 3) 没有配置 hosts 的路由
+ * 前一级没有命中才看下一级。每一级内部由 RouteTrie 做最长前缀 + 条件判断。
+ *
+ * 每次请求的开销只和 Host 长度、路径段数、同一节点上的路由数有关，与路由总数无关。
+ */
+final class RouteMatcher {
+
+    // 精确 Host 表
+    private final String[] hostKeys;
+    private final RouteTrie[] hostTries;
+    private final int hostMask;
+    private final boolean hasHostRoutes;
+
+    // 通配 Host：后缀（含前导点，例如 .example.com），按长度从长到短
+    private final String[] wildcardSuffixes;
+    private final RouteTrie[] wildcardTries;
+
+    // 没有配置 hosts 的路由
+    private final RouteTrie anyHost;
+
+
+    RouteMatcher(List<RouteRuntime> routes) {
+        Map<RouteRuntime, Integer> order = new IdentityHashMap<>();
+        Map<String, List<RouteRuntime>> exact = new LinkedHashMap<>();
+        Map<String, List<RouteRuntime>> wildcard = new LinkedHashMap<>();
+        List<RouteRuntime> any = new ArrayList<>();
+
+        int i = 0;
+        for (RouteRuntime r : routes) {
+            order.put(r, i++);
+            List<String> hosts = r.getRoute().getHosts();
+            if (hosts == null || hosts.isEmpty()) {
+                any.add(r);
+                continue;
+            }
+            for (String h : hosts) {
+                String host = h.trim().toLowerCase(Locale.ROOT);
+                if (host.startsWith("*.")) {
+                    wildcard.computeIfAbsent(host.substring(1), k -> new ArrayList<>()).add(r);
+                } else {
+                    exact.computeIfAbsent(host, k -> new ArrayList<>()).add(r);
+                }
+            }
+        }
+
+        int cap = Integer.highestOneBit(Math.max(2, exact.size() * 2) - 1) << 1;
+        hostKeys = new String[cap];
+        hostTries = new RouteTrie[cap];
+        hostMask = cap - 1;
+        hasHostRoutes = !exact.isEmpty() || !wildcard.isEmpty();
+        for (Map.Entry<String, List<RouteRuntime>> e : exact.entrySet()) {
+            String k = e.getKey();
+            int idx = hashIgnoreCase(k, 0, k.length()) & hostMask;
+            while (hostKeys[idx] != null) {
+                idx = (idx + 1) & hostMask;
+            }
+            hostKeys[idx] = k;
+            hostTries[idx] = new RouteTrie(e.getValue(), order);
+        }
+
+        List<String> suffixes = new ArrayList<>(wildcard.keySet());
+        suffixes.sort(Comparator.comparingInt(String::length).reversed());
+        wildcardSuffixes = suffixes.toArray(new String[0]);
+        wildcardTries = new RouteTrie[wildcardSuffixes.length];
+        for (int j = 0; j < wildcardSuffixes.length; j++) {
+            wildcardTries[j] = new RouteTrie(wildcard.get(wildcardSuffixes[j]), order);
+        }
+
+        anyHost = new RouteTrie(any, order);
+    }
+
+    /**
+     * @param req 请求头（Host / method / header / query）；为 null 时只按 path 匹配没有附加条件、没有 hosts 的路由
+     */
+    RouteRuntime match(HttpRequest req, String path) {
+        if (req != null && hasHostRoutes) {
+            String host = req.headers().get(HttpHeaderNames.HOST);
+            if (host != null) {
+                int end = hostEnd(host);
+                RouteTrie t = exactHost(host, end);
+                if (t != null) {
+                    RouteRuntime r = t.match(req, path);
+                    if (r != null) {
+                        return r;
+                    }
+                }
+                for (int j = 0; j < wildcardSuffixes.length; j++) {
+                    String suffix = wildcardSuffixes[j];
+                    int start = end - suffix.length();
+                    // *.example.com 不匹配 example.com 本身
+                    if (start > 0 && host.regionMatches(true, start, suffix, 0, suffix.length())) {
+                        RouteRuntime r = wildcardTries[j].match(req, path);
+                        if (r != null) {
+                            return r;
+                        }
+                    }
+                }
+            }
+        }
+        return anyHost.match(req, path);
+    }
+
+    private RouteTrie exactHost(String host, int end) {
+        int idx = hashIgnoreCase(host, 0, end) & hostMask;
+        String k;
+        while ((k = hostKeys[idx]) != null) {
+            if (k.length() == end && host.regionMatches(true, 0, k, 0, end)) {
+                return hostTries[idx];
+            }
+            idx = (idx + 1) & hostMask;
+        }
+        return null;
+    }
+
+    /**
+     * Host 头去掉端口后的长度（兼容 [ipv6]:port）
+     */
+    private static int hostEnd(String host) {
+        int colon = host.lastIndexOf(':');
+        if (colon < 0 || host.indexOf(']', colon) >= 0) {
+            return host.length();
+        }
+        return colon;
+    }
+
+    private static int hashIgnoreCase(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 32;
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,136 @@
+package com.my.gateway.container;
+
+import com.my.gateway.context.GatewayRoute;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+
+import java.util.Map;
+
+/**
+ * 路由上除 host / path 以外的匹配条件（method / header / query），路由表发布时编译一次
+ *
+ * header / query 的值为空或 "*" 表示只要求存在；query 按原始（未做 URL 解码）的值比较，判断过程不分配对象。
+ */
+final class RoutePredicate {
+
+    private final HttpMethod[] methods;
+    private final String[] headerNames;
+    private final String[] headerValues;
+    private final String[] queryNames;
+    private final String[] queryValues;
+
+    private RoutePredicate(HttpMethod[] methods, String[] headerNames, String[] headerValues,
+                           String[] queryNames, String[] queryValues) {
+        this.methods = methods;
+        this.headerNames = headerNames;
+        this.headerValues = headerValues;
+        this.queryNames = queryNames;
+        this.queryValues = queryValues;
+    }
+
+    /**
+     * 路由没有任何附加条件时返回 null
+     */
+    static RoutePredicate compile(GatewayRoute route) {
+        HttpMethod[] methods = null;
+        if (route.getMethods() != null && !route.getMethods().isEmpty()) {
+            methods = route.getMethods().stream()
+                    .map(m -> HttpMethod.valueOf(m.trim().toUpperCase()))
+                    .toArray(HttpMethod[]::new);
+        }
+        String[][] headers = pairs(route.getHeaders());
+        String[][] query = pairs(route.getQueryParams());
+        if (methods == null && headers == null && query == null) {
+            return null;
+        }
+        return new RoutePredicate(methods,
+                headers == null ? null : headers[0], headers == null ? null : headers[1],
+                query == null ? null : query[0], query == null ? null : query[1]);
+    }
+
+    private static String[][] pairs(Map<String, String> m) {
+        if (m == null || m.isEmpty()) {
+            return null;
+        }
+        String[] names = new String[m.size()];
+        String[] values = new String[m.size()];
+        int i = 0;
+        for (Map.Entry<String, String> e : m.entrySet()) {
+            names[i] = e.getKey();
+            String v = e.getValue();
+            values[i] = (v == null || v.isEmpty() || "*".equals(v)) ? null : v;
+            i++;
+        }
+        return new String[][]{names, values};
+    }
+
+    boolean test(HttpRequest req) {
+        if (methods != null && !matchMethod(req.method())) {
+            return false;
+        }
+        if (headerNames != null) {
+            HttpHeaders h = req.headers();
+            for (int i = 0; i < headerNames.length; i++) {
+                if (headerValues[i] == null
+                        ? !h.contains(headerNames[i])
+                        : !h.contains(headerNames[i], headerValues[i], false)) {
+                    return false;
+                }
+            }
+        }
+        if (queryNames != null) {
+            String uri = req.uri();
+            for (int i = 0; i < queryNames.length; i++) {
+                if (!hasQueryParam(uri, queryNames[i], queryValues[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean matchMethod(HttpMethod m) {
+        for (HttpMethod x : methods) {
+            if (x.equals(m)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在原始 uri 的 query 部分里找 name[=value]
+     */
+    private static boolean hasQueryParam(String uri, String name, String value) {
+        int q = uri.indexOf('?');
+        if (q < 0) {
+            return false;
+        }
+        int len = uri.length();
+        int end = uri.indexOf('#', q);
+        if (end >= 0) {
+            len = end;
+        }
+        int pos = q + 1;
+        while (pos < len) {
+            int amp = uri.indexOf('&', pos);
+            if (amp < 0 || amp > len) {
+                amp = len;
+            }
+            int eq = uri.indexOf('=', pos);
+            int nameEnd = (eq < 0 || eq > amp) ? amp : eq;
+            if (nameEnd - pos == name.length() && uri.regionMatches(pos, name, 0, name.length())) {
+                if (value == null) {
+                    return true;
+                }
+                int vStart = nameEnd == amp ? amp : nameEnd + 1;
+                if (amp - vStart == value.length() && uri.regionMatches(vStart, value, 0, value.length())) {
+                    return true;
+                }
+            }
+            pos = amp + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,266 @@
+package com.my.gateway.container;
+
+import com.my.gateway.config.ConcurrencyLimitConfig;
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.config.HealthConfig;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.context.UpstreamInstance;
+import com.my.gateway.filter.FilterFactory;
+import com.my.gateway.filter.GatewayFilter;
+import com.my.gateway.filter.GatewayFilterChain;
+import com.my.gateway.health.ActiveHealthChecker;
+import com.my.gateway.health.OutlierDetector;
+import com.my.gateway.health.PassiveHealthManager;
+import com.my.gateway.health.UpstreamCircuitBreaker;
+import com.my.gateway.loadbalance.AdaptiveConcurrencyLimit;
+import com.my.gateway.loadbalance.LoadBalancer;
+import com.my.gateway.loadbalance.LoadBalancerFactory;
+import com.my.gateway.loadbalance.SlowStart;
+import com.my.gateway.loadbalance.UpstreamLoad;
+import com.my.gateway.metrics.MetricBucket;
+import com.my.gateway.metrics.MetricsRegistry;
+import com.my.gateway.netty.upstream.UpstreamAddress;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 一条路由在快照里的运行时形态：发布时把配置解析成请求期间直接可用的对象
+ *
+ * - 负载均衡器实例（按 lb 名字创建一次）
+ * - upstream 数组（地址已解析，熔断器 / 指标桶直接引用）
+ * - 重试、超时策略（路由配置覆盖全局配置）
+ * - 过滤器链（只包含对这条路由生效的过滤器）
+ *
+ * 请求期间只读，不做字符串拼接和 Map 查找。
+ */
+@Slf4j
+@Getter
+public final class RouteRuntime {
+
+    private final GatewayRoute route;
+    // 配置里没写 id 时为 "default"
+    private final String id;
+    private final RouteUpstream[] upstreams;
+    // 当前可用的 upstream，熔断器状态变化时更新
+    private final HealthyUpstreams healthy;
+    private final LoadBalancer loadBalancer;
+    private final RetryPolicy retryPolicy;
+    // 健康检查配置（路由配置覆盖全局配置）
+    private final HealthConfig health;
+    // 自适应并发上限配置（路由配置覆盖全局配置），没配置时为 null
+    private final ConcurrencyLimitConfig concurrencyLimit;
+    // upstream 首字节 / 读空闲超时
+    private final long timeoutMs;
+    // upstream 响应体不超过该值时整包写回
+    private final int responseBufferSize;
+    private final MetricBucket metrics;
+    // 按路由编译好的过滤器链
+    private final GatewayFilterChain filterChain;
+
+    // 路由 path 里参数所在的段序号及参数名，没有参数时为 null
+    private final int[] paramSegments;
+    private final String[] paramNames;
+
+    // 已经发布过（熔断器监听已指向本 runtime），只在 RouteManager 的发布锁里读写
+    @Getter(lombok.AccessLevel.NONE)
+    private boolean activated;
+
+    /**
+     * @param prev 热更新前同 id 的路由，没有时为 null；同 url 的 upstream 沿用它解析好的地址、指标桶 / 负载计数，
+     *             健康配置没变时还沿用熔断器，并发限制配置没变时沿用当前学到的上限
+     */
+    RouteRuntime(GatewayRoute route, GatewayConfig cfg, RouteRuntime prev) {
+        this.route = route;
+        this.id = idOf(route);
+        this.health = route.getHealth() != null ? route.getHealth() : cfg.getHealth();
+        boolean keepCircuits = prev != null && Objects.equals(prev.health, health);
+
+        List<UpstreamInstance> list = route.getUpstreams();
+        if ((list == null || list.isEmpty()) && route.getBackendUrl() != null) {
+            // 只配了 backendUrl：当成单个 upstream
+            list = List.of(new UpstreamInstance(route.getBackendUrl(), 1));
+        }
+        int n = list == null ? 0 : list.size();
+        this.upstreams = new RouteUpstream[n];
+        SlowStart slowStart = SlowStart.of(route.getSlowStart() != null ? route.getSlowStart() : cfg.getSlowStart());
+        this.concurrencyLimit = route.getConcurrencyLimit() != null ? route.getConcurrencyLimit() : cfg.getConcurrencyLimit();
+        boolean keepLimits = prev != null && Objects.equals(prev.concurrencyLimit, concurrencyLimit);
+        PassiveHealthManager hm = PassiveHealthManager.getInstance();
+        MetricsRegistry mr = MetricsRegistry.getInstance();
+        for (int i = 0; i < n; i++) {
+            UpstreamInstance ins = list.get(i);
+            RouteUpstream old = prev == null ? null : prev.upstream(ins.getUrl());
+            upstreams[i] = new RouteUpstream(i, ins.getUrl(), ins.getWeight(),
+                    old != null && old.getAddress() != null ? old.getAddress() : parse(ins.getUrl()),
+                    old != null && keepCircuits ? old.getCircuit() : hm.create(id, ins.getUrl(), health),
+                    old != null ? old.getMetrics() : mr.upstreamBucket(id, ins.getUrl()),
+                    old != null ? old.getLoad() : new UpstreamLoad(), slowStart,
+                    old != null && keepLimits ? old.getConcurrencyLimit() : AdaptiveConcurrencyLimit.of(concurrencyLimit));
+            if (prev != null && old == null) {
+                // 热更新给已有路由加进来的 upstream：从低权重开始预热
+                upstreams[i].startWarmup();
+            }
+        }
+        this.healthy = new HealthyUpstreams(upstreams);
+        // lb 策略（含哈希配置）和 upstream 列表（顺序、权重）都没变时沿用原来的负载均衡器，轮询位置 / 哈希环不用重建
+        this.loadBalancer = prev != null && Objects.equals(prev.route.getLb(), route.getLb())
+                && Objects.equals(prev.route.getHash(), route.getHash()) && sameUpstreams(prev.upstreams)
+                ? prev.loadBalancer
+                : LoadBalancerFactory.create(route, upstreams);
+        this.retryPolicy = RetryPolicy.of(route.getRetry() != null ? route.getRetry() : cfg.getRetry());
+        this.timeoutMs = route.getTimeoutMs() > 0 ? route.getTimeoutMs() : cfg.getUpstreamClient().getRequestTimeoutMs();
+        this.responseBufferSize = cfg.getResponseBufferSize();
+        this.metrics = prev != null ? prev.metrics : mr.routeBucket(id);
+        this.filterChain = FilterFactory.getInstance().compile(route);
+
+        List<Integer> segs = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int seg = 0;
+        for (String s : route.getPath().split("/")) {
+            if (s.isEmpty()) {
+                continue;
+            }
+            if (RouteTrie.isParam(s)) {
+                segs.add(seg);
+                names.add(s.charAt(0) == ':' ? s.substring(1) : s.substring(1, s.length() - 1));
+            }
+            seg++;
+        }
+        this.paramSegments = segs.isEmpty() ? null : segs.stream().mapToInt(Integer::intValue).toArray();
+        this.paramNames = names.isEmpty() ? null : names.toArray(new String[0]);
+    }
+
+    /**
+     * 管理端点（/metrics 等）对应的内置路由：没有 upstream，链上只有端点过滤器
+     */
+    private RouteRuntime(GatewayFilter endpoint) {
+        this.route = GatewayRoute.builder()
+                .id("endpoint:" + endpoint.endpointPath())
+                .path(endpoint.endpointPath())
+                // 同一路径上与用户路由冲突时端点优先（与之前端点过滤器排在最前面的行为一致）
+                .priority(Integer.MAX_VALUE)
+                .build();
+        this.id = route.getId();
+        this.upstreams = new RouteUpstream[0];
+        this.healthy = new HealthyUpstreams(upstreams);
+        this.loadBalancer = null;
+        this.retryPolicy = RetryPolicy.of(null);
+        this.health = null;
+        this.concurrencyLimit = null;
+        this.timeoutMs = 0;
+        this.responseBufferSize = 0;
+        this.metrics = null;
+        this.filterChain = FilterFactory.getInstance().compileEndpoint(endpoint);
+        this.paramSegments = null;
+        this.paramNames = null;
+    }
+
+    static List<RouteRuntime> endpoints() {
+        return FilterFactory.getInstance().endpoints().stream().map(RouteRuntime::new).toList();
+    }
+
+    /**
+     * 快照发布时调用：熔断器的状态变化从此通知到这个 runtime（热更新沿用的熔断器从旧 runtime 转过来），
+     * 并按本路由的健康配置开始 / 更新 / 停止主动探测和离群检测
+     */
+    void activate() {
+        if (!activated) {
+            activated = true;
+            healthy.activate();
+            ActiveHealthChecker checker = ActiveHealthChecker.getInstance();
+            int n = upstreams.length;
+            String[] urls = new String[n];
+            MetricBucket[] buckets = new MetricBucket[n];
+            UpstreamCircuitBreaker[] circuits = new UpstreamCircuitBreaker[n];
+            for (int i = 0; i < n; i++) {
+                RouteUpstream u = upstreams[i];
+                checker.watch(id, u.getUrl(), u.getAddress(), u.getCircuit(), health);
+                urls[i] = u.getUrl();
+                buckets[i] = u.getMetrics();
+                circuits[i] = u.getCircuit();
+            }
+            OutlierDetector.getInstance().watch(id, health, urls, buckets, circuits);
+        }
+    }
+
+    static String idOf(GatewayRoute route) {
+        return route.getId() == null ? "default" : route.getId();
+    }
+
+    /**
+     * 按 url 找 upstream（只在热更新时使用）
+     */
+    RouteUpstream upstream(String url) {
+        for (RouteUpstream u : upstreams) {
+            if (u.getUrl().equals(url)) {
+                return u;
+            }
+        }
+        return null;
+    }
+
+    private boolean sameUpstreams(RouteUpstream[] other) {
+        if (other.length != upstreams.length) {
+            return false;
+        }
+        for (int i = 0; i < other.length; i++) {
+            if (!other[i].getUrl().equals(upstreams[i].getUrl()) || other[i].getWeight() != upstreams[i].getWeight()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private UpstreamAddress parse(String url) {
+        try {
+            return UpstreamAddress.of(url);
+        } catch (RuntimeException e) {
+            log.error("[RouteRuntime] route {} has invalid upstream url: {}", id, url);
+            return null;
+        }
+    }
+
+    public boolean hasPathParams() {
+        return paramNames != null;
+    }
+
+    /**
+     * 按路由自己的 path 取出参数值（只在路由带参数时分配）
+     */
+    public Map<String, String> pathParams(String path) {
+        if (paramNames == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> out = new HashMap<>(paramNames.length * 2);
+        int seg = 0;
+        int i = 0;
+        int pos = 0;
+        int len = path.length();
+        while (i < paramSegments.length) {
+            while (pos < len && path.charAt(pos) == '/') {
+                pos++;
+            }
+            if (pos >= len) {
+                break;
+            }
+            int end = path.indexOf('/', pos);
+            if (end < 0) {
+                end = len;
+            }
+            if (seg == paramSegments[i]) {
+                out.put(paramNames[i], path.substring(pos, end));
+                i++;
+            }
+            seg++;
+            pos = end;
+        }
+        return out;
+    }
+}
@@ -1,23 +1,241 @@
 package com.my.gateway.container;
 
+import com.my.gateway.config.ConcurrencyLimitConfig;
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.config.HealthConfig;
+import com.my.gateway.config.RetryConfig;
+import com.my.gateway.config.SlowStartConfig;
 import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.health.ActiveHealthChecker;
+import com.my.gateway.health.OutlierDetector;
+import com.my.gateway.health.PassiveHealthManager;
+import com.my.gateway.metrics.MetricsRegistry;
+import com.my.gateway.netty.upstream.UpstreamHttpClient;
+import com.my.gateway.ratelimit.RateLimitRegistry;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
+/**
+ * 路由表快照：不可变，带版本号
+ *
+ * 发布时和上一个快照按路由 id 做 diff：
+ * - 配置完全相同（且全局重试 / 超时 / 健康 / 并发限制配置没变）的路由直接复用原来的 RouteRuntime，负载均衡 / 熔断 / 指标状态全部保留
+ * - 有变化的路由重新编译，同 url 的 upstream 沿用原来的熔断器和指标桶
+ * - 新增的路由新建状态；删除的路由 / upstream 在 releaseRemoved 里注销状态
+ *
+ * 请求期间整个快照只读。
+ */
 public class RouteTable {
 
+    // 管理端点对应的内置路由，和用户路由一起参与匹配，不出现在 getRoutes / getRuntimes 里
+    private static final List<RouteRuntime> ENDPOINTS = RouteRuntime.endpoints();
+
+    private static final RouteTable EMPTY = new RouteTable(0, new GatewayConfig(), null);
+
+    // 每次发布 +1
+    private final long version;
+
     private final List<GatewayRoute> routes;
 
-    public RouteTable(List<GatewayRoute> routes) {
-        this.routes = routes == null ? List.of() : List.copyOf(routes);
+    // 与 routes 一一对应
+    private final List<RouteRuntime> runtimes;
+
+    // 发布快照时编译好的匹配结构（Host -> 前缀树 -> 条件），请求期间只读
+    private final RouteMatcher matcher;
+
+    // 会影响 RouteRuntime 的全局配置，用于判断路由能否原样复用
+    private final RetryConfig retry;
+    private final SlowStartConfig slowStart;
+    private final HealthConfig health;
+    private final ConcurrencyLimitConfig concurrencyLimit;
+    private final long requestTimeoutMs;
+    private final int responseBufferSize;
+
+    // 与上一个快照的差异
+    private int added;
+    private int removed;
+    private int changed;
+    private int unchanged;
+
+    RouteTable(long version, GatewayConfig cfg, RouteTable prev) {
+        this.version = version;
+        this.retry = cfg.getRetry();
+        this.slowStart = cfg.getSlowStart();
+        this.health = cfg.getHealth();
+        this.concurrencyLimit = cfg.getConcurrencyLimit();
+        this.requestTimeoutMs = cfg.getUpstreamClient().getRequestTimeoutMs();
+        this.responseBufferSize = cfg.getResponseBufferSize();
+
+        boolean sameDefaults = prev != null && Objects.equals(health, prev.health)
+                && Objects.equals(retry, prev.retry) && Objects.equals(slowStart, prev.slowStart)
+                && Objects.equals(concurrencyLimit, prev.concurrencyLimit)
+                && requestTimeoutMs == prev.requestTimeoutMs && responseBufferSize == prev.responseBufferSize;
+
+        // 上一个快照：id -> runtime（同 id 多条时只有第一条参与复用）
+        Map<String, RouteRuntime> old = new HashMap<>();
+        if (prev != null) {
+            for (RouteRuntime r : prev.runtimes) {
+                old.putIfAbsent(r.getId(), r);
+            }
+        }
+
+        List<GatewayRoute> valid = new ArrayList<>();
+        List<RouteRuntime> rts = new ArrayList<>();
+        if (cfg.getRoutes() != null) {
+            for (GatewayRoute r : cfg.getRoutes()) {
+                if (r == null || r.getPath() == null) {
+                    continue;
+                }
+                valid.add(r);
+                RouteRuntime p = old.remove(RouteRuntime.idOf(r));
+                if (p == null) {
+                    added++;
+                    rts.add(new RouteRuntime(r, cfg, null));
+                } else if (sameDefaults && p.getRoute().equals(r)) {
+                    unchanged++;
+                    rts.add(p);
+                } else {
+                    changed++;
+                    rts.add(new RouteRuntime(r, cfg, p));
+                }
+            }
+        }
+        this.removed = old.size();
+        this.routes = List.copyOf(valid);
+        this.runtimes = List.copyOf(rts);
+        List<RouteRuntime> all = new ArrayList<>(ENDPOINTS);
+        all.addAll(rts);
+        this.matcher = new RouteMatcher(all);
+    }
+
+    /**
+     * 与上一个快照相比没有任何变化（不需要发布）
+     */
+    boolean isSameAs(RouteTable prev) {
+        if (added != 0 || removed != 0 || changed != 0 || runtimes.size() != prev.runtimes.size()) {
+            return false;
+        }
+        for (int i = 0; i < runtimes.size(); i++) {
+            if (runtimes.get(i) != prev.runtimes.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 发布前调用：新编译的路由开始接收熔断器状态变化（复用的路由已经接收过，跳过）
+     */
+    void activate() {
+        for (RouteRuntime r : runtimes) {
+            r.activate();
+        }
+    }
+
+    /**
+     * 新快照发布后，注销上一个快照里已经不存在的路由 / upstream 的熔断器、指标、限流器和连接池
+     */
+    void releaseRemoved(RouteTable prev) {
+        Set<String> liveRoutes = new HashSet<>();
+        Set<String> liveUpstreams = new HashSet<>();
+        // 连接池按 scheme://host:port 区分，多个路由可能共用
+        Set<String> liveAddresses = new HashSet<>();
+        for (RouteRuntime r : runtimes) {
+            liveRoutes.add(r.getId());
+            for (RouteUpstream u : r.getUpstreams()) {
+                liveUpstreams.add(r.getId() + "@" + u.getUrl());
+                if (u.getAddress() != null) {
+                    liveAddresses.add(u.getAddress().getKey());
+                }
+            }
+        }
+        List<GatewayRoute> liveRouteObjects = new ArrayList<>(runtimes.size());
+        for (RouteRuntime r : runtimes) {
+            liveRouteObjects.add(r.getRoute());
+        }
+        RateLimitRegistry.getInstance().retain(liveRouteObjects);
+
+        PassiveHealthManager hm = PassiveHealthManager.getInstance();
+        ActiveHealthChecker checker = ActiveHealthChecker.getInstance();
+        MetricsRegistry mr = MetricsRegistry.getInstance();
+        boolean addressRemoved = false;
+        for (RouteRuntime r : prev.runtimes) {
+            if (!liveRoutes.contains(r.getId())) {
+                mr.removeRoute(r.getId());
+                OutlierDetector.getInstance().unwatch(r.getId());
+            }
+            for (RouteUpstream u : r.getUpstreams()) {
+                if (!liveUpstreams.contains(r.getId() + "@" + u.getUrl())) {
+                    hm.remove(r.getId(), u.getUrl());
+                    checker.unwatch(r.getId(), u.getUrl());
+                    mr.removeUpstream(r.getId(), u.getUrl());
+                }
+                if (u.getAddress() != null && !liveAddresses.contains(u.getAddress().getKey())) {
+                    addressRemoved = true;
+                }
+            }
+        }
+        if (addressRemoved) {
+            // 各 eventLoop 的连接池关闭这些地址的连接，/metrics 的 upstreamPools 随之注销
+            UpstreamHttpClient.getInstance().retain(liveAddresses);
+        }
+    }
+
+    public long getVersion() {
+        return version;
     }
 
     public List<GatewayRoute> getRoutes() {
         return routes;
     }
 
+    public List<RouteRuntime> getRuntimes() {
+        return runtimes;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * 按 Host / 最长路径前缀 / method / header / query 匹配路由，没有命中返回 null
+     *
+     * @param req  请求头；为 null 时只按路径匹配没有附加条件的路由
+     * @param path 解码前的请求路径（不含 query）
+     */
+    public RouteRuntime match(HttpRequest req, String path) {
+        return matcher.match(req, path);
+    }
+
+    /**
+     * 按请求头匹配（Netty 层判断是否流式转发时使用）
+     */
+    public RouteRuntime match(HttpRequest req) {
+        return matcher.match(req, new QueryStringDecoder(req.uri()).path());
+    }
+
     public static RouteTable empty() {
-        return new RouteTable(Collections.emptyList());
+        return EMPTY;
     }
 }
@@ -0,0 +1,243 @@
+package com.my.gateway.container;
+
+import io.netty.handler.codec.http.HttpRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路由前缀树：路由表发布时编译一次，请求路径按 "/" 分段逐层匹配，取最长前缀
+ *
+ * 路由 path 语法（按段）：
+ * - 普通段：/api/user
+ * - 单段通配：段内容为 *，匹配任意一段
+ * - 路径参数：/user/{id} 或 /user/:id（匹配任意一段，值由 RouteRuntime.pathParams 取出）
+ * - 末尾的 /** 等价于前缀匹配（所有路由本来就是前缀匹配）
+ *
+ * 优先级：更深（段数更多）的路由优先；同样深度时 普通段 > 参数 > 通配；
+ * 同一个节点上的多条路由按 priority 从大到小判断 method / header / query 条件，第一条满足的命中；
+ * priority 相同时带条件的路由先于不带条件的，再按配置顺序。
+ * 深层节点的条件都不满足时回退到更浅的前缀。和旧的 startsWith 不同，前缀按整段匹配：/a 不再命中 /ab。
+ *
+ * 查找过程不分配对象：分段靠下标，不做 split / substring；普通段子节点用开放寻址表按字符区间直接比较。
+ */
+final class RouteTrie {
+
+    /**
+     * 挂在节点上的一条路由
+     */
+    private static final class Candidate {
+        final RouteRuntime runtime;
+        // 没有附加条件时为 null
+        final RoutePredicate predicate;
+        final int order;
+        // 所在节点的深度（段数）
+        final int depth;
+
+        Candidate(RouteRuntime runtime, RoutePredicate predicate, int order, int depth) {
+            this.runtime = runtime;
+            this.predicate = predicate;
+            this.order = order;
+            this.depth = depth;
+        }
+    }
+
+    private static final Comparator<Candidate> PRIORITY =
+            Comparator.<Candidate>comparingInt(c -> -c.runtime.getRoute().getPriority())
+                    .thenComparingInt(c -> c.predicate == null ? 1 : 0)
+                    .thenComparingInt(c -> c.order);
+
+    private static final class Node {
+        // 普通段子节点：开放寻址哈希表（容量为 2 的幂），编译完成后只读
+        String[] keys;
+        Node[] children;
+        int mask;
+
+        Node param;
+        Node wildcard;
+
+        // 以该节点结尾的路由（按优先级排好序）
+        Candidate[] candidates;
+
+        final int depth;
+
+        // 编译期临时结构
+        Map<String, Node> building = new LinkedHashMap<>();
+        List<Candidate> pending;
+
+        Node(int depth) {
+            this.depth = depth;
+        }
+
+        Node child(String path, int from, int to) {
+            if (keys == null) {
+                return null;
+            }
+            int i = hash(path, from, to) & mask;
+            int len = to - from;
+            String k;
+            while ((k = keys[i]) != null) {
+                if (k.length() == len && path.regionMatches(from, k, 0, len)) {
+                    return children[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        Candidate select(HttpRequest req) {
+            if (candidates == null) {
+                return null;
+            }
+            for (Candidate c : candidates) {
+                if (c.predicate == null || (req != null && c.predicate.test(req))) {
+                    return c;
+                }
+            }
+            return null;
+        }
+
+        void freeze() {
+            if (!building.isEmpty()) {
+                int cap = Integer.highestOneBit(Math.max(2, building.size() * 2) - 1) << 1;
+                keys = new String[cap];
+                children = new Node[cap];
+                mask = cap - 1;
+                for (Map.Entry<String, Node> e : building.entrySet()) {
+                    String k = e.getKey();
+                    int i = hash(k, 0, k.length()) & mask;
+                    while (keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = k;
+                    children[i] = e.getValue();
+                    e.getValue().freeze();
+                }
+            }
+            building = null;
+            if (pending != null) {
+                pending.sort(PRIORITY);
+                candidates = pending.toArray(new Candidate[0]);
+                pending = null;
+            }
+            if (param != null) {
+                param.freeze();
+            }
+            if (wildcard != null) {
+                wildcard.freeze();
+            }
+        }
+    }
+
+    private final Node root = new Node(0);
+
+    /**
+     * @param routes 已按配置顺序排列；order 用于同优先级时的先后
+     */
+    RouteTrie(List<RouteRuntime> routes, Map<RouteRuntime, Integer> order) {
+        for (RouteRuntime r : routes) {
+            insert(r, order.getOrDefault(r, 0));
+        }
+        root.freeze();
+    }
+
+    private void insert(RouteRuntime runtime, int order) {
+        String pattern = runtime.getRoute().getPath();
+        if (pattern.endsWith("/**")) {
+            pattern = pattern.substring(0, pattern.length() - 3);
+        }
+        Node n = root;
+        for (String s : pattern.split("/")) {
+            if (s.isEmpty()) {
+                continue;
+            }
+            if ("*".equals(s)) {
+                if (n.wildcard == null) {
+                    n.wildcard = new Node(n.depth + 1);
+                }
+                n = n.wildcard;
+            } else if (isParam(s)) {
+                if (n.param == null) {
+                    n.param = new Node(n.depth + 1);
+                }
+                n = n.param;
+            } else {
+                int depth = n.depth + 1;
+                n = n.building.computeIfAbsent(s, k -> new Node(depth));
+            }
+        }
+
+        if (n.pending == null) {
+            n.pending = new ArrayList<>(1);
+        }
+        n.pending.add(new Candidate(runtime, RoutePredicate.compile(runtime.getRoute()), order, n.depth));
+    }
+
+    static boolean isParam(String s) {
+        return (s.length() > 1 && s.charAt(0) == ':')
+                || (s.length() > 2 && s.charAt(0) == '{' && s.charAt(s.length() - 1) == '}');
+    }
+
+    /**
+     * 最长前缀匹配，没有命中返回 null
+     *
+     * @param req 用于判断 method / header / query 条件；为 null 时只匹配没有附加条件的路由
+     */
+    RouteRuntime match(HttpRequest req, String path) {
+        Candidate c = find(root, req, path, 0);
+        return c == null ? null : c.runtime;
+    }
+
+    /**
+     * 从节点 n 开始匹配 path[pos..]，返回能命中的最深的路由
+     *
+     * 子树里命中的一定比当前节点深，所以先找子树，子树没有才判断当前节点的条件
+     */
+    private static Candidate find(Node n, HttpRequest req, String path, int pos) {
+        int len = path.length();
+        while (pos < len && path.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos < len) {
+            int end = path.indexOf('/', pos);
+            if (end < 0) {
+                end = len;
+            }
+            // 同样深度时先找到的优先：普通段 > 参数 > 通配
+            Candidate best = null;
+            Node c = n.child(path, pos, end);
+            if (c != null) {
+                best = find(c, req, path, end);
+            }
+            if (n.param != null) {
+                best = deeper(best, find(n.param, req, path, end));
+            }
+            if (n.wildcard != null) {
+                best = deeper(best, find(n.wildcard, req, path, end));
+            }
+            if (best != null) {
+                return best;
+            }
+        }
+        return n.select(req);
+    }
+
+    private static Candidate deeper(Candidate a, Candidate b) {
+        if (b == null) {
+            return a;
+        }
+        return a == null || b.depth > a.depth ? b : a;
+    }
+
+    private static int hash(String s, int from, int to) {
+        // 与 String.hashCode 相同的算法，再做一次扰动
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,101 @@
+package com.my.gateway.container;
+
+import com.my.gateway.health.UpstreamCircuitBreaker;
+import com.my.gateway.loadbalance.AdaptiveConcurrencyLimit;
+import com.my.gateway.loadbalance.SlowStart;
+import com.my.gateway.loadbalance.UpstreamLoad;
+import com.my.gateway.metrics.MetricBucket;
+import com.my.gateway.netty.upstream.UpstreamAddress;
+import lombok.Getter;
+
+/**
+ * 路由快照里的一个 upstream 实例：发布时解析好地址，并直接持有熔断器、指标桶
+ *
+ * 请求期间拿到它就能直接用，不再按 routeId + url 拼 key 查表。
+ */
+@Getter
+public final class RouteUpstream {
+
+    // 在所属路由 upstreams 数组里的下标（负载均衡器按下标维护自己的状态）
+    private final int index;
+    private final String url;
+    private final int weight;
+    // url 不合法时为 null，转发时直接 502
+    private final UpstreamAddress address;
+    private final UpstreamCircuitBreaker circuit;
+    private final MetricBucket metrics;
+    // in-flight 请求数，least_requests 等负载均衡器使用
+    private final UpstreamLoad load;
+    // 所属路由的慢启动策略
+    private final SlowStart slowStart;
+    // 自适应并发上限，没开启时为 null
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    RouteUpstream(int index, String url, int weight, UpstreamAddress address,
+                  UpstreamCircuitBreaker circuit, MetricBucket metrics, UpstreamLoad load, SlowStart slowStart,
+                  AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.index = index;
+        this.url = url;
+        this.weight = Math.max(1, weight);
+        this.address = address;
+        this.circuit = circuit;
+        this.metrics = metrics;
+        this.load = load;
+        this.slowStart = slowStart;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * 负载均衡选实例时预留一个 in-flight：开了并发上限时到上限就失败，否则总是成功。
+     * 成功后要么发出请求（尝试结束时 load.onComplete），要么 cancelReservation
+     */
+    public boolean tryReserve() {
+        if (concurrencyLimit == null) {
+            load.onDispatch();
+            return true;
+        }
+        return concurrencyLimit.tryAcquire(load);
+    }
+
+    /**
+     * 预留了但没有发出请求（熔断许可没拿到、请求被放弃）
+     */
+    public void cancelReservation() {
+        load.onComplete();
+    }
+
+    /**
+     * 开始预热（路由没开慢启动时不生效）
+     */
+    public void startWarmup() {
+        if (slowStart.isEnabled()) {
+            load.startWarmup(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 负载均衡使用的权重：预热窗口内按慢启动曲线打折，其余时候就是配置的 weight
+     */
+    public double effectiveWeight() {
+        long start = load.warmupStartMs();
+        if (start == 0) {
+            return weight;
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed >= slowStart.getWindowMs()) {
+            load.endWarmup();
+            return weight;
+        }
+        return weight * slowStart.factor(elapsed);
+    }
+
+    public boolean isWarmingUp() {
+        long start = load.warmupStartMs();
+        return start != 0 && System.currentTimeMillis() - start < slowStart.getWindowMs();
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -1,15 +1,23 @@
 package com.my.gateway.context;
 
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.filter.GatewayFilterChain;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
-import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -25,14 +33,42 @@ public class GatewayContext {
     // 当前请求匹配到的路由信息
     private GatewayRoute route;
 
+    // 路由在当前快照里的运行时对象（负载均衡器、upstream 数组、重试策略等），与 route 同时设置
+    private RouteRuntime runtime;
+
+    // 路由 path 里 {id} / :id 对应的值
+    private Map<String, String> pathParams = Collections.emptyMap();
+
     //标识位，标识是否已经写回响应，防止重复写入
     private boolean written = false;
 
-    // 选中的上游服务地址（可以在路由匹配阶段设置）
-    private String selectedUpstream;
+    // 请求已结束（后置阶段已触发）
+    private boolean completed = false;
+
+    // 选中的上游服务（可以在路由匹配阶段设置）
+    private RouteUpstream selectedUpstream;
+
+    // 负载均衡选中、已经预留了 in-flight 和熔断许可但还没发出请求的实例；RouteFilter 发出时接手，没发出就在 release 时归还
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private RouteUpstream reservedUpstream;
+
+    // 已经尝试过的上游服务（按 RouteUpstream 下标记位），避免重试同一个实例；下标 >= 64 时才分配数组
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long triedMask;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long[] triedOverflow;
+
+    // 本次请求执行的过滤器链（路由快照里共享的），请求结束时回调它的后置阶段
+    private GatewayFilterChain filterChain;
+
+    // 过滤器链执行到的位置
+    private int filterIndex;
 
-    // 记录已经尝试过的上游服务地址，避免重试同一个地址
-    private final Set<String> triedUpstreams = new java.util.HashSet<>();
+    // 当前过滤器的路由级配置（FilterFactory 编译期解析好的对象）
+    private Object filterConfig;
 
     // 请求开始时间
     private long startNano;
@@ -54,14 +90,88 @@ public class GatewayContext {
         this.response = new GatewayResponse(); // 默认初始化一个空响应
     }
 
+    public void markTried(RouteUpstream u) {
+        int i = u.getIndex();
+        if (i < 64) {
+            triedMask |= 1L << i;
+            return;
+        }
+        int w = (i >> 6) - 1;
+        if (triedOverflow == null || triedOverflow.length <= w) {
+            triedOverflow = triedOverflow == null ? new long[w + 1] : Arrays.copyOf(triedOverflow, w + 1);
+        }
+        triedOverflow[w] |= 1L << i;
+    }
+
+    public boolean isTried(RouteUpstream u) {
+        int i = u.getIndex();
+        if (i < 64) {
+            return (triedMask & (1L << i)) != 0;
+        }
+        int w = (i >> 6) - 1;
+        return triedOverflow != null && w < triedOverflow.length && (triedOverflow[w] & (1L << i)) != 0;
+    }
+
+    public boolean hasTried() {
+        return triedMask != 0 || triedOverflow != null;
+    }
+
+    /**
+     * 记下负载均衡刚预留好的实例（之前的预留必须已经被接手）
+     */
+    public void reserve(RouteUpstream u) {
+        reservedUpstream = u;
+    }
+
+    /**
+     * 发出请求前接手预留：返回 u 表示预留还在，之后 in-flight 由这次尝试负责减；
+     * 返回 null 表示请求已经结束、预留已归还（例如重试退避期间客户端断开），不应再发出
+     */
+    public RouteUpstream claimReservation(RouteUpstream u) {
+        if (reservedUpstream != u) {
+            return null;
+        }
+        reservedUpstream = null;
+        return u;
+    }
+
+    /**
+     * 这个状态码的响应按协议没有 body：HEAD 请求，或 1xx / 204 / 304。
+     * 这时 upstream 给的 Content-Length 描述的是对应完整响应的长度，要原样透传，不能按实际写出的 0 字节改写
+     */
+    public boolean isBodilessResponse(int statusCode) {
+        return HttpMethod.HEAD.equals(request.getMethod())
+                || statusCode < 200 || statusCode == 204 || statusCode == 304;
+    }
+
     /**
      * 释放资源（非常重要！）
      * Netty 的 ByteBuf 是引用计数的，必须手动释放，否则内存泄漏
      */
     public void release() {
+        RouteUpstream reserved = reservedUpstream;
+        if (reserved != null) {
+            // 选中了但没发出：归还 in-flight 预留和半开探测名额
+            reservedUpstream = null;
+            reserved.cancelReservation();
+            reserved.getCircuit().release();
+        }
+        if (completed) {
+            // 客户端断开时已经释放过，之后 upstream 响应写回又会走到这里
+            return;
+        }
+        completed = true;
         if (this.request.getFullHttpRequest() != null) {
             ReferenceCountUtil.release(this.request.getFullHttpRequest());
         }
+        if (this.request.getBodyStream() != null) {
+            // 已经写回响应了，还没转发的 body 不再需要
+            this.request.getBodyStream().discard();
+        }
+        if (filterChain != null) {
+            // 响应已写回 / 请求失败 / 客户端断开：执行过滤器的后置阶段
+            filterChain.complete(this);
+        }
     }
 
     /**
@@ -70,7 +180,12 @@ public class GatewayContext {
      */
     public void writeResponse() {
         if (written) {
-            return; // 避免重复写入
+            // 避免重复写入；迟到的 body 直接释放
+            if (response != null && response.getBody() != null) {
+                ReferenceCountUtil.release(response.getBody());
+                response.setBody(null);
+            }
+            return;
         }
         written = true;
 
@@ -80,17 +195,28 @@ public class GatewayContext {
             response.setJsonContent("{\"error\": \"No Response Generated\"}");
         }
 
+        // upstream 原始字节直接透传；网关自己生成的字符串一次编码进池化内存
+        ByteBuf content = response.getBody();
+        response.setBody(null);
+        if (content == null) {
+            content = response.getContent() == null
+                    ? Unpooled.EMPTY_BUFFER
+                    : ByteBufUtil.writeUtf8(nettyCtx.alloc(), response.getContent());
+        }
+
         DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(
                 HttpVersion.HTTP_1_1,
                 response.getStatus(),
-                Unpooled.copiedBuffer(response.getContent() == null ? "" : response.getContent(), CharsetUtil.UTF_8)
+                content
         );
 
         httpResponse.headers().add(response.getHeaders());
-        httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
+        if (!isBodilessResponse(response.getStatus().code()) || !httpResponse.headers().contains(HttpHeaderNames.CONTENT_LENGTH)) {
+            httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
+        }
 
         // 处理 Keep-Alive
-        boolean keepAlive = HttpUtil.isKeepAlive(request.getFullHttpRequest());
+        boolean keepAlive = HttpUtil.isKeepAlive(request.getHttpRequest());
         if (keepAlive) {
             httpResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
             nettyCtx.writeAndFlush(httpResponse);
@@ -101,4 +227,41 @@ public class GatewayContext {
         // 释放资源
         release();
     }
+
+    /**
+     * 流式响应：先写响应头，body 由 writeContent 分块写出，最后 writeLastContent 收尾
+     *
+     * @param contentLength 已知长度直接透传，小于 0 时改用 chunked
+     */
+    public void writeResponseHead(HttpResponseStatus status, HttpHeaders headers, long contentLength) {
+        if (written) {
+            return;
+        }
+        written = true;
+
+        DefaultHttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        head.headers().add(response.getHeaders());
+        head.headers().setAll(headers);
+        if (contentLength >= 0) {
+            HttpUtil.setContentLength(head, contentLength);
+        } else {
+            HttpUtil.setTransferEncodingChunked(head, true);
+        }
+        if (HttpUtil.isKeepAlive(request.getHttpRequest())) {
+            head.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        }
+        nettyCtx.writeAndFlush(head);
+    }
+
+    public ChannelFuture writeContent(ByteBuf chunk) {
+        return nettyCtx.writeAndFlush(new DefaultHttpContent(chunk));
+    }
+
+    public void writeLastContent() {
+        ChannelFuture f = nettyCtx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        if (!HttpUtil.isKeepAlive(request.getHttpRequest())) {
+            f.addListener(ChannelFutureListener.CLOSE);
+        }
+        release();
+    }
 }
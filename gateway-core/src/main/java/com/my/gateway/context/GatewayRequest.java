@@ -21,9 +21,15 @@ import java.util.Set;
 @Getter
 public class GatewayRequest {
 
-    // 存储 Netty 原生请求，用于后续获取 Body 等
+    // 存储 Netty 原生请求，用于后续获取 Body 等（流式模式下为 null）
     private final FullHttpRequest fullHttpRequest;
 
+    // 请求行 + 请求头（聚合 / 流式两种模式都有）
+    private final HttpRequest httpRequest;
+
+    // 流式模式下的请求体（聚合模式下为 null）
+    private final RequestBodyStream bodyStream;
+
     // 核心属性
     private final String uri;
     private final String path;
@@ -37,12 +43,26 @@ public class GatewayRequest {
     private final Charset charset;
 
     public GatewayRequest(String clientIp, FullHttpRequest fullHttpRequest) {
+        this(clientIp, fullHttpRequest, fullHttpRequest, null);
+    }
+
+    /**
+     * 流式模式：只有请求头，body 通过 bodyStream 陆续到达
+     */
+    public GatewayRequest(String clientIp, HttpRequest httpRequest, RequestBodyStream bodyStream) {
+        this(clientIp, null, httpRequest, bodyStream);
+    }
+
+    private GatewayRequest(String clientIp, FullHttpRequest fullHttpRequest,
+                           HttpRequest httpRequest, RequestBodyStream bodyStream) {
         this.clientIp = clientIp;
         this.fullHttpRequest = fullHttpRequest;
-        this.uri = fullHttpRequest.uri();
-        this.method = fullHttpRequest.method();
-        this.headers = fullHttpRequest.headers();
-        this.charset = HttpUtil.getCharset(fullHttpRequest, CharsetUtil.UTF_8);
+        this.httpRequest = httpRequest;
+        this.bodyStream = bodyStream;
+        this.uri = httpRequest.uri();
+        this.method = httpRequest.method();
+        this.headers = httpRequest.headers();
+        this.charset = HttpUtil.getCharset(httpRequest, CharsetUtil.UTF_8);
 
         // 解析 URL 参数 (QueryStringDecoder 是 Netty 提供的神器)
         QueryStringDecoder queryStringDecoder = new QueryStringDecoder(uri, charset);
@@ -58,11 +78,18 @@ public class GatewayRequest {
         }
     }
 
+    public boolean isStreaming() {
+        return bodyStream != null;
+    }
+
     /**
      * 获取请求体内容（JSON字符串）
-     * 注意：POST 请求通常需要读取 Body
+     * 注意：POST 请求通常需要读取 Body；流式模式下 body 不落地，返回 null
      */
     public String getBody() {
+        if (fullHttpRequest == null) {
+            return null;
+        }
         ByteBuf content = fullHttpRequest.content();
         return content.toString(charset);
     }
@@ -1,5 +1,6 @@
 package com.my.gateway.context;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.*;
 import lombok.Data;
 
@@ -12,9 +13,13 @@ public class GatewayResponse {
     // 响应状态码，默认 200 OK
     private HttpResponseStatus status = HttpResponseStatus.OK;
 
-    // 响应内容 (JSON 字符串等)
+    // 响应内容 (网关自己生成的 JSON 字符串等)
     private String content;
 
+    // 原始响应体（upstream 透传的字节，优先于 content，写回时零拷贝、不做字符集转换）
+    // 引用计数由 GatewayContext.writeResponse 负责释放
+    private ByteBuf body;
+
     /**
      * 设置 Content-Type 为 JSON
      */
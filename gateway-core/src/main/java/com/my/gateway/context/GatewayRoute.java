@@ -1,11 +1,17 @@
 package com.my.gateway.context;
 
+import com.my.gateway.config.ConcurrencyLimitConfig;
+import com.my.gateway.config.HashConfig;
+import com.my.gateway.config.HealthConfig;
+import com.my.gateway.config.RetryConfig;
+import com.my.gateway.config.SlowStartConfig;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -25,6 +31,46 @@ public class GatewayRoute {
 //    private List<String> upstreams;
     private List<UpstreamInstance> upstreams;
 
-    //  新增：负载均衡策略：random / round_robin / consistent_hash
+    //  新增：负载均衡策略：random / round_robin / smooth_wrr / least_requests / peak_ewma / consistent_hash
     private String lb;
-}
\ No newline at end of file
+
+    // 一致性哈希的 key 来源 / 虚拟节点 / 有界负载，lb 为 consistent_hash 时生效，为空时按客户端 IP
+    private HashConfig hash;
+
+    // 流式转发请求体：不做 HttpObjectAggregator 聚合，边收边发给 upstream
+    // 需要完整 body 的路由（重试、读取 body 的过滤器）保持 false 走聚合模式
+    private boolean streaming;
+
+    // 虚拟主机：按 Host 匹配，支持 *.example.com；为空表示任意 Host
+    private List<String> hosts;
+
+    // 允许的 HTTP 方法，为空表示不限制
+    private List<String> methods;
+
+    // 请求头条件：name -> value，value 为空或 "*" 表示只要求存在
+    private Map<String, String> headers;
+
+    // query 参数条件：name -> value（原始值，不做 URL 解码），value 为空或 "*" 表示只要求存在
+    private Map<String, String> queryParams;
+
+    // 同一 host、同一 path 上有多条路由时，priority 大的先判断；相同时按配置顺序
+    private int priority;
+
+    // 路由级重试配置，为空时使用全局 retry
+    private RetryConfig retry;
+
+    // 路由级健康检查配置（被动熔断 + 主动探测），为空时使用全局 health
+    private HealthConfig health;
+
+    // 路由级慢启动配置，为空时使用全局 slowStart
+    private SlowStartConfig slowStart;
+
+    // 路由级自适应并发上限配置，为空时使用全局 concurrencyLimit
+    private ConcurrencyLimitConfig concurrencyLimit;
+
+    // 路由级 upstream 超时（毫秒），<= 0 时使用全局 upstreamClient.requestTimeoutMs
+    private long timeoutMs;
+
+    // 路由级过滤器：过滤器名字 -> 配置；ROUTE 范围的过滤器只有写在这里才会执行，GLOBAL 过滤器可以在这里读到路由级配置
+    private Map<String, Map<String, Object>> filters;
+}
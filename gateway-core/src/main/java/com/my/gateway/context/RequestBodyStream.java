@@ -0,0 +1,160 @@
+package com.my.gateway.context;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+
+/**
+ * 流式请求体：把入站连接上陆续到达的 HttpContent 转交给 upstream 连接
+ *
+ * 背压：upstream 连接建立前到达的 chunk 先排队，超过高水位关闭入站 autoRead；
+ * 连接建立后由 Sink 按 upstream 的可写状态调用 pause / resume。
+ *
+ * upstream 连接和入站连接在同一个 eventLoop 上，所有状态单线程读写，无需加锁。
+ */
+public class RequestBodyStream {
+
+    /**
+     * body 的消费方（upstream 连接）
+     */
+    public interface Sink {
+
+        /**
+         * 接管 chunk 的引用计数
+         */
+        void onChunk(ByteBuf chunk);
+
+        void onEnd();
+
+        void onError(Throwable cause);
+    }
+
+    private static final int HIGH_WATER = 16;
+
+    private final Channel inbound;
+
+    private final ArrayDeque<ByteBuf> pending = new ArrayDeque<>();
+
+    private Sink sink;
+
+    // 已收到 LastHttpContent
+    private boolean lastReceived;
+    // 已结束（交付完毕 / 出错 / 丢弃），之后到达的 chunk 直接释放
+    private boolean terminated;
+    private Throwable error;
+
+    public RequestBodyStream(Channel inbound) {
+        this.inbound = inbound;
+    }
+
+    /**
+     * 入站 Handler 调用：收到一个 chunk（接管其引用计数）
+     */
+    public void onContent(HttpContent content) {
+        if (terminated) {
+            ReferenceCountUtil.release(content);
+            return;
+        }
+        boolean last = content instanceof LastHttpContent;
+
+        ByteBuf buf = content.content();
+        if (sink == null) {
+            if (buf.isReadable()) {
+                pending.add(buf);
+            } else {
+                buf.release();
+            }
+            lastReceived |= last;
+            if (pending.size() >= HIGH_WATER) {
+                pause();
+            }
+            return;
+        }
+
+        if (buf.isReadable()) {
+            sink.onChunk(buf);
+        } else {
+            buf.release();
+        }
+        if (last) {
+            terminated = true;
+            sink.onEnd();
+        }
+    }
+
+    /**
+     * 开始消费 body：先交付排队的 chunk，之后到达的直接交付
+     */
+    public void subscribe(Sink s) {
+        if (sink != null || terminated) {
+            // body 只能消费一次，不支持重放（所以流式路由不能重试）
+            s.onError(new IllegalStateException("streaming request body can only be consumed once"));
+            return;
+        }
+        sink = s;
+        if (error != null) {
+            terminated = true;
+            s.onError(error);
+            return;
+        }
+        ByteBuf b;
+        while ((b = pending.poll()) != null) {
+            s.onChunk(b);
+        }
+        if (lastReceived) {
+            terminated = true;
+            s.onEnd();
+            return;
+        }
+        resume();
+    }
+
+    /**
+     * upstream 写不动了：暂停读取客户端
+     */
+    public void pause() {
+        inbound.config().setAutoRead(false);
+    }
+
+    public void resume() {
+        if (!inbound.config().isAutoRead()) {
+            inbound.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * 入站连接断开 / 请求被提前终止
+     */
+    public void abort(Throwable cause) {
+        if (terminated) {
+            return;
+        }
+        releasePending();
+        if (sink != null) {
+            terminated = true;
+            sink.onError(cause);
+        } else {
+            error = cause;
+        }
+    }
+
+    /**
+     * 不再需要 body（例如过滤器已经直接写回响应），剩余 chunk 直接丢弃
+     */
+    public void discard() {
+        terminated = true;
+        releasePending();
+        resume();
+    }
+
+    private void releasePending() {
+        ByteBuf b;
+        while ((b = pending.poll()) != null) {
+            b.release();
+        }
+    }
+}
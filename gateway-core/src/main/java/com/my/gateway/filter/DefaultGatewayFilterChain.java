@@ -1,33 +1,114 @@
 package com.my.gateway.filter;
 
 import com.my.gateway.context.GatewayContext;
-import java.util.List;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 过滤器链，责任链模式
+ *
+ * 路由快照发布时为每条路由编译一次（扁平数组 + 每个过滤器的路由级配置），所有请求共享；
+ * 执行到第几个过滤器记在 GatewayContext.filterIndex 里，请求期间不再创建链对象。
+ *
+ * 非递归：前置阶段在一个循环里逐个执行（trampoline），同步完成的过滤器不会让调用栈变深；
+ * 遇到未完成的 CompletionStage 就先返回，stage 完成后回到请求所在的 eventLoop 从下一个过滤器接着跑。
  */
+@Slf4j
 public class DefaultGatewayFilterChain implements GatewayFilterChain {
 
-    private final List<GatewayFilter> filters;
-    private int index = 0;
+    private final GatewayFilter[] filters;
+    private final Object[] configs;
 
-    public DefaultGatewayFilterChain(List<GatewayFilter> filters) {
+    public DefaultGatewayFilterChain(GatewayFilter[] filters, Object[] configs) {
         this.filters = filters;
+        this.configs = configs;
     }
 
     @Override
-    public void doFilter(GatewayContext ctx) throws Exception {
-        // 如果所有过滤器都执行完了，就结束
-        if (index >= filters.size()) {
+    public void execute(GatewayContext ctx) {
+        ctx.setFilterChain(this);
+        ctx.setFilterIndex(0);
+        proceed(ctx);
+    }
+
+    private void proceed(GatewayContext ctx) {
+        // 有过滤器写回了响应，链就此结束
+        while (!ctx.isWritten()) {
+            int index = ctx.getFilterIndex();
+            // 如果所有过滤器都执行完了，就结束
+            if (index >= filters.length) {
+                return;
+            }
+            ctx.setFilterIndex(index + 1); // 索引后移，异步恢复时从下一个开始
+            ctx.setFilterConfig(configs[index]);
+
+            CompletionStage<?> stage;
+            try {
+                stage = filters[index].onRequest(ctx);
+            } catch (Throwable t) {
+                fail(ctx, filters[index], t);
+                return;
+            }
+            if (stage == null
+                    || (stage instanceof CompletableFuture<?> f && f.isDone() && !f.isCompletedExceptionally())) {
+                continue;
+            }
+
+            // 异步：先让出 eventLoop，stage 完成后再回来
+            GatewayFilter filter = filters[index];
+            EventExecutor loop = ctx.getNettyCtx().executor();
+            stage.whenComplete((v, ex) -> {
+                if (loop.inEventLoop()) {
+                    resume(ctx, filter, ex);
+                } else {
+                    loop.execute(() -> resume(ctx, filter, ex));
+                }
+            });
+            return;
+        }
+    }
+
+    private void resume(GatewayContext ctx, GatewayFilter filter, Throwable ex) {
+        if (ex != null) {
+            fail(ctx, filter, ex);
             return;
         }
+        proceed(ctx);
+    }
 
-        // 取出当前过滤器
-        GatewayFilter filter = filters.get(index);
-        index++; // 索引后移，准备给下一次调用
+    private void fail(GatewayContext ctx, GatewayFilter filter, Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        log.error("[FilterChain] filter {} failed, path={}", filter.name(), ctx.getRequest().getPath(), cause);
+        if (!ctx.isWritten()) {
+            // 发生异常，返回 500
+            ctx.getResponse().setStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            ctx.getResponse().setJsonContent("{\"error\":\"filter " + filter.name() + " failed\"}");
+            ctx.writeResponse();
+        }
+    }
+
+    @Override
+    public void complete(GatewayContext ctx) {
+        for (int i = Math.min(ctx.getFilterIndex(), filters.length) - 1; i >= 0; i--) {
+            ctx.setFilterConfig(configs[i]);
+            try {
+                filters[i].onComplete(ctx);
+            } catch (Throwable t) {
+                log.error("[FilterChain] filter {} onComplete failed", filters[i].name(), t);
+            }
+        }
+    }
+
+    public int size() {
+        return filters.length;
+    }
 
-        // 执行当前过滤器的逻辑
-        // 注意：把 this (当前链对象) 传进去，过滤器内部会调用 chain.doFilter(ctx) 来触发下一次递归
-        filter.doFilter(ctx, this);
+    public GatewayFilter get(int i) {
+        return filters[i];
     }
-}
\ No newline at end of file
+}
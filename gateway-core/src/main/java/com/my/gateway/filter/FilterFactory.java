@@ -1,9 +1,17 @@
 package com.my.gateway.filter;
 
+import com.my.gateway.context.GatewayRoute;
+import lombok.extern.slf4j.Slf4j;
+
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 过滤器注册表 + 按路由编译过滤器链
+ */
+@Slf4j
 public class FilterFactory {
 
     // 静态单例模式
@@ -11,13 +19,16 @@ public class FilterFactory {
 
     private final List<GatewayFilter> filters = new ArrayList<>();
 
+    // 没有匹配到路由的请求走的链
+    private final GatewayFilterChain noRouteChain;
+
     private FilterFactory() {
         // 在这里注册过滤器
         // 1. 监控过滤器 (Demo)
         filters.add(new com.my.gateway.filter.demo.MonitorFilter());
-        filters.add(new com.my.gateway.filter.flow.RouteSetupFilter());
         filters.add(new com.my.gateway.filter.route.RouteFilter());
         filters.add(new com.my.gateway.filter.flow.LoadBalanceFilter());
+        filters.add(new com.my.gateway.filter.flow.RateLimitFilter());
         filters.add(new com.my.gateway.filter.demo.MetricsEndpointFilter());
         filters.add(new com.my.gateway.filter.demo.RoutesEndpointFilter());
 
@@ -26,6 +37,8 @@ public class FilterFactory {
 
         // 按照 Order 排序
         filters.sort(Comparator.comparingInt(GatewayFilter::getOrder));
+
+        noRouteChain = compile(null);
     }
 
     public static FilterFactory getInstance() {
@@ -33,10 +46,48 @@ public class FilterFactory {
     }
 
     /**
-     * 构建一个新的过滤器链
-     * 注意：每次请求都需要一个新的 Chain 对象，因为 Chain 内部有 index 状态
+     * 为一条路由编译过滤器链：GLOBAL 过滤器 + 路由 filters 里启用的 ROUTE 过滤器，按 order 排好
+     *
+     * @param route 为 null 时编译没有匹配到路由的请求用的链
      */
-    public GatewayFilterChain buildFilterChain() {
-        return new DefaultGatewayFilterChain(filters);
+    public GatewayFilterChain compile(GatewayRoute route) {
+        Map<String, Map<String, Object>> routeFilters = route == null ? null : route.getFilters();
+        List<GatewayFilter> chain = new ArrayList<>();
+        List<Object> configs = new ArrayList<>();
+        for (GatewayFilter f : filters) {
+            Map<String, Object> raw = routeFilters == null ? null : routeFilters.get(f.name());
+            boolean enabled = switch (f.scope()) {
+                case GLOBAL -> true;
+                case ROUTE -> routeFilters != null && routeFilters.containsKey(f.name());
+                case ENDPOINT -> false;
+            };
+            if (enabled) {
+                chain.add(f);
+                configs.add(f.compileConfig(route, raw));
+            }
+        }
+        if (routeFilters != null) {
+            for (String name : routeFilters.keySet()) {
+                if (filters.stream().noneMatch(f -> f.name().equals(name) && f.scope() != FilterScope.ENDPOINT)) {
+                    log.warn("[FilterFactory] route {} references unknown filter: {}", route.getId(), name);
+                }
+            }
+        }
+        return new DefaultGatewayFilterChain(chain.toArray(new GatewayFilter[0]), configs.toArray());
+    }
+
+    /**
+     * 管理端点的链：只有端点过滤器自己
+     */
+    public GatewayFilterChain compileEndpoint(GatewayFilter endpoint) {
+        return new DefaultGatewayFilterChain(new GatewayFilter[]{endpoint}, new Object[]{endpoint.compileConfig(null, null)});
+    }
+
+    public List<GatewayFilter> endpoints() {
+        return filters.stream().filter(f -> f.scope() == FilterScope.ENDPOINT).toList();
+    }
+
+    public GatewayFilterChain noRouteChain() {
+        return noRouteChain;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.my.gateway.filter;
+
+/**
+ * 过滤器作用范围，路由快照发布时据此为每条路由编译过滤器链
+ */
+public enum FilterScope {
+
+    // 所有转发路由都执行（也包括没有匹配到路由的请求）
+    GLOBAL,
+
+    // 只在路由配置 filters 里按名字启用时执行
+    ROUTE,
+
+    // 网关自身的管理端点：注册成独立的内置路由（path 见 endpointPath），链上只有它自己
+    ENDPOINT
+}
@@ -1,16 +1,35 @@
 package com.my.gateway.filter;
 
 import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRoute;
 
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 网关过滤器：前置阶段 onRequest + 后置阶段 onComplete
+ *
+ * 两个阶段都在请求所在的 eventLoop 上执行，不能阻塞。需要 I/O（鉴权查询、限流存储、缓存读取等）的过滤器
+ * 返回一个 CompletionStage（阻塞型的调用用 CompletableFuture.supplyAsync(..., 业务线程池) 包一层），
+ * 过滤器链在它完成后回到 eventLoop 继续执行下一个过滤器。
+ */
 public interface GatewayFilter {
 
     /**
-     * 执行过滤逻辑
+     * 前置阶段
      *
-     * @param ctx   网关上下文
-     * @param chain 过滤器链（用于放行到下一个过滤器）
+     * @return null 或已经完成的 stage：立即执行下一个过滤器；
+     *         未完成的 stage：完成后回到 eventLoop 继续，异常完成按 500 处理；
+     *         过滤器自己写回了响应（ctx.isWritten()）时后面的过滤器不再执行
      */
-    void doFilter(GatewayContext ctx, GatewayFilterChain chain) throws Exception;
+    CompletionStage<?> onRequest(GatewayContext ctx) throws Exception;
+
+    /**
+     * 后置阶段：响应已经写回客户端（或请求失败 / 客户端断开）之后执行
+     * 只对前置阶段执行过的过滤器调用，顺序与前置阶段相反
+     */
+    default void onComplete(GatewayContext ctx) {
+    }
 
     /**
      * 过滤器优先级，值越小越先执行
@@ -19,4 +38,33 @@ public interface GatewayFilter {
     default int getOrder() {
         return 0;
     }
+
+    /**
+     * 路由配置 filters 里引用过滤器用的名字
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+
+    default FilterScope scope() {
+        return FilterScope.GLOBAL;
+    }
+
+    /**
+     * ENDPOINT 过滤器对应的路径
+     */
+    default String endpointPath() {
+        return null;
+    }
+
+    /**
+     * 编译期调用：把路由上该过滤器的原始配置解析成自己的配置对象
+     * 请求期间在 onRequest / onComplete 里通过 ctx.getFilterConfig() 取到
+     *
+     * @param route 没有匹配到路由的请求编译默认链时为 null
+     * @param raw   路由 filters 里该过滤器名字下的配置，没有配置时为 null
+     */
+    default Object compileConfig(GatewayRoute route, Map<String, Object> raw) {
+        return raw;
+    }
 }
@@ -3,8 +3,14 @@ package com.my.gateway.filter;
 import com.my.gateway.context.GatewayContext;
 
 public interface GatewayFilterChain {
+
+    /**
+     * 从第一个过滤器开始执行前置阶段（在请求所在的 eventLoop 上调用）
+     */
+    void execute(GatewayContext ctx);
+
     /**
-     * 继续执行链条中的下一个节点
+     * 请求结束（GatewayContext 释放时调用一次）：倒序执行已经执行过前置阶段的过滤器的后置阶段
      */
-    void doFilter(GatewayContext ctx) throws Exception;
+    void complete(GatewayContext ctx);
 }
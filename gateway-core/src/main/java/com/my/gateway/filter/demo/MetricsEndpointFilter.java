@@ -1,27 +1,35 @@
 package com.my.gateway.filter.demo;
 
+import com.my.gateway.filter.FilterScope;
 import com.my.gateway.filter.GatewayFilter;
-import com.my.gateway.filter.GatewayFilterChain;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteTable;
+import com.my.gateway.container.RouteUpstream;
 import com.my.gateway.context.GatewayContext;
+import com.my.gateway.loadbalance.AdaptiveConcurrencyLimit;
+import com.my.gateway.loadbalance.UpstreamLoad;
 import com.my.gateway.metrics.MetricBucket;
 import com.my.gateway.metrics.MetricsRegistry;
+import com.my.gateway.netty.upstream.UpstreamHttpClient;
+import com.my.gateway.netty.upstream.UpstreamPoolStats;
+import com.my.gateway.ratelimit.ClusterRateLimiter;
+import com.my.gateway.ratelimit.RateLimitRegistry;
+import com.my.gateway.ratelimit.RateLimiter;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 public class MetricsEndpointFilter implements GatewayFilter {
 
     @Override
-    public void doFilter(GatewayContext ctx, GatewayFilterChain chain) throws Exception {
-        if (!"/metrics".equals(ctx.getRequest().getPath())) {
-            chain.doFilter(ctx);
-            return;
-        }
-
+    public CompletionStage<?> onRequest(GatewayContext ctx) {
         String json = buildJson();
         ctx.getResponse().setStatus(HttpResponseStatus.OK);
         ctx.getResponse().setJsonContent(json);
         ctx.writeResponse();
+        return null;
     }
 
     private String buildJson() {
@@ -34,6 +42,15 @@ public class MetricsEndpointFilter implements GatewayFilter {
         sb.append(",\"upstreams\":");
         appendBuckets(sb, MetricsRegistry.getInstance().upstreamView());
 
+        sb.append(",\"routeUpstreams\":");
+        appendRouteUpstreams(sb, RouteManager.getInstance().current());
+
+        sb.append(",\"upstreamPools\":");
+        appendPools(sb, UpstreamHttpClient.getInstance().statsView());
+
+        sb.append(",\"rateLimits\":");
+        appendRateLimits(sb, RateLimitRegistry.getInstance().view());
+
         sb.append("}");
         return sb.toString();
     }
@@ -66,9 +83,116 @@ public class MetricsEndpointFilter implements GatewayFilter {
         sb.append("}");
     }
 
+    private void appendRateLimits(StringBuilder sb, Map<String, RateLimiter> view) {
+        sb.append("{");
+        boolean first = true;
+        for (var e : view.entrySet()) {
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+            RateLimiter l = e.getValue();
+            sb.append("\"").append(e.getKey().replace("\"", "'")).append("\":{")
+                    .append("\"rate\":").append(l.getConfig().getRate()).append(",")
+                    .append("\"burst\":").append(l.getConfig().effectiveBurst()).append(",")
+                    .append("\"key\":\"").append(String.valueOf(l.getConfig().getKey()).replace("\"", "'")).append("\",")
+                    .append("\"rejected\":").append(l.rejected()).append(",")
+                    .append("\"evictions\":").append(l.evictions());
+            if (l instanceof ClusterRateLimiter c) {
+                sb.append(",\"store\":\"").append(c.getStore().describe().replace("\"", "'")).append("\",")
+                        .append("\"batch\":").append(c.batch()).append(",")
+                        .append("\"syncs\":").append(c.syncs()).append(",")
+                        .append("\"storeErrors\":").append(c.storeErrors());
+            }
+            sb.append("}");
+        }
+        sb.append("}");
+    }
+
+    /**
+     * 每条路由的 upstream 实时状态：熔断状态、有效权重（慢启动预热）、in-flight、RTT 估计、自适应并发上限
+     */
+    private void appendRouteUpstreams(StringBuilder sb, RouteTable table) {
+        long now = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+        sb.append("{");
+        boolean firstRoute = true;
+        for (RouteRuntime rt : table.getRuntimes()) {
+            if (!firstRoute) {
+                sb.append(",");
+            }
+            firstRoute = false;
+            sb.append("\"").append(rt.getId().replace("\"", "'")).append("\":[");
+            RouteUpstream[] upstreams = rt.getUpstreams();
+            for (int i = 0; i < upstreams.length; i++) {
+                RouteUpstream u = upstreams[i];
+                UpstreamLoad load = u.getLoad();
+                long start = load.warmupStartMs();
+                long remaining = start == 0 ? 0 : Math.max(0, u.getSlowStart().getWindowMs() - (now - start));
+                if (i > 0) {
+                    sb.append(",");
+                }
+                sb.append("{\"url\":\"").append(u.getUrl().replace("\"", "'")).append("\",")
+                        .append("\"state\":\"").append(u.getCircuit().getState()).append("\",")
+                        .append("\"weight\":").append(u.getWeight()).append(",")
+                        .append("\"effectiveWeight\":").append(Math.round(u.effectiveWeight() * 100) / 100.0).append(",")
+                        .append("\"warmingUp\":").append(remaining > 0).append(",")
+                        .append("\"warmupRemainingMs\":").append(remaining).append(",")
+                        .append("\"inflight\":").append(load.inflight()).append(",")
+                        .append("\"ewmaRtMs\":").append(Math.round(load.ewmaNanos(nowNanos) / 10_000d) / 100.0);
+                AdaptiveConcurrencyLimit limit = u.getConcurrencyLimit();
+                if (limit != null) {
+                    sb.append(",\"concurrencyLimit\":").append(limit.limit())
+                            .append(",\"minRttMs\":").append(Math.round(limit.minRttNanos() / 10_000d) / 100.0)
+                            .append(",\"limitRejected\":").append(limit.rejected());
+                }
+                sb.append("}");
+            }
+            sb.append("]");
+        }
+        sb.append("}");
+    }
+
+    private void appendPools(StringBuilder sb, Map<String, UpstreamPoolStats> view) {
+        sb.append("{");
+        boolean first = true;
+        for (var e : view.entrySet()) {
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+
+            String k = e.getKey().replace("\"", "'");
+            UpstreamPoolStats s = e.getValue();
+
+            sb.append("\"").append(k).append("\":{")
+                    .append("\"open\":").append(s.open.get()).append(",")
+                    .append("\"active\":").append(s.active()).append(",")
+                    .append("\"idle\":").append(s.idle.get()).append(",")
+                    .append("\"streams\":").append(s.streams.get()).append(",")
+                    .append("\"pending\":").append(s.pending.get()).append(",")
+                    .append("\"created\":").append(s.created.sum()).append(",")
+                    .append("\"reused\":").append(s.reused.sum()).append(",")
+                    .append("\"evicted\":").append(s.evicted.sum()).append(",")
+                    .append("\"connectFailed\":").append(s.connectFailed.sum()).append(",")
+                    .append("\"rejected\":").append(s.rejected.sum())
+                    .append("}");
+        }
+        sb.append("}");
+    }
+
+    @Override
+    public FilterScope scope() {
+        return FilterScope.ENDPOINT;
+    }
+
+    @Override
+    public String endpointPath() {
+        return "/metrics";
+    }
+
     @Override
     public int getOrder() {
-        // 放在很前面，避免走后续链路
         return -200;
     }
 }
@@ -1,28 +1,51 @@
 package com.my.gateway.filter.demo;
 
 import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.filter.FilterScope;
 import com.my.gateway.filter.GatewayFilter;
-import com.my.gateway.filter.GatewayFilterChain;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 耗时监控（Demo）：路由 filters 里配置 monitor 才启用
+ *
+ * <pre>
+ * filters:
+ *   monitor:
+ *     slowThresholdMs: 200   # 超过阈值打 INFO，其余只在 DEBUG 级别输出
+ * </pre>
+ *
+ * 耗时在后置阶段统计：响应真正写回客户端之后才执行，包含 upstream 往返和重试的时间
+ */
 @Slf4j
 public class MonitorFilter implements GatewayFilter {
 
-    @Override
-    public void doFilter(GatewayContext ctx, GatewayFilterChain chain) throws Exception {
-        long startTime = System.currentTimeMillis();
+    private static final long DEFAULT_SLOW_THRESHOLD_MS = 1000;
 
+    @Override
+    public CompletionStage<?> onRequest(GatewayContext ctx) {
         // --- 前置逻辑 ---
-        log.info("[MonitorFilter] Request Start: path={}", ctx.getRequest().getPath());
-
-        // 执行下一个过滤器 (递归调用)
-        chain.doFilter(ctx);
-
-        ctx.getResponse().setJsonContent("Filter Works!");
+        if (log.isDebugEnabled()) {
+            log.debug("[MonitorFilter] Request Start: path={}", ctx.getRequest().getPath());
+        }
+        return null;
+    }
 
-        // --- 后置逻辑 (等后面的过滤器都执行完，栈弹回来时执行) ---
-        long endTime = System.currentTimeMillis();
-        log.info("[MonitorFilter] Request End: cost={}ms", (endTime - startTime));
+    @Override
+    public void onComplete(GatewayContext ctx) {
+        // --- 后置逻辑 ---
+        long slowThresholdMs = (Long) ctx.getFilterConfig();
+        long costMs = (System.nanoTime() - ctx.getStartNano()) / 1_000_000L;
+        int status = ctx.getFinalStatusCode() != 0 ? ctx.getFinalStatusCode() : ctx.getResponse().getStatus().code();
+        if (costMs >= slowThresholdMs) {
+            log.info("[MonitorFilter] slow request: path={}, status={}, upstream={}, cost={}ms",
+                    ctx.getRequest().getPath(), status, ctx.getFinalUpstream(), costMs);
+        } else if (log.isDebugEnabled()) {
+            log.debug("[MonitorFilter] Request End: status={}, cost={}ms", status, costMs);
+        }
     }
 
     @Override
@@ -30,4 +53,20 @@ public class MonitorFilter implements GatewayFilter {
         // 优先级最高，最先执行前置逻辑，最后执行后置逻辑
         return -100;
     }
-}
\ No newline at end of file
+
+    @Override
+    public String name() {
+        return "monitor";
+    }
+
+    @Override
+    public FilterScope scope() {
+        return FilterScope.ROUTE;
+    }
+
+    @Override
+    public Object compileConfig(GatewayRoute route, Map<String, Object> raw) {
+        Object v = raw == null ? null : raw.get("slowThresholdMs");
+        return v instanceof Number n ? n.longValue() : DEFAULT_SLOW_THRESHOLD_MS;
+    }
+}
@@ -1,27 +1,26 @@
 package com.my.gateway.filter.demo;
 
-import com.my.gateway.config.RouteRegistry;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteTable;
 import com.my.gateway.context.GatewayContext;
 import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.filter.FilterScope;
 import com.my.gateway.filter.GatewayFilter;
-import com.my.gateway.filter.GatewayFilterChain;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 public class RoutesEndpointFilter implements GatewayFilter {
 
     @Override
-    public void doFilter(GatewayContext ctx, GatewayFilterChain chain) throws Exception {
-        if (!"/routes".equals(ctx.getRequest().getPath())) {
-            chain.doFilter(ctx);
-            return;
-        }
-
-        List<GatewayRoute> routes = RouteRegistry.getInstance().getRoutes();
+    public CompletionStage<?> onRequest(GatewayContext ctx) {
+        RouteTable table = RouteManager.getInstance().current();
+        List<GatewayRoute> routes = table.getRoutes();
 
         StringBuilder sb = new StringBuilder();
-        sb.append("{\"size\":").append(routes.size()).append(",\"routes\":[");
+        sb.append("{\"version\":").append(table.getVersion())
+                .append(",\"size\":").append(routes.size()).append(",\"routes\":[");
         for (int i = 0; i < routes.size(); i++) {
             GatewayRoute r = routes.get(i);
             if (i > 0) sb.append(",");
@@ -34,6 +33,17 @@ public class RoutesEndpointFilter implements GatewayFilter {
         ctx.getResponse().setStatus(HttpResponseStatus.OK);
         ctx.getResponse().setJsonContent(sb.toString());
         ctx.writeResponse();
+        return null;
+    }
+
+    @Override
+    public FilterScope scope() {
+        return FilterScope.ENDPOINT;
+    }
+
+    @Override
+    public String endpointPath() {
+        return "/routes";
     }
 
     @Override
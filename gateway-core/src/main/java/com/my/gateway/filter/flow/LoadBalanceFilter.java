@@ -1,91 +1,101 @@
 package com.my.gateway.filter.flow;
 
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
 import com.my.gateway.context.GatewayContext;
-import com.my.gateway.context.GatewayRoute;
-import com.my.gateway.context.UpstreamInstance;
 import com.my.gateway.filter.GatewayFilter;
-import com.my.gateway.filter.GatewayFilterChain;
-import com.my.gateway.health.PassiveHealthManager;
-import com.my.gateway.loadbalance.LoadBalancerFactory;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 @Slf4j
 public class LoadBalanceFilter implements GatewayFilter {
 
     @Override
-    public void doFilter(GatewayContext ctx, GatewayFilterChain chain) throws Exception {
-        GatewayRoute route = ctx.getRoute();
-        if (route == null) {
-            chain.doFilter(ctx);
-            return;
+    public CompletionStage<?> onRequest(GatewayContext ctx) {
+        RouteRuntime runtime = ctx.getRuntime();
+        if (runtime == null) {
+            return null;
         }
 
-        // 复用 chooseUpstream：包含「排除已试过 + health.tryAcquire + lb选择」
-        String chosen = chooseUpstream(ctx);
+        // 复用 chooseUpstream：包含「lb选择 + 排除已试过 + 并发上限 + 熔断许可」
+        RouteUpstream chosen = chooseUpstream(ctx);
 
         if (chosen == null) {
             // 这里区分一下：是没配置 upstream，还是全都不健康/都试过了
-            List<UpstreamInstance> upstreams = route.getUpstreams();
-            if ((upstreams == null || upstreams.isEmpty()) && route.getBackendUrl() == null) {
+            if (runtime.getUpstreams().length == 0) {
                 ctx.getResponse().setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
                 ctx.getResponse().setJsonContent("{\"error\":\"No upstreams configured\"}");
             } else {
                 ctx.getResponse().setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
-                ctx.getResponse().setJsonContent("{\"error\":\"No available upstream (all unhealthy or already tried)\"}");
+                ctx.getResponse().setJsonContent("{\"error\":\"No available upstream (all unhealthy, already tried or at concurrency limit)\"}");
             }
             ctx.writeResponse();
-            return;
+            return null;
         }
 
         ctx.setSelectedUpstream(chosen);
 
         // 关键：把本次 chosen 记入 tried，保证重试不会再选回同一个
-        ctx.getTriedUpstreams().add(chosen);
-
-        chain.doFilter(ctx);
+        ctx.markTried(chosen);
+        return null;
     }
 
     /**
-     * 选择一个上游实例
-     * @param ctx
-     * @return
+     * 选择一个上游实例：先由负载均衡器在可用集合里选，再只对选中的实例预留 in-flight、申请熔断许可
+     *
+     * 选中的实例已经试过、到了并发上限，或者半开探测名额已满时，从它在可用集合里的位置往后找第一个满足条件的；
+     * 都不满足时返回 null，调用方直接失败（不在网关里排队）；
+     * 不会为没选中的实例消耗半开探测名额，也不分配对象。
+     * 返回的实例已经预留好（记在 ctx 上），由 RouteFilter 发出请求时接手；没发出就结束的请求在 ctx.release 时归还。
+     * 请求已经结束（客户端断开）时不再选，避免重试给已经走了的客户端再发一次
      */
-    public static String chooseUpstream(GatewayContext ctx) {
-        GatewayRoute route = ctx.getRoute();
-        if (route == null) {
+    public static RouteUpstream chooseUpstream(GatewayContext ctx) {
+        RouteRuntime runtime = ctx.getRuntime();
+        if (runtime == null || ctx.isCompleted()) {
             return null;
         }
 
-        String routeId = route.getId() == null ? "default" : route.getId();
-        PassiveHealthManager hm = PassiveHealthManager.getInstance();
-
-        List<UpstreamInstance> upstreams = route.getUpstreams();
-        if ((upstreams == null || upstreams.isEmpty()) && route.getBackendUrl() != null) {
-            return route.getBackendUrl();
-        }
-        if (upstreams == null || upstreams.isEmpty()) {
+        List<RouteUpstream> healthy = runtime.getHealthy().list();
+        int n = healthy.size();
+        if (n == 0) {
             return null;
         }
 
-        // 过滤：健康 + 没试过
-        List<UpstreamInstance> candidates = upstreams.stream()
-                .filter(u -> !ctx.getTriedUpstreams().contains(u.getUrl()))
-                .filter(u -> hm.tryAcquire(routeId, u.getUrl()))
-                .toList();
-
-        if (candidates.isEmpty()) {
-            return null;
+        RouteUpstream chosen = runtime.getLoadBalancer().choose(healthy, ctx);
+        if (!ctx.isTried(chosen) && reserve(ctx, chosen)) {
+            return chosen;
         }
+        int start = runtime.getHealthy().positionOf(healthy, chosen);
+        for (int i = 1; i < n; i++) {
+            RouteUpstream u = healthy.get((start + i) % n);
+            if (!ctx.isTried(u) && reserve(ctx, u)) {
+                return u;
+            }
+        }
+        return null;
+    }
 
-        return LoadBalancerFactory.get(route.getLb()).choose(candidates, ctx);
+    /**
+     * 先按并发上限预留 in-flight，再申请熔断许可（到了上限的实例不占半开探测名额），许可没拿到就撤销预留
+     */
+    private static boolean reserve(GatewayContext ctx, RouteUpstream u) {
+        if (!u.tryReserve()) {
+            return false;
+        }
+        if (!u.getCircuit().tryAcquire()) {
+            u.cancelReservation();
+            return false;
+        }
+        ctx.reserve(u);
+        return true;
     }
 
     @Override
     public int getOrder() {
-        // RouteSetupFilter 是 0 的话，这里给 10，确保它在路由匹配之后
+        // 路由匹配在进入过滤器链之前完成；给 10，前面留位置给鉴权 / 限流等前置过滤器
         return 10;
     }
 
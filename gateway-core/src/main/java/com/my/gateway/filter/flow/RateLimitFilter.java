@@ -0,0 +1,155 @@
+package com.my.gateway.filter.flow;
+
+import com.my.gateway.config.RateLimitConfig;
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayResponse;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.filter.FilterScope;
+import com.my.gateway.filter.GatewayFilter;
+import com.my.gateway.ratelimit.RateLimitRegistry;
+import com.my.gateway.ratelimit.RateLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AsciiString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 令牌桶限流：路由 filters 里配置 rateLimit 才启用（配置项见 RateLimitConfig）
+ *
+ * 按客户端 IP / 指定 header 的值 / 整条路由限流，超出直接回 429，不会走到负载均衡和 upstream。
+ * 429 的 body 启动时编码好放在一块不可释放的内存里，拒绝时只做一次 duplicate。
+ */
+@Slf4j
+public class RateLimitFilter implements GatewayFilter {
+
+    public static final String NAME = "rateLimit";
+
+    private static final ByteBuf REJECT_BODY = Unpooled.unreleasableBuffer(Unpooled.directBuffer()
+            .writeBytes("{\"error\":\"too many requests\"}".getBytes(StandardCharsets.UTF_8)).asReadOnly());
+
+    // header 没带时共用的 key
+    private static final String MISSING_KEY = "";
+
+    /**
+     * 编译后的路由级配置
+     */
+    private static final class Rule {
+        final RateLimiter limiter;
+        // 按 header 取 key，否则为 null
+        final AsciiString header;
+        // 按路由限流（所有请求一个桶）
+        final boolean perRoute;
+        // Retry-After（秒）：至少等一个令牌的时间
+        final AsciiString retryAfter;
+
+        Rule(RateLimiter limiter, AsciiString header, boolean perRoute, AsciiString retryAfter) {
+            this.limiter = limiter;
+            this.header = header;
+            this.perRoute = perRoute;
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onRequest(GatewayContext ctx) {
+        Rule rule = (Rule) ctx.getFilterConfig();
+        if (rule == null) {
+            return null;
+        }
+        String key;
+        if (rule.perRoute) {
+            key = MISSING_KEY;
+        } else if (rule.header != null) {
+            key = ctx.getRequest().getHeaders().get(rule.header);
+            if (key == null) {
+                key = MISSING_KEY;
+            }
+        } else {
+            key = ctx.getRequest().getClientIp();
+            if (key == null) {
+                key = MISSING_KEY;
+            }
+        }
+        if (rule.limiter.tryAcquire(key)) {
+            return null;
+        }
+
+        GatewayResponse resp = ctx.getResponse();
+        resp.setStatus(HttpResponseStatus.TOO_MANY_REQUESTS);
+        resp.getHeaders().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        resp.getHeaders().set(HttpHeaderNames.RETRY_AFTER, rule.retryAfter);
+        resp.setBody(REJECT_BODY.duplicate());
+        ctx.writeResponse();
+        return null;
+    }
+
+    @Override
+    public int getOrder() {
+        // 在监控之后（被拒绝的请求也有耗时日志）、负载均衡之前
+        return -50;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public FilterScope scope() {
+        return FilterScope.ROUTE;
+    }
+
+    @Override
+    public Object compileConfig(GatewayRoute route, Map<String, Object> raw) {
+        RateLimitConfig c = parse(raw);
+        if (c.getRate() <= 0) {
+            log.warn("[RateLimitFilter] route {} has rateLimit without a positive rate, limiting disabled",
+                    route == null ? null : route.getId());
+            return null;
+        }
+        String header = c.headerName();
+        long retryAfter = Math.max(1, (long) Math.ceil(1.0 / c.getRate()));
+        return new Rule(RateLimitRegistry.getInstance().limiter(route, c),
+                header == null || header.isEmpty() ? null : AsciiString.cached(header),
+                c.isPerRoute(), AsciiString.cached(Long.toString(retryAfter)));
+    }
+
+    static RateLimitConfig parse(Map<String, Object> raw) {
+        RateLimitConfig c = new RateLimitConfig();
+        if (raw == null) {
+            return c;
+        }
+        if (raw.get("rate") instanceof Number n) {
+            c.setRate(n.doubleValue());
+        }
+        if (raw.get("burst") instanceof Number n) {
+            c.setBurst(n.longValue());
+        }
+        if (raw.get("key") != null) {
+            c.setKey(raw.get("key").toString());
+        }
+        if (raw.get("maxKeys") instanceof Number n) {
+            c.setMaxKeys(n.intValue());
+        }
+        if (raw.get("mode") != null) {
+            c.setMode(raw.get("mode").toString());
+        }
+        if (raw.get("store") != null) {
+            c.setStore(raw.get("store").toString());
+        }
+        if (raw.get("syncIntervalMs") instanceof Number n) {
+            c.setSyncIntervalMs(n.longValue());
+        }
+        if (raw.get("batch") instanceof Number n) {
+            c.setBatch(n.longValue());
+        }
+        return c;
+    }
+}
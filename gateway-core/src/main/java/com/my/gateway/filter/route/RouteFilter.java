@@ -1,19 +1,31 @@
 package com.my.gateway.filter.route;
 
+import com.my.gateway.container.RetryPolicy;
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
 import com.my.gateway.context.GatewayContext;
-import com.my.gateway.context.GatewayRoute;
 import com.my.gateway.filter.GatewayFilter;
-import com.my.gateway.filter.GatewayFilterChain;
-import com.my.gateway.health.PassiveHealthManager;
-import com.my.gateway.netty.AsyncHttpHelper;
+import com.my.gateway.health.UpstreamCircuitBreaker;
+import com.my.gateway.loadbalance.AdaptiveConcurrencyLimit;
+import com.my.gateway.loadbalance.UpstreamLoad;
+import com.my.gateway.context.GatewayRequest;
+import com.my.gateway.netty.UpstreamResponseRelay;
+import com.my.gateway.netty.upstream.UpstreamAddress;
+import com.my.gateway.netty.upstream.UpstreamHttpClient;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.AsciiString;
 import lombok.extern.slf4j.Slf4j;
-import org.asynchttpclient.Request;
-import org.asynchttpclient.RequestBuilder;
-import org.asynchttpclient.Response;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 路由过滤器：负责将请求转发到后端服务
@@ -22,160 +34,240 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class RouteFilter implements GatewayFilter {
 
+    // Netty 里对应的 HttpHeaderNames 常量已废弃（RFC 7540 禁用），HTTP/1.1 上仍要剔除；KEEP_ALIVE 响应方向（UpstreamResponseRelay）也用
+    public static final AsciiString KEEP_ALIVE = AsciiString.cached("keep-alive");
+    private static final AsciiString PROXY_CONNECTION = AsciiString.cached("proxy-connection");
+
+    // 逐跳头：只对客户端到网关这一跳有效，不转发给 upstream
+    private static final CharSequence[] HOP_BY_HOP_HEADERS = {
+            HttpHeaderNames.CONNECTION,
+            KEEP_ALIVE,
+            PROXY_CONNECTION,
+            HttpHeaderNames.TE,
+            HttpHeaderNames.UPGRADE,
+            HttpHeaderNames.PROXY_AUTHORIZATION,
+    };
+
     @Override
-    public void doFilter(GatewayContext ctx, GatewayFilterChain chain) throws Exception {
-        // RouteFilter 最后一环，不再 chain.doFilter
+    public CompletionStage<?> onRequest(GatewayContext ctx) {
+        // RouteFilter 是最后一环：发起转发后立即返回，响应写回时（GatewayContext 释放）才进入后置阶段
 
         // 第一次 upstream 已经在 LoadBalanceFilter 选过；兜底再选一次
         if (ctx.getSelectedUpstream() == null) {
-            String chosen = com.my.gateway.filter.flow.LoadBalanceFilter.chooseUpstream(ctx);
+            RouteUpstream chosen = com.my.gateway.filter.flow.LoadBalanceFilter.chooseUpstream(ctx);
             if (chosen == null) {
                 ctx.getResponse().setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
                 ctx.getResponse().setJsonContent("{\"error\":\"No upstream available\"}");
                 ctx.writeResponse();
-                return;
+                return null;
             }
             ctx.setSelectedUpstream(chosen);
-            ctx.getTriedUpstreams().add(chosen);
+            ctx.markTried(chosen);
         }
 
-        int maxRetries = getRetryMaxRetries();
-        boolean canRetry = canRetryRequest(ctx);
+        // 重试策略在路由快照发布时已经解析好
+        GatewayRequest req = ctx.getRequest();
+        int maxRetries = ctx.getRuntime().getRetryPolicy().maxRetries(req.getMethod(), req.isStreaming());
 
-        attempt(ctx, canRetry ? maxRetries : 0);
-    }
-
-    private int getRetryMaxRetries() {
-        var cfg = com.my.gateway.config.ConfigLoader.getInstance().getConfig();
-        if (cfg == null || cfg.getRetry() == null) {
-            return 0;
-        }
-        return Math.max(0, cfg.getRetry().getMaxRetries());
+        attempt(ctx, maxRetries);
+        return null;
     }
 
-    private boolean canRetryRequest(GatewayContext ctx) {
-        var cfg = com.my.gateway.config.ConfigLoader.getInstance().getConfig();
-        if (cfg == null || cfg.getRetry() == null) {
-            return false;
+    /**
+     * 构造发往 upstream 的请求头：路径拼上 upstream 的基础路径（带上原始 query），逐跳头不透传
+     */
+    private HttpRequest buildRequest(GatewayContext ctx, UpstreamAddress address) {
+        GatewayRequest req = ctx.getRequest();
+        String uri = address.getBasePath().isEmpty() ? req.getUri() : address.getBasePath() + req.getUri();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(req.getHeaders());
+        for (CharSequence h : HOP_BY_HOP_HEADERS) {
+            headers.remove(h);
         }
-
-        if (!cfg.getRetry().isIdempotentOnly()) {
-            return true;
-        }
-
-        var m = ctx.getRequest().getMethod().name();
-        // 幂等：GET/HEAD/OPTIONS/PUT/DELETE（很多网关只放 GET/HEAD，保守起见可以只放 GET/HEAD）
-        return m.equals("GET") || m.equals("HEAD") || m.equals("OPTIONS") || m.equals("PUT") || m.equals("DELETE");
-    }
-
-    private boolean shouldRetryByStatus(int code) {
-        var cfg = com.my.gateway.config.ConfigLoader.getInstance().getConfig();
-        if (cfg == null || cfg.getRetry() == null) {
-            return false;
+        // HTTP/2 入站时 Netty 转换出来的 x-http2-* 扩展头只在网关内部有意义
+        for (HttpConversionUtil.ExtensionHeaderNames h : HttpConversionUtil.ExtensionHeaderNames.values()) {
+            headers.remove(h.text());
         }
-        return cfg.getRetry().getRetryOnStatus() != null && cfg.getRetry().getRetryOnStatus().contains(code);
-    }
-
-    private long backoffMs() {
-        var cfg = com.my.gateway.config.ConfigLoader.getInstance().getConfig();
-        if (cfg == null || cfg.getRetry() == null) {
-            return 0;
-        }
-        return Math.max(0, cfg.getRetry().getBackoffMs());
-    }
-
-
-    private org.asynchttpclient.Request buildRequest(GatewayContext ctx, String baseUrl) {
-        String url = baseUrl + ctx.getRequest().getPath();
-
-        var builder = new org.asynchttpclient.RequestBuilder(ctx.getRequest().getMethod().name());
-        builder.setUrl(url);
-
-        ctx.getRequest().getHeaders().forEach(h -> builder.addHeader(h.getKey(), h.getValue()));
-
-        String body = ctx.getRequest().getBody();
-        if (body != null && !body.isEmpty()) {
-            builder.setBody(body);
+        headers.set(HttpHeaderNames.HOST, address.getHostHeader());
+
+        if (!req.isStreaming()) {
+            // 聚合后的 body 长度已知，统一用 Content-Length
+            headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+            int len = req.getFullHttpRequest().content().readableBytes();
+            if (len > 0 || HttpUtil.isContentLengthSet(req.getHttpRequest())) {
+                headers.set(HttpHeaderNames.CONTENT_LENGTH, len);
+            }
         }
-        return builder.build();
+        // 流式模式保留客户端的 Content-Length / Transfer-Encoding，body 原样逐块转发
+        return new DefaultHttpRequest(HttpVersion.HTTP_1_1, req.getMethod(), uri, headers);
     }
 
-    private void recordMetrics(GatewayContext ctx, String routeId, String upstream, int statusCode) {
+    /**
+     * 最终出口：路由指标按整个请求的耗时记，upstream 指标按本次尝试的耗时记
+     */
+    private void recordMetrics(GatewayContext ctx, RouteUpstream upstream, int statusCode, long attemptMs) {
         long rtMs = (System.nanoTime() - ctx.getStartNano()) / 1_000_000L;
 
         // 可选：写回到 ctx，方便后续扩展
         ctx.setFinalStatusCode(statusCode);
-        ctx.setFinalUpstream(upstream);
+        ctx.setFinalUpstream(upstream.getUrl());
 
-        com.my.gateway.metrics.MetricsRegistry.getInstance()
-                .record(routeId, upstream, statusCode, rtMs);
+        // 指标桶在路由快照发布时已经挂到 runtime / upstream 上
+        ctx.getRuntime().getMetrics().record(statusCode, rtMs);
+        upstream.getMetrics().record(statusCode, attemptMs);
     }
 
 
     private void attempt(GatewayContext ctx, int remainingRetries) {
-        String routeId = (ctx.getRoute() != null && ctx.getRoute().getId() != null) ? ctx.getRoute().getId() : "default";
-        String upstream = ctx.getSelectedUpstream();
-
-        org.asynchttpclient.Request downstreamRequest = buildRequest(ctx, upstream);
-        var future = com.my.gateway.netty.AsyncHttpHelper.getInstance().executeRequest(downstreamRequest);
-
-        future.whenComplete((resp, ex) -> {
-            if (ex != null) {
-                com.my.gateway.health.PassiveHealthManager.getInstance().onFailure(routeId, upstream);
-
-                if (remainingRetries > 0) {
-                    String next = com.my.gateway.filter.flow.LoadBalanceFilter.chooseUpstream(ctx);
-                    if (next != null) {
-                        ctx.setSelectedUpstream(next);
-                        ctx.getTriedUpstreams().add(next);
-                        scheduleRetry(ctx, remainingRetries - 1);
-                        return; // 继续重试，不打点
+        RouteRuntime runtime = ctx.getRuntime();
+        RouteUpstream upstream = ctx.getSelectedUpstream();
+        UpstreamCircuitBreaker circuit = upstream.getCircuit();
+        RetryPolicy retry = runtime.getRetryPolicy();
+
+        // 接手负载均衡时预留的 in-flight：之后不论这次尝试怎么结束都由 complete() 减一次
+        if (ctx.claimReservation(upstream) == null) {
+            // 重试退避期间请求已经结束，预留已在 ctx.release 时归还
+            return;
+        }
+
+        UpstreamAddress address = upstream.getAddress();
+        if (address == null) {
+            log.error("[RouteFilter] invalid upstream url: {}", upstream.getUrl());
+            upstream.cancelReservation();
+            circuit.release();
+            recordMetrics(ctx, upstream, HttpResponseStatus.BAD_GATEWAY.code(), 0);
+            ctx.getResponse().setStatus(HttpResponseStatus.BAD_GATEWAY);
+            ctx.getResponse().setJsonContent("{\"error\":\"invalid upstream\"}");
+            ctx.writeResponse();
+            return;
+        }
+        GatewayRequest req = ctx.getRequest();
+        ByteBuf body = req.isStreaming() ? null : req.getFullHttpRequest().content().retainedDuplicate();
+
+        // in-flight 在选中时已经 +1，本次尝试结束时（不论怎么结束）-1，且只减一次
+        UpstreamLoad load = upstream.getLoad();
+        AdaptiveConcurrencyLimit limit = upstream.getConcurrencyLimit();
+        long dispatchNanos = System.nanoTime();
+
+        // upstream 连接复用入站 channel 所在的 eventLoop：整个请求生命周期都在同一个线程上
+        UpstreamHttpClient.getInstance().execute(ctx.getNettyCtx().channel().eventLoop(), address,
+                buildRequest(ctx, address), body, req.getBodyStream(),
+                new UpstreamResponseRelay(ctx, upstream.getUrl(), runtime.getResponseBufferSize(),
+                        new UpstreamResponseRelay.Listener() {
+                    private boolean completed;
+                    private boolean observed;
+                    private boolean reported;
+
+                    // RTT 采样：收到响应头或失败时记一次（和熔断器的成功 / 失败上报在同一处，耗时也交给熔断器判定慢调用）
+                    // drop：超时 / 连接错误，自适应并发上限据此退让
+                    private long observe(boolean drop) {
+                        long now = System.nanoTime();
+                        long rt = now - dispatchNanos;
+                        if (!observed) {
+                            observed = true;
+                            load.observe(rt);
+                            if (limit != null) {
+                                limit.onSample(now, rt, load.inflight(), drop);
+                            }
+                        }
+                        return rt;
                     }
-                }
 
-                // 最终失败出口：502
-                int finalCode = HttpResponseStatus.BAD_GATEWAY.code();
-                recordMetrics(ctx, routeId, upstream, finalCode);
+                    private long attemptMs() {
+                        return (System.nanoTime() - dispatchNanos) / 1_000_000L;
+                    }
 
-                ctx.getResponse().setStatus(HttpResponseStatus.BAD_GATEWAY);
-                ctx.getResponse().setJsonContent("{\"error\":\"upstream error: " + safeMsg(ex.getMessage()) + "\"}");
-                ctx.writeResponse();
-                return;
-            }
+                    private void complete() {
+                        if (!completed) {
+                            completed = true;
+                            load.onComplete();
+                        }
+                    }
 
-            int code = resp.getStatusCode();
+                    // 熔断器每次尝试只上报一次：响应头到了就按状态码算，之后 body 失败 / 取消不再上报，
+                    // 否则 CallWindow 把一次调用记两次，半开状态下探测名额也会多还一次
+                    private void report(boolean failure, long rt) {
+                        if (!reported) {
+                            reported = true;
+                            if (failure) {
+                                circuit.onFailure(rt);
+                            } else {
+                                circuit.onSuccess(rt);
+                            }
+                        }
+                    }
 
-            if (code >= 500) {
-                com.my.gateway.health.PassiveHealthManager.getInstance().onFailure(routeId, upstream);
-            } else {
-                com.my.gateway.health.PassiveHealthManager.getInstance().onSuccess(routeId, upstream);
-            }
+                    @Override
+                    public boolean onStatus(int code) {
+                        report(code >= 500, observe(false));
+
+                        // 触发重试：仅对配置的 502/503/504 等（只看状态码，body 直接丢弃）
+                        if (code >= 500 && remainingRetries > 0 && retry.retryOn(code)) {
+                            RouteUpstream next = com.my.gateway.filter.flow.LoadBalanceFilter.chooseUpstream(ctx);
+                            if (next != null) {
+                                ctx.setSelectedUpstream(next);
+                                ctx.markTried(next);
+                                complete();
+                                // 放弃的这次尝试只记到 upstream 指标上（离群检测要看到每个实例的每次失败）
+                                upstream.getMetrics().record(code, attemptMs());
+                                scheduleRetry(ctx, remainingRetries - 1);
+                                return false; // 继续重试，不打路由指标
+                            }
+                        }
+                        return true;
+                    }
 
-            // 触发重试：仅对配置的 502/503/504 等
-            if (code >= 500 && remainingRetries > 0 && shouldRetryByStatus(code)) {
-                String next = com.my.gateway.filter.flow.LoadBalanceFilter.chooseUpstream(ctx);
-                if (next != null) {
-                    ctx.setSelectedUpstream(next);
-                    ctx.getTriedUpstreams().add(next);
-                    scheduleRetry(ctx, remainingRetries - 1);
-                    return; // 继续重试，不打点
-                }
-            }
+                    @Override
+                    public void onFinish(int code) {
+                        complete();
+                        // 最终成功/最终不重试出口：记录指标
+                        recordMetrics(ctx, upstream, code, attemptMs());
+                    }
 
-            // 最终成功/最终不重试出口：记录指标
-            recordMetrics(ctx, routeId, upstream, code);
+                    @Override
+                    public void onFailure(Throwable ex, boolean committed) {
+                        long rt = observe(true);
+                        complete();
+                        report(true, rt);
+
+                        if (!committed && remainingRetries > 0) {
+                            RouteUpstream next = com.my.gateway.filter.flow.LoadBalanceFilter.chooseUpstream(ctx);
+                            if (next != null) {
+                                ctx.setSelectedUpstream(next);
+                                ctx.markTried(next);
+                                upstream.getMetrics().record(HttpResponseStatus.BAD_GATEWAY.code(), attemptMs());
+                                scheduleRetry(ctx, remainingRetries - 1);
+                                return; // 继续重试，不打路由指标
+                            }
+                        }
+
+                        // 最终失败出口：502
+                        int finalCode = HttpResponseStatus.BAD_GATEWAY.code();
+                        recordMetrics(ctx, upstream, finalCode, attemptMs());
+
+                        if (!committed) {
+                            ctx.getResponse().setStatus(HttpResponseStatus.BAD_GATEWAY);
+                            ctx.getResponse().setJsonContent("{\"error\":\"upstream error: " + safeMsg(ex.getMessage()) + "\"}");
+                            ctx.writeResponse();
+                        }
+                    }
 
-            ctx.getResponse().setStatus(HttpResponseStatus.valueOf(code));
-            ctx.getResponse().getHeaders().add(io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE, resp.getContentType());
-            ctx.getResponse().getHeaders().add("X-Gateway-Upstream", upstream);
-            ctx.getResponse().setContent(resp.getResponseBody());
-            ctx.writeResponse();
-        });
+                    @Override
+                    public void onCancel() {
+                        complete();
+                        // 没有结果，不算成功也不算失败，归还半开探测名额（已经按响应头上报过的不再归还）
+                        if (!reported) {
+                            reported = true;
+                            circuit.release();
+                        }
+                    }
+                }), runtime.getTimeoutMs());
     }
 
 
     private void scheduleRetry(GatewayContext ctx, int remaining) {
-        long delay = backoffMs();
+        long delay = ctx.getRuntime().getRetryPolicy().getBackoffMs();
         if (delay <= 0) {
             attempt(ctx, remaining);
             return;
@@ -0,0 +1,228 @@
+package com.my.gateway.health;
+
+import com.my.gateway.config.ActiveHealthConfig;
+import com.my.gateway.config.HealthConfig;
+import com.my.gateway.netty.upstream.UpstreamAddress;
+import com.my.gateway.netty.upstream.UpstreamExchange;
+import com.my.gateway.netty.upstream.UpstreamHttpClient;
+import com.my.gateway.netty.upstream.UpstreamResponseListener;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主动健康检查
+ *
+ * 每个（路由, upstream）一个探测任务，固定在 worker 组里的一个 eventLoop 上用定时任务驱动，
+ * 探测请求走 UpstreamHttpClient 的同一套连接池（keep-alive 连接复用，不额外开线程 / 连接池）。
+ * 首次探测在一个间隔内随机打散、之后每次间隔 ±10% 抖动，几千个 upstream 的探测均匀分布在时间轴上，不会同一时刻一起发。
+ *
+ * 探测结果驱动该 upstream 的熔断器：连续失败 unhealthyThreshold 次 -> OPEN，连续成功 healthyThreshold 次 -> CLOSED，
+ * 状态变化照常通知路由的可用 upstream 列表（以及慢启动）。
+ */
+@Slf4j
+public class ActiveHealthChecker {
+
+    private static final ActiveHealthChecker INSTANCE = new ActiveHealthChecker();
+
+    private static final String USER_AGENT = "my-gateway-health-check";
+
+    // key = routeId + "@" + url
+    private final Map<String, Probe> probes = new ConcurrentHashMap<>();
+
+    // 服务启动后才有 eventLoop；之前注册的探测在 start 时统一开始
+    private volatile EventLoopGroup group;
+
+    private ActiveHealthChecker() {}
+
+    public static ActiveHealthChecker getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isEnabled(HealthConfig hc) {
+        ActiveHealthConfig a = hc == null ? null : hc.getActive();
+        return a != null && a.getPath() != null && !a.getPath().isBlank();
+    }
+
+    /**
+     * 服务启动时调用：探测任务分摊到这组 eventLoop 上
+     */
+    public void start(EventLoopGroup group) {
+        this.group = group;
+        for (Probe p : probes.values()) {
+            p.start(group.next());
+        }
+        if (!probes.isEmpty()) {
+            log.info("[ActiveHealth] started {} probes", probes.size());
+        }
+    }
+
+    /**
+     * 路由快照发布时调用：按最新配置开始 / 更新 / 停止探测（配置和熔断器都没变时保留原任务和计数）
+     */
+    public void watch(String routeId, String url, UpstreamAddress address, UpstreamCircuitBreaker circuit, HealthConfig hc) {
+        if (!isEnabled(hc) || address == null) {
+            unwatch(routeId, url);
+            return;
+        }
+        String key = routeId + "@" + url;
+        Probe old = probes.get(key);
+        if (old != null && old.circuit == circuit && old.config.equals(hc.getActive())) {
+            return;
+        }
+        Probe p = new Probe(key, address, circuit, hc.getActive());
+        old = probes.put(key, p);
+        if (old != null) {
+            old.stop();
+        }
+        EventLoopGroup g = group;
+        if (g != null) {
+            p.start(g.next());
+        }
+    }
+
+    public void unwatch(String routeId, String url) {
+        Probe p = probes.remove(routeId + "@" + url);
+        if (p != null) {
+            p.stop();
+        }
+    }
+
+    public int size() {
+        return probes.size();
+    }
+
+    /**
+     * 一个 upstream 的探测任务：除 start / stop 外只在自己的 eventLoop 上执行，计数不需要同步
+     */
+    private static final class Probe implements Runnable, UpstreamResponseListener {
+
+        final String key;
+        final UpstreamAddress address;
+        final UpstreamCircuitBreaker circuit;
+        final ActiveHealthConfig config;
+        final String uri;
+
+        private EventLoop loop;
+        private volatile boolean stopped;
+        private volatile ScheduledFuture<?> next;
+
+        private int status;
+        private int successes;
+        private int failures;
+        // 上次计数时熔断器是否处于非 CLOSED 状态：状态变了计数从头开始（被动熔断后要重新攒够 healthyThreshold 次成功）
+        private boolean down;
+
+        Probe(String key, UpstreamAddress address, UpstreamCircuitBreaker circuit, ActiveHealthConfig config) {
+            this.key = key;
+            this.address = address;
+            this.circuit = circuit;
+            this.config = config;
+            String path = config.getPath().startsWith("/") ? config.getPath() : "/" + config.getPath();
+            this.uri = address.getBasePath() + path;
+        }
+
+        synchronized void start(EventLoop l) {
+            if (loop != null || stopped) {
+                return;
+            }
+            loop = l;
+            schedule(ThreadLocalRandom.current().nextLong(Math.max(1, config.getIntervalMs())));
+        }
+
+        void stop() {
+            stopped = true;
+            ScheduledFuture<?> f = next;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        private void schedule(long delayMs) {
+            if (!stopped) {
+                next = loop.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private long jitteredInterval() {
+            long interval = Math.max(1, config.getIntervalMs());
+            long j = interval / 10;
+            return interval - j + ThreadLocalRandom.current().nextLong(2 * j + 1);
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            status = 0;
+            HttpHeaders headers = new DefaultHttpHeaders();
+            headers.set(HttpHeaderNames.HOST, address.getHostHeader());
+            headers.set(HttpHeaderNames.USER_AGENT, USER_AGENT);
+            UpstreamHttpClient.getInstance().execute(loop, address,
+                    new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri, headers),
+                    null, null, this, Math.max(1, config.getTimeoutMs()));
+        }
+
+        @Override
+        public void onResponseHead(UpstreamExchange exchange, HttpResponse head) {
+            status = head.status().code();
+        }
+
+        @Override
+        public void onResponseContent(UpstreamExchange exchange, HttpContent content) {
+            content.release();
+        }
+
+        @Override
+        public void onResponseEnd(UpstreamExchange exchange) {
+            onResult(status >= 200 && status < 400);
+        }
+
+        @Override
+        public void onError(UpstreamExchange exchange, Throwable cause) {
+            log.debug("[ActiveHealth] probe {} failed: {}", key, cause.toString());
+            onResult(false);
+        }
+
+        private void onResult(boolean ok) {
+            if (stopped) {
+                return;
+            }
+            boolean nowDown = circuit.getState() != UpstreamState.CLOSED;
+            if (nowDown != down) {
+                down = nowDown;
+                successes = 0;
+                failures = 0;
+            }
+            if (ok) {
+                failures = 0;
+                if (down && ++successes >= config.getHealthyThreshold()) {
+                    log.info("[ActiveHealth] {} is healthy again after {} probes", key, successes);
+                    circuit.markHealthy();
+                }
+            } else {
+                successes = 0;
+                if (!down && ++failures >= config.getUnhealthyThreshold()) {
+                    log.warn("[ActiveHealth] {} marked unhealthy after {} failed probes (last status {})", key, failures, status);
+                    circuit.markUnhealthy();
+                }
+            }
+            schedule(jitteredInterval());
+        }
+    }
+}
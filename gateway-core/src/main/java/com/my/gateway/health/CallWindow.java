@@ -0,0 +1,227 @@
+package com.my.gateway.health;
+
+import com.my.gateway.config.HealthConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 熔断器的滑动窗口：统计最近一段调用的失败率 / 慢调用率
+ *
+ * 固定大小的槽位环 + 原始类型计数，全部是原子变量上的 CAS / getAndSet，不加锁、每次调用不分配对象。
+ * 只有失败或慢调用才计算比例（成功调用只会让比例下降，不可能触发熔断）。
+ * 熔断器状态变化时整个窗口换成新对象（fresh），不在原地清零，避免和并发写入交错出现计数漂移。
+ */
+@Slf4j
+abstract class CallWindow {
+
+    protected final int size;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+
+    CallWindow(int size, HealthConfig c) {
+        this.size = size;
+        this.minimumCalls = Math.max(1, c.getMinimumCalls());
+        this.failureRateThreshold = c.getFailureRateThreshold();
+        this.slowCallRateThreshold = c.getSlowCallRateThreshold();
+    }
+
+    /**
+     * 按配置创建窗口；consecutive（默认）返回 null，熔断器继续按连续失败次数判定
+     */
+    static CallWindow of(HealthConfig c) {
+        String type = c.getSlidingWindowType();
+        if (type == null || type.isBlank() || "consecutive".equalsIgnoreCase(type)) {
+            return null;
+        }
+        if ("count".equalsIgnoreCase(type)) {
+            return new CountWindow(Math.min(Math.max(1, c.getSlidingWindowSize()), CountWindow.MAX_SIZE), c);
+        }
+        if ("time".equalsIgnoreCase(type)) {
+            return new TimeWindow(Math.min(Math.max(1, c.getSlidingWindowSize()), TimeWindow.MAX_SIZE), c);
+        }
+        log.warn("[CircuitBreaker] unknown slidingWindowType '{}', fallback to consecutive", type);
+        return null;
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @return 窗口内调用数达到 minimumCalls 且失败率或慢调用率达到阈值
+     */
+    abstract boolean record(boolean failure, boolean slow);
+
+    /**
+     * 同样配置的空窗口
+     */
+    abstract CallWindow fresh();
+
+    protected final boolean exceeded(long calls, long failures, long slow) {
+        if (calls < minimumCalls) {
+            return false;
+        }
+        return failures * 100.0 >= failureRateThreshold * calls
+                || (slow > 0 && slow * 100.0 >= slowCallRateThreshold * calls);
+    }
+
+    /**
+     * 按调用次数：最近 size 次调用
+     *
+     * 每个槽位记一次调用的结果，游标原子递增；汇总计数三个字段（各 21 位）打包在一个 long 里，
+     * 槽位结果变化时一次 addAndGet 更新（字段都不会越界，打包后直接做加减即可）。稳态下结果不变（全成功）时只有两次原子操作。
+     */
+    static final class CountWindow extends CallWindow {
+
+        static final int MAX_SIZE = (1 << 20) - 1;
+
+        // 槽位取值：0 = 空，CALL 位必有，FAILURE / SLOW 按结果
+        private static final int CALL = 1;
+        private static final int FAILURE = 2;
+        private static final int SLOW = 4;
+        private static final int SHIFT = 21;
+        private static final long MASK = (1L << SHIFT) - 1;
+
+        private final HealthConfig config;
+        private final AtomicIntegerArray slots;
+        private final AtomicLong cursor = new AtomicLong();
+        // calls | failures << 21 | slow << 42
+        private final AtomicLong totals = new AtomicLong();
+
+        CountWindow(int size, HealthConfig c) {
+            super(size, c);
+            this.config = c;
+            this.slots = new AtomicIntegerArray(size);
+        }
+
+        @Override
+        boolean record(boolean failure, boolean slow) {
+            int v = CALL | (failure ? FAILURE : 0) | (slow ? SLOW : 0);
+            int i = (int) (cursor.getAndIncrement() % size);
+            int old = slots.getAndSet(i, v);
+            if (old == v) {
+                return (failure || slow) && check(totals.get());
+            }
+            long t = totals.addAndGet(pack(v) - pack(old));
+            return (failure || slow) && check(t);
+        }
+
+        private boolean check(long t) {
+            return exceeded(t & MASK, (t >>> SHIFT) & MASK, t >>> (SHIFT * 2));
+        }
+
+        private static long pack(int v) {
+            return (v & CALL) + ((long) ((v & FAILURE) >>> 1) << SHIFT) + ((long) ((v & SLOW) >>> 2) << (SHIFT * 2));
+        }
+
+        @Override
+        CallWindow fresh() {
+            return new CountWindow(size, config);
+        }
+    }
+
+    /**
+     * 按时间：最近 size 秒，每秒一个桶
+     *
+     * 桶 = 秒级时间戳低 16 位 | calls << 16 | failures << 32 | slow << 48（各 16 位），
+     * 一次 CAS 同时完成「过期桶重置」和「计数 +1」，不会出现重置和写入交错丢数。
+     * 单个 upstream 每秒超过 65535 次调用时只统计这一秒的前 65535 次（相当于采样），比例仍然近似正确。
+     *
+     * 时间戳只有 16 位，65536 秒（约 18 小时）回绕一次：一个桶如果这么久没被写过，旧数据的时间戳会和当前秒撞上，
+     * 被当成窗口内的数据。所以每 SWEEP_SECONDS 秒（由碰上的那次调用顺带做）把窗口外的桶清零，
+     * 保证任何桶里的数据都不会老到让 16 位时间戳产生歧义；很久没有调用、上次清理已经超过回绕周期时整个窗口清空。
+     */
+    static final class TimeWindow extends CallWindow {
+
+        static final int MAX_SIZE = 3600;
+
+        private static final long FIELD = 0xFFFFL;
+        private static final long ONE_CALL = 1L << 16;
+        private static final long ONE_FAILURE = 1L << 32;
+        private static final long ONE_SLOW = 1L << 48;
+        // 清理间隔，远小于回绕周期 65536 - MAX_SIZE 秒
+        private static final long SWEEP_SECONDS = 3600;
+
+        private final HealthConfig config;
+        private final AtomicLongArray buckets;
+        // 上次清理的秒级时间戳（完整 64 位）
+        private final AtomicLong lastSweepSec;
+
+        TimeWindow(int size, HealthConfig c) {
+            this(size, c, System.currentTimeMillis());
+        }
+
+        TimeWindow(int size, HealthConfig c, long nowMs) {
+            super(size, c);
+            this.config = c;
+            this.buckets = new AtomicLongArray(size);
+            this.lastSweepSec = new AtomicLong(nowMs / 1000);
+        }
+
+        @Override
+        boolean record(boolean failure, boolean slow) {
+            return record(failure, slow, System.currentTimeMillis());
+        }
+
+        boolean record(boolean failure, boolean slow, long nowMs) {
+            long sec = nowMs / 1000;
+            long last = lastSweepSec.get();
+            if (sec - last >= SWEEP_SECONDS && lastSweepSec.compareAndSet(last, sec)) {
+                // 上次清理时窗口内的桶当时不超过 size 秒，加上经过的时间仍小于回绕周期时，按时间戳判断是准确的
+                sweep(sec & FIELD, sec - last + size > FIELD);
+            }
+            int i = (int) (sec % size);
+            long stamp = sec & FIELD;
+            for (;;) {
+                long b = buckets.get(i);
+                long nb;
+                if ((b & FIELD) == stamp) {
+                    // calls 满了这一秒就不再记（failures / slow 不会超过 calls，也就不会越界）
+                    nb = ((b >>> 16) & FIELD) == FIELD ? b
+                            : b + ONE_CALL + (failure ? ONE_FAILURE : 0) + (slow ? ONE_SLOW : 0);
+                } else {
+                    // 桶里是 size 秒之前的数据：直接覆盖
+                    nb = stamp | ONE_CALL | (failure ? ONE_FAILURE : 0) | (slow ? ONE_SLOW : 0);
+                }
+                if (nb == b || buckets.compareAndSet(i, b, nb)) {
+                    break;
+                }
+            }
+            if (!failure && !slow) {
+                return false;
+            }
+            long calls = 0;
+            long failures = 0;
+            long slowCalls = 0;
+            for (int j = 0; j < size; j++) {
+                long b = buckets.get(j);
+                if (((stamp - (b & FIELD)) & FIELD) < size) {
+                    calls += (b >>> 16) & FIELD;
+                    failures += (b >>> 32) & FIELD;
+                    slowCalls += b >>> 48;
+                }
+            }
+            return exceeded(calls, failures, slowCalls);
+        }
+
+        /**
+         * 把窗口外的桶清零；all 为 true 时时间戳已经不可信，全部清零
+         */
+        private void sweep(long stamp, boolean all) {
+            for (int j = 0; j < size; j++) {
+                long b = buckets.get(j);
+                if (b != 0 && (all || ((stamp - (b & FIELD)) & FIELD) >= size)) {
+                    // 期间被并发写成当前秒的桶 CAS 失败，保留
+                    buckets.compareAndSet(j, b, 0);
+                }
+            }
+        }
+
+        @Override
+        CallWindow fresh() {
+            return new TimeWindow(size, config);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.my.gateway.health;
+
+import com.my.gateway.config.HealthConfig;
+import com.my.gateway.config.OutlierConfig;
+import com.my.gateway.metrics.MetricBucket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离群摘除：按路由周期性比较各 upstream，把明显比同伴差的实例摘掉一段时间
+ *
+ * 判定（任一满足即摘除）：
+ * - 连续网关错误（502 / 503 / 504）达到阈值
+ * - 周期内成功率（非 5xx）低于同路由 平均值 - k × 标准差
+ * - 周期内 p99 超过同伴 p99 中位数的若干倍
+ *
+ * 数据全部来自 MetricsRegistry 已有的 upstream 指标桶（累计值按周期做差），请求路径上没有任何额外开销。
+ * 摘除 = 熔断器 OPEN 一段时间（时长按摘除次数指数增长），可用 upstream 列表、慢启动照常联动；
+ * 同时摘除的比例有上限，并且永远至少保留一个可用 upstream。
+ *
+ * 所有检测和路由增删都在一个后台线程上执行，状态不需要同步。
+ */
+@Slf4j
+public class OutlierDetector {
+
+    private static final OutlierDetector INSTANCE = new OutlierDetector();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "outlier-detector");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // routeId -> 检测任务，只在 scheduler 线程上读写
+    private final Map<String, RouteDetector> routes = new HashMap<>();
+
+    private OutlierDetector() {}
+
+    public static OutlierDetector getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isEnabled(HealthConfig hc) {
+        OutlierConfig c = hc == null ? null : hc.getOutlier();
+        return c != null && c.getIntervalMs() > 0;
+    }
+
+    /**
+     * 路由快照发布时调用：按最新配置开始 / 更新 / 停止检测；同 url 且指标桶沿用的 upstream 保留周期基线和摘除次数
+     */
+    public void watch(String routeId, HealthConfig hc, String[] urls, MetricBucket[] metrics, UpstreamCircuitBreaker[] circuits) {
+        if (!isEnabled(hc) || urls.length < 2) {
+            unwatch(routeId);
+            return;
+        }
+        OutlierConfig c = hc.getOutlier();
+        scheduler.execute(() -> {
+            RouteDetector d = new RouteDetector(routeId, c, urls, metrics, circuits, routes.get(routeId));
+            RouteDetector old = routes.put(routeId, d);
+            if (old != null) {
+                old.future.cancel(false);
+            }
+            d.future = scheduler.scheduleWithFixedDelay(d::safeSweep, c.getIntervalMs(), c.getIntervalMs(), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    public void unwatch(String routeId) {
+        scheduler.execute(() -> {
+            RouteDetector old = routes.remove(routeId);
+            if (old != null) {
+                old.future.cancel(false);
+            }
+        });
+    }
+
+    private static final class Host {
+        final String url;
+        final MetricBucket metrics;
+        final UpstreamCircuitBreaker circuit;
+
+        // 上一周期末的累计值
+        boolean primed;
+        long lastRequests;
+        long lastErrors;
+        final long[] lastHist = new long[MetricBucket.HIST_SIZE];
+
+        // 已经被摘除的次数（决定下一次摘除时长），健康一个周期减 1
+        int ejections;
+
+        // 本周期的增量
+        long requests;
+        double successRate;
+        long p99;
+        boolean ejectedNow;
+
+        Host(String url, MetricBucket metrics, UpstreamCircuitBreaker circuit) {
+            this.url = url;
+            this.metrics = metrics;
+            this.circuit = circuit;
+        }
+    }
+
+    private static final class RouteDetector {
+        final String routeId;
+        final OutlierConfig config;
+        final Host[] hosts;
+        final long[] hist = new long[MetricBucket.HIST_SIZE];
+        final long[] delta = new long[MetricBucket.HIST_SIZE];
+        final double[] scratch;
+        ScheduledFuture<?> future;
+
+        RouteDetector(String routeId, OutlierConfig config, String[] urls, MetricBucket[] metrics,
+                      UpstreamCircuitBreaker[] circuits, RouteDetector prev) {
+            this.routeId = routeId;
+            this.config = config;
+            this.hosts = new Host[urls.length];
+            this.scratch = new double[urls.length];
+            for (int i = 0; i < urls.length; i++) {
+                Host h = new Host(urls[i], metrics[i], circuits[i]);
+                Host p = prev == null ? null : prev.host(urls[i]);
+                if (p != null) {
+                    h.ejections = p.ejections;
+                    if (p.metrics == h.metrics) {
+                        h.primed = p.primed;
+                        h.lastRequests = p.lastRequests;
+                        h.lastErrors = p.lastErrors;
+                        System.arraycopy(p.lastHist, 0, h.lastHist, 0, h.lastHist.length);
+                    }
+                }
+                hosts[i] = h;
+            }
+        }
+
+        Host host(String url) {
+            for (Host h : hosts) {
+                if (h.url.equals(url)) {
+                    return h;
+                }
+            }
+            return null;
+        }
+
+        void safeSweep() {
+            try {
+                sweep();
+            } catch (Throwable t) {
+                log.error("[Outlier] route {} sweep failed", routeId, t);
+            }
+        }
+
+        void sweep() {
+            int down = 0;
+            for (Host h : hosts) {
+                collect(h);
+                h.ejectedNow = false;
+                if (h.circuit.getState() != UpstreamState.CLOSED) {
+                    down++;
+                }
+            }
+
+            // 1) 连续网关错误
+            if (config.getConsecutiveGatewayErrors() > 0) {
+                for (Host h : hosts) {
+                    long n = h.metrics.consecutiveGatewayErrors.get();
+                    if (n >= config.getConsecutiveGatewayErrors() && eject(h, down, "consecutive gateway errors " + n)) {
+                        down++;
+                    }
+                }
+            }
+
+            // 2) 成功率 / 3) p99：只在周期内请求量足够的主机之间比较
+            int m = 0;
+            for (Host h : hosts) {
+                if (qualified(h)) {
+                    scratch[m++] = h.successRate;
+                }
+            }
+            if (m >= Math.max(2, config.getSuccessRateMinimumHosts())) {
+                double mean = 0;
+                for (int i = 0; i < m; i++) {
+                    mean += scratch[i];
+                }
+                mean /= m;
+                double var = 0;
+                for (int i = 0; i < m; i++) {
+                    var += (scratch[i] - mean) * (scratch[i] - mean);
+                }
+                double threshold = mean - config.getSuccessRateStdevFactor() * Math.sqrt(var / m);
+                for (Host h : hosts) {
+                    if (qualified(h) && h.successRate < threshold
+                            && eject(h, down, String.format("success rate %.1f%% < %.1f%%", h.successRate * 100, threshold * 100))) {
+                        down++;
+                    }
+                }
+
+                if (config.getLatencyFactor() > 0) {
+                    m = 0;
+                    for (Host h : hosts) {
+                        if (qualified(h)) {
+                            scratch[m++] = h.p99;
+                        }
+                    }
+                    Arrays.sort(scratch, 0, m);
+                    double median = m % 2 == 1 ? scratch[m / 2] : (scratch[m / 2 - 1] + scratch[m / 2]) / 2;
+                    for (Host h : hosts) {
+                        if (qualified(h) && median > 0 && h.p99 > config.getLatencyFactor() * median
+                                && eject(h, down, "p99 " + h.p99 + "ms > " + config.getLatencyFactor() + " x median " + median + "ms")) {
+                            down++;
+                        }
+                    }
+                }
+            }
+
+            // 这个周期没有被摘除、状态正常的 upstream：摘除次数衰减
+            for (Host h : hosts) {
+                if (!h.ejectedNow && h.ejections > 0 && h.circuit.getState() == UpstreamState.CLOSED) {
+                    h.ejections--;
+                }
+            }
+        }
+
+        private boolean qualified(Host h) {
+            return !h.ejectedNow && h.requests >= Math.max(1, config.getSuccessRateRequestVolume())
+                    && h.circuit.getState() == UpstreamState.CLOSED;
+        }
+
+        /**
+         * 累计值做差得到本周期的请求量 / 成功率 / p99；第一次只记基线
+         */
+        private void collect(Host h) {
+            MetricBucket b = h.metrics;
+            long requests = b.requests.sum();
+            long errors = b.status5xx.sum();
+            b.histSnapshot(hist);
+            if (!h.primed) {
+                h.primed = true;
+                h.requests = 0;
+            } else {
+                h.requests = requests - h.lastRequests;
+                long e = errors - h.lastErrors;
+                h.successRate = h.requests > 0 ? (double) (h.requests - e) / h.requests : 1.0;
+                for (int i = 0; i < hist.length; i++) {
+                    delta[i] = hist[i] - h.lastHist[i];
+                }
+                h.p99 = MetricBucket.percentile(delta, 0.99);
+            }
+            h.lastRequests = requests;
+            h.lastErrors = errors;
+            System.arraycopy(hist, 0, h.lastHist, 0, hist.length);
+        }
+
+        /**
+         * @param down 当前不可用（非 CLOSED）的 upstream 数
+         */
+        private boolean eject(Host h, int down, String reason) {
+            if (h.ejectedNow || h.circuit.getState() != UpstreamState.CLOSED) {
+                return false;
+            }
+            int n = hosts.length;
+            if (down + 1 >= n || (down > 0 && (down + 1) * 100.0 > config.getMaxEjectionPercent() * n)) {
+                log.info("[Outlier] route {} upstream {} is an outlier ({}) but max ejection reached ({}/{} down)",
+                        routeId, h.url, reason, down, n);
+                return false;
+            }
+            long base = Math.max(1, config.getBaseEjectionTimeMs());
+            long duration = Math.min(base << Math.min(h.ejections, 20), Math.max(base, config.getMaxEjectionTimeMs()));
+            if (!h.circuit.eject(duration)) {
+                return false;
+            }
+            h.ejections++;
+            h.ejectedNow = true;
+            h.metrics.consecutiveGatewayErrors.set(0);
+            log.warn("[Outlier] route {} ejected upstream {} for {}ms: {}", routeId, h.url, duration, reason);
+            return true;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.my.gateway.health;
 
-import com.my.gateway.config.ConfigLoader;
-import com.my.gateway.config.GatewayConfig;
 import com.my.gateway.config.HealthConfig;
 
 import java.util.Map;
@@ -9,6 +7,9 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 服务健康管理器
+ *
+ * 路由快照发布时为 upstream 创建熔断器，挂到 RouteUpstream 上；请求期间直接用熔断器对象，不再查表。
+ * 热更新时未变化的 upstream 沿用原来的熔断器，被删除的 upstream 在这里注销。
  */
 public class PassiveHealthManager {
 
@@ -23,31 +24,21 @@ public class PassiveHealthManager {
         return INSTANCE;
     }
 
-    private UpstreamCircuitBreaker circuit(String routeId, String url) {
-        String key = routeId + "@" + url;
-
-        GatewayConfig cfg = ConfigLoader.getInstance().getConfig();
-        HealthConfig hc = (cfg != null && cfg.getHealth() != null) ? cfg.getHealth() : new HealthConfig();
-
-        return circuits.computeIfAbsent(key, k ->
-                new UpstreamCircuitBreaker(
-                        hc.getFailureThreshold(),
-                        hc.getOpenCooldownMs(),
-                        hc.getHalfOpenMaxCalls(),
-                        hc.getSuccessThresholdToClose()
-                )
-        );
-    }
-
-    public boolean tryAcquire(String routeId, String url) {
-        return circuit(routeId, url).tryAcquire();
+    /**
+     * 按最新的健康配置创建熔断器（同 key 的旧熔断器被替换）
+     */
+    public UpstreamCircuitBreaker create(String routeId, String url, HealthConfig hc) {
+        HealthConfig c = hc != null ? hc : new HealthConfig();
+        UpstreamCircuitBreaker cb = new UpstreamCircuitBreaker(c);
+        circuits.put(routeId + "@" + url, cb);
+        return cb;
     }
 
-    public void onSuccess(String routeId, String url) {
-        circuit(routeId, url).onSuccess();
+    public void remove(String routeId, String url) {
+        circuits.remove(routeId + "@" + url);
     }
 
-    public void onFailure(String routeId, String url) {
-        circuit(routeId, url).onFailure();
+    public Map<String, UpstreamCircuitBreaker> circuitView() {
+        return java.util.Collections.unmodifiableMap(circuits);
     }
 }
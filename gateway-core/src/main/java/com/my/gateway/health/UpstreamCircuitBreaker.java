@@ -1,9 +1,16 @@
 package com.my.gateway.health;
 
+import com.my.gateway.config.HealthConfig;
+
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 熔断器实现类，基于经典的三态（CLOSED, OPEN, HALF_OPEN）设计
+ *
+ * 状态变化时回调 stateListener（所属路由据此更新健康 upstream 数组），请求路径上不需要逐个询问熔断器。
+ * CLOSED 状态默认按连续失败次数熔断；配置滑动窗口（count / time）后改为按窗口内的失败率、慢调用率熔断，
+ * 偶发但比例很高的失败、以及成功但很慢的调用都能触发。
+ * 开启主动健康检查时 OPEN 没有冷却期：不再放真实请求做半开探测，由探测结果调用 markHealthy 恢复。
  */
 public class UpstreamCircuitBreaker {
 
@@ -11,6 +18,10 @@ public class UpstreamCircuitBreaker {
     private final long openCooldownMs;
     private final int halfOpenMaxCalls;
     private final int successThresholdToClose;
+    // 由主动健康检查负责恢复
+    private final boolean activeRecovery;
+    // 慢调用阈值，<= 0 不统计
+    private final long slowCallNanos;
 
     private volatile UpstreamState state = UpstreamState.CLOSED;
 
@@ -18,12 +29,40 @@ public class UpstreamCircuitBreaker {
     private final AtomicInteger halfOpenInFlight = new AtomicInteger(0);
     private final AtomicInteger halfOpenSuccesses = new AtomicInteger(0);
 
+    // 滑动窗口统计，null 表示按连续失败次数判定；回到 CLOSED 时换成新的空窗口
+    private volatile CallWindow window;
+
     private volatile long openUntilEpochMs = 0;
+    // 离群摘除的截止时间：摘除期间主动探测成功也不恢复
+    private volatile long ejectedUntilEpochMs = 0;
+
+    private volatile Runnable stateListener;
 
     public UpstreamCircuitBreaker(int failureThreshold,
                                   long openCooldownMs,
                                   int halfOpenMaxCalls,
                                   int successThresholdToClose) {
+        this(failureThreshold, openCooldownMs, halfOpenMaxCalls, successThresholdToClose, false, null, 0);
+    }
+
+    /**
+     * 按健康配置创建：熔断判定方式、慢调用阈值、是否由主动健康检查负责恢复
+     */
+    public UpstreamCircuitBreaker(HealthConfig c) {
+        this(c.getFailureThreshold(), c.getOpenCooldownMs(), c.getHalfOpenMaxCalls(), c.getSuccessThresholdToClose(),
+                ActiveHealthChecker.isEnabled(c), CallWindow.of(c), c.getSlowCallDurationMs());
+    }
+
+    private UpstreamCircuitBreaker(int failureThreshold,
+                                   long openCooldownMs,
+                                   int halfOpenMaxCalls,
+                                   int successThresholdToClose,
+                                   boolean activeRecovery,
+                                   CallWindow window,
+                                   long slowCallDurationMs) {
+        this.activeRecovery = activeRecovery;
+        this.window = window;
+        this.slowCallNanos = slowCallDurationMs > 0 ? slowCallDurationMs * 1_000_000L : 0;
         this.failureThreshold = Math.max(1, failureThreshold);
         this.openCooldownMs = Math.max(100, openCooldownMs);
         this.halfOpenMaxCalls = Math.max(1, halfOpenMaxCalls);
@@ -41,13 +80,18 @@ public class UpstreamCircuitBreaker {
                 return false;
             }
             // 冷却结束 -> HALF_OPEN
+            boolean changed = false;
             synchronized (this) {
                 if (state == UpstreamState.OPEN && now >= openUntilEpochMs) {
                     state = UpstreamState.HALF_OPEN;
                     halfOpenInFlight.set(0);
                     halfOpenSuccesses.set(0);
+                    changed = true;
                 }
             }
+            if (changed) {
+                fireStateChanged();
+            }
         }
 
         if (state == UpstreamState.HALF_OPEN) {
@@ -64,8 +108,20 @@ public class UpstreamCircuitBreaker {
     }
 
     public void onSuccess() {
+        onSuccess(0);
+    }
+
+    /**
+     * @param durationNanos 发出请求到收到响应头的耗时，用于判定慢调用（0 表示不参与判定）
+     */
+    public void onSuccess(long durationNanos) {
         if (state == UpstreamState.CLOSED) {
-            consecutiveFailures.set(0);
+            CallWindow w = window;
+            if (w == null) {
+                consecutiveFailures.set(0);
+            } else if (w.record(false, isSlow(durationNanos))) {
+                tripOpenIfClosed();
+            }
             return;
         }
 
@@ -75,19 +131,33 @@ public class UpstreamCircuitBreaker {
             if (s >= successThresholdToClose) {
                 synchronized (this) {
                     state = UpstreamState.CLOSED;
+                    resetWindow();
                     consecutiveFailures.set(0);
                     halfOpenInFlight.set(0);
                     halfOpenSuccesses.set(0);
                 }
+                fireStateChanged();
             }
         }
     }
 
     public void onFailure() {
+        onFailure(0);
+    }
+
+    /**
+     * @param durationNanos 发出请求到失败 / 收到 5xx 响应头的耗时（0 表示不参与慢调用判定）
+     */
+    public void onFailure(long durationNanos) {
         if (state == UpstreamState.CLOSED) {
-            int f = consecutiveFailures.incrementAndGet();
-            if (f >= failureThreshold) {
-                tripOpen();
+            CallWindow w = window;
+            if (w == null) {
+                int f = consecutiveFailures.incrementAndGet();
+                if (f >= failureThreshold) {
+                    tripOpen();
+                }
+            } else if (w.record(true, isSlow(durationNanos))) {
+                tripOpenIfClosed();
             }
             return;
         }
@@ -101,17 +171,124 @@ public class UpstreamCircuitBreaker {
         // OPEN 状态下失败无意义（本来也不该进来）
     }
 
-    private void tripOpen() {
+    private boolean isSlow(long durationNanos) {
+        return slowCallNanos > 0 && durationNanos >= slowCallNanos;
+    }
+
+    /**
+     * 拿到许可后没有发出请求、也没有结果（例如客户端断开、请求被放弃）：归还半开探测名额
+     */
+    public void release() {
+        if (state == UpstreamState.HALF_OPEN) {
+            halfOpenInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 主动探测连续成功：直接 CLOSED（已经是 CLOSED、或还在离群摘除期内时什么都不做）
+     */
+    public void markHealthy() {
         synchronized (this) {
-            state = UpstreamState.OPEN;
-            openUntilEpochMs = System.currentTimeMillis() + openCooldownMs;
+            if (state == UpstreamState.CLOSED || System.currentTimeMillis() < ejectedUntilEpochMs) {
+                return;
+            }
+            state = UpstreamState.CLOSED;
+            resetWindow();
             consecutiveFailures.set(0);
             halfOpenInFlight.set(0);
             halfOpenSuccesses.set(0);
         }
+        fireStateChanged();
+    }
+
+    /**
+     * 主动探测连续失败：直接 OPEN（已经是 OPEN 时什么都不做）
+     */
+    public void markUnhealthy() {
+        if (state == UpstreamState.OPEN) {
+            return;
+        }
+        tripOpen();
+    }
+
+    /**
+     * 离群摘除：CLOSED 的 upstream 直接 OPEN durationMs，到期后和普通熔断一样进入 HALF_OPEN（或由主动探测恢复）
+     *
+     * @return 是否摘除成功（已经不是 CLOSED 时不处理）
+     */
+    public boolean eject(long durationMs) {
+        synchronized (this) {
+            if (state != UpstreamState.CLOSED) {
+                return false;
+            }
+            openLocked();
+            openUntilEpochMs = System.currentTimeMillis() + durationMs;
+            ejectedUntilEpochMs = openUntilEpochMs;
+        }
+        fireStateChanged();
+        return true;
+    }
+
+    /**
+     * 窗口判定熔断：并发的多个失败可能同时达到阈值，只由第一个切到 OPEN
+     */
+    private void tripOpenIfClosed() {
+        synchronized (this) {
+            if (state != UpstreamState.CLOSED) {
+                return;
+            }
+            openLocked();
+        }
+        fireStateChanged();
+    }
+
+    /**
+     * 回到 CLOSED 时窗口从空开始（OPEN / HALF_OPEN 期间窗口不记录）
+     */
+    private void resetWindow() {
+        CallWindow w = window;
+        if (w != null) {
+            window = w.fresh();
+        }
+    }
+
+    private void tripOpen() {
+        synchronized (this) {
+            openLocked();
+        }
+        fireStateChanged();
+    }
+
+    private void openLocked() {
+        state = UpstreamState.OPEN;
+        openUntilEpochMs = activeRecovery ? Long.MAX_VALUE : System.currentTimeMillis() + openCooldownMs;
+        consecutiveFailures.set(0);
+        halfOpenInFlight.set(0);
+        halfOpenSuccesses.set(0);
+    }
+
+    private void fireStateChanged() {
+        Runnable l = stateListener;
+        if (l != null) {
+            l.run();
+        }
+    }
+
+    /**
+     * 路由快照发布时设置（热更新沿用熔断器时替换成新路由的监听）
+     */
+    public void setStateListener(Runnable listener) {
+        this.stateListener = listener;
     }
 
     public UpstreamState getState() {
         return state;
     }
+
+    /**
+     * OPEN 状态的冷却截止时间（由主动检查负责恢复时为 Long.MAX_VALUE）
+     */
+    public long getOpenUntilEpochMs() {
+        return openUntilEpochMs;
+    }
 }
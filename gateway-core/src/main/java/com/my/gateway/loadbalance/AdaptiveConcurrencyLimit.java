@@ -0,0 +1,181 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.config.ConcurrencyLimitConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个 upstream 的自适应并发上限（Gradient / Vegas 思路）
+ *
+ * upstream 排队时 RTT 会涨到 min-RTT（没有排队时的 RTT）之上，据此估计排队程度：
+ * - gradient：新上限 = 上限 × clamp(tolerance × minRtt / rtt, 0.5, 1) + sqrt(上限)，再和旧值平滑；
+ *   没排队时每个窗口多给 sqrt(上限) 的余量，排队越严重缩得越多
+ * - vegas：估计排队数 = 上限 × (1 - minRtt / rtt)，少于 3·log10(上限) 时加 log10(上限)，多于 6·log10(上限) 时减
+ * 窗口内有失败（超时 / 连接错误）时直接乘以 backoffRatio；实际并发不到上限一半时不再往上涨（没有压力就不知道能扛多少）。
+ *
+ * 样本记录只是几个原子变量，不加锁；窗口到期后第一个样本 CAS 抢到窗口负责计算新上限。
+ * 负载均衡选实例时按上限 CAS 预留 in-flight（UpstreamLoad.tryDispatch），各 eventLoop 同时放行也不会超出上限。
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private final ConcurrencyLimitConfig config;
+    private final boolean vegas;
+    private final long windowNanos;
+    private final long minRttResetNanos;
+
+    // 当前窗口
+    private final AtomicLong windowStart;
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong rttSum = new AtomicLong();
+    private final AtomicLong windowMinRtt = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxInflight = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+
+    // 以下只由抢到窗口的线程写
+    private volatile double limit;
+    private volatile long minRtt;
+    private volatile long minRttSince;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveConcurrencyLimit(ConcurrencyLimitConfig config) {
+        this.config = config;
+        this.vegas = "vegas".equalsIgnoreCase(config.getAlgorithm());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getWindowMs()));
+        this.minRttResetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getMinRttResetMs()));
+        this.limit = clamp(config.getInitialLimit());
+        long now = System.nanoTime();
+        this.windowStart = new AtomicLong(now);
+        this.minRttSince = now;
+    }
+
+    /**
+     * 不启用时返回 null
+     */
+    public static AdaptiveConcurrencyLimit of(ConcurrencyLimitConfig config) {
+        return config == null || !config.isEnabled() ? null : new AdaptiveConcurrencyLimit(config);
+    }
+
+    public ConcurrencyLimitConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 选实例时调用：in-flight 没到上限才预留一个（in-flight +1），否则记一次拒绝
+     */
+    public boolean tryAcquire(UpstreamLoad load) {
+        if (load.tryDispatch((int) limit)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 一次尝试的 RTT 样本（到收到响应头或失败）
+     *
+     * @param inflight 采样时的 in-flight（含这一个）
+     * @param drop     超时 / 连接错误
+     */
+    public void onSample(long now, long rttNanos, int inflight, boolean drop) {
+        samples.incrementAndGet();
+        rttSum.addAndGet(rttNanos);
+        if (drop) {
+            drops.incrementAndGet();
+        } else {
+            updateMin(windowMinRtt, rttNanos);
+        }
+        long m = maxInflight.get();
+        while (inflight > m && !maxInflight.compareAndSet(m, inflight)) {
+            m = maxInflight.get();
+        }
+
+        long start = windowStart.get();
+        if (now - start >= windowNanos && samples.get() >= config.getMinSamples()
+                && windowStart.compareAndSet(start, now)) {
+            closeWindow(now);
+        }
+    }
+
+    private void closeWindow(long now) {
+        long n = samples.getAndSet(0);
+        long sum = rttSum.getAndSet(0);
+        long wMin = windowMinRtt.getAndSet(Long.MAX_VALUE);
+        long peak = maxInflight.getAndSet(0);
+        long dropped = drops.getAndSet(0);
+        if (n == 0) {
+            return;
+        }
+        if (wMin != Long.MAX_VALUE) {
+            // 基线：平时取历史最小，每隔 minRttResetMs 用当前窗口重新测一次
+            if (minRtt == 0 || (minRttResetNanos > 0 && now - minRttSince >= minRttResetNanos)) {
+                minRtt = wMin;
+                minRttSince = now;
+            } else if (wMin < minRtt) {
+                minRtt = wMin;
+            }
+        }
+        double cur = limit;
+        if (dropped > 0) {
+            limit = clamp(cur * config.getBackoffRatio());
+            return;
+        }
+        if (minRtt == 0) {
+            return;
+        }
+        double rtt = (double) sum / n;
+        // 实际并发不到上限一半：没压力，不往上涨
+        boolean appLimited = peak * 2 < cur;
+
+        double next;
+        if (vegas) {
+            double log = Math.max(1, Math.log10(cur));
+            double queue = cur * (1 - minRtt / rtt);
+            if (queue <= 3 * log) {
+                next = appLimited ? cur : cur + log;
+            } else if (queue >= 6 * log) {
+                next = cur - log;
+            } else {
+                next = cur;
+            }
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, config.getTolerance() * minRtt / rtt));
+            if (gradient >= 1.0 && appLimited) {
+                return;
+            }
+            double target = cur * gradient + Math.sqrt(cur);
+            double s = Math.max(0.01, Math.min(1.0, config.getSmoothing()));
+            next = cur * (1 - s) + target * s;
+        }
+        limit = clamp(next);
+    }
+
+    private double clamp(double v) {
+        int min = Math.max(1, config.getMinLimit());
+        return Math.max(min, Math.min(Math.max(min, config.getMaxLimit()), v));
+    }
+
+    private static void updateMin(AtomicLong a, long v) {
+        long cur = a.get();
+        while (v < cur && !a.compareAndSet(cur, v)) {
+            cur = a.get();
+        }
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * 基线 RTT（纳秒），还没有样本时为 0
+     */
+    public long minRttNanos() {
+        return minRtt;
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.container.RouteUpstream;
+
+import java.util.List;
+
+/**
+ * 候选列表工具：候选按 RouteUpstream 下标升序排列
+ */
+final class Candidates {
+
+    private Candidates() {
+    }
+
+    /**
+     * 二分查找下标为 index 的候选，不在候选里返回 null
+     */
+    static RouteUpstream find(List<RouteUpstream> candidates, int index) {
+        int lo = 0;
+        int hi = candidates.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            RouteUpstream u = candidates.get(mid);
+            int v = u.getIndex();
+            if (v < index) {
+                lo = mid + 1;
+            } else if (v > index) {
+                hi = mid - 1;
+            } else {
+                return u;
+            }
+        }
+        return null;
+    }
+}
@@ -1,31 +1,224 @@
 package com.my.gateway.loadbalance;
 
+import com.my.gateway.config.HashConfig;
+import com.my.gateway.container.RouteUpstream;
 import com.my.gateway.context.GatewayContext;
-import com.my.gateway.context.UpstreamInstance;
+import com.my.gateway.context.GatewayRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import lombok.extern.slf4j.Slf4j;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
-import java.util.zip.CRC32;
+import java.util.Locale;
 
 /**
- * 一致性哈希负载均衡
+ * 一致性哈希负载均衡（带虚拟节点的哈希环）
  *
+ * - 每个 upstream 按 weight × virtualNodes 放虚拟节点，路由快照发布时建环：排好序的 int[] 哈希点 + 对应的 upstream 下标
+ * - 请求 key 哈希后在环上二分查找，顺时针第一个节点即命中；节点不在候选里（不健康）或本次请求已经试过时继续顺时针找，
+ *   所以摘掉一个节点只影响原来落在它上面的 key，其余 key 的映射不变
+ * - 有界负载：开启后节点的 in-flight 超过 boundedLoadFactor × 平均值（按权重）时跳过它，热点 key 不会压垮单个节点；
+ *   预热中的节点按打折后的有效权重算容量（环本身不随预热变化，否则 key 会来回迁移，所以慢启动只在有界负载模式下生效）
+ * - key 来源可配：客户端 IP / header / cookie / query 参数 / path，直接在原始字符上算哈希，请求期间不分配对象
+ *
+ * 每条路由一个实例，环只读，无需同步
  */
+@Slf4j
 public class ConsistentHashLoadBalancer implements LoadBalancer {
 
+    // 环上的虚拟节点总数上限
+    private static final int MAX_POINTS = 1 << 20;
+
+    private enum Source { IP, HEADER, COOKIE, QUERY, PATH }
+
+    private final Source source;
+    private final String name;
+    private final double boundedLoadFactor;
+
+    // 环：points 升序，owners[i] 是 points[i] 所属 upstream 的下标
+    private final int[] points;
+    private final int[] owners;
+
+    public ConsistentHashLoadBalancer(RouteUpstream[] upstreams, HashConfig cfg) {
+        if (cfg == null) {
+            cfg = new HashConfig();
+        }
+        Source src = parseSource(cfg.getOn());
+        if (src != Source.IP && src != Source.PATH && (cfg.getName() == null || cfg.getName().isEmpty())) {
+            log.warn("[ConsistentHash] hash.on={} requires hash.name, falling back to client ip", cfg.getOn());
+            src = Source.IP;
+        }
+        this.source = src;
+        this.name = cfg.getName();
+        this.boundedLoadFactor = cfg.getBoundedLoadFactor() > 1 ? cfg.getBoundedLoadFactor() : 0;
+
+        long totalWeight = 0;
+        for (RouteUpstream u : upstreams) {
+            totalWeight += u.getWeight();
+        }
+        int perWeight = Math.max(1, cfg.getVirtualNodes());
+        if (totalWeight * perWeight > MAX_POINTS) {
+            perWeight = (int) Math.max(1, MAX_POINTS / Math.max(1, totalWeight));
+        }
+
+        // 高 32 位放哈希点、低 32 位放下标，一次排序得到两个平行数组
+        long[] ring = new long[(int) Math.min(MAX_POINTS, totalWeight * perWeight)];
+        int n = 0;
+        for (RouteUpstream u : upstreams) {
+            int vnodes = u.getWeight() * perWeight;
+            for (int v = 0; v < vnodes && n < ring.length; v++) {
+                int h = hash(u.getUrl() + "#" + v, 0, -1);
+                ring[n++] = ((long) h << 32) | (u.getIndex() & 0xffffffffL);
+            }
+        }
+        Arrays.sort(ring, 0, n);
+        this.points = new int[n];
+        this.owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            owners[i] = (int) ring[i];
+        }
+    }
+
     @Override
-    public String choose(List<UpstreamInstance> upstreams, GatewayContext ctx) {
-        // 可以换成 userId/header/token 等更业务的 key
-        String key = ctx.getRequest().getClientIp() + "|" + ctx.getRequest().getPath();
-        int h = hash(key);
-        int idx = Math.floorMod(h, upstreams.size());
-        return upstreams.get(idx).getUrl();
+    public RouteUpstream choose(List<RouteUpstream> upstreams, GatewayContext ctx) {
+        int n = upstreams.size();
+        if (n == 1 || points.length == 0) {
+            return upstreams.get(0);
+        }
+
+        int h = keyHash(ctx.getRequest());
+        int pos = Arrays.binarySearch(points, h);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+
+        long totalInflight = 0;
+        double totalWeight = 0;
+        if (boundedLoadFactor > 0) {
+            for (int i = 0; i < n; i++) {
+                RouteUpstream u = upstreams.get(i);
+                totalInflight += u.getLoad().inflight();
+                totalWeight += u.effectiveWeight();
+            }
+        }
+
+        // 顺时针找第一个在候选里的节点；有界负载模式下还要没超过容量
+        RouteUpstream firstCandidate = null;
+        for (int step = 0, len = points.length; step < len; step++) {
+            int owner = owners[(pos + step) % len];
+            RouteUpstream u = Candidates.find(upstreams, owner);
+            if (u == null || (ctx.hasTried() && ctx.isTried(u))) {
+                continue;
+            }
+            if (boundedLoadFactor == 0) {
+                return u;
+            }
+            if (firstCandidate == null) {
+                firstCandidate = u;
+            }
+            // 容量 = ceil(c × (总 in-flight + 1) × w / W)，+1 把本次请求算进去
+            double capacity = Math.ceil(boundedLoadFactor * (totalInflight + 1) * u.effectiveWeight() / totalWeight);
+            if (u.getLoad().inflight() + 1 <= capacity) {
+                return u;
+            }
+        }
+        return firstCandidate != null ? firstCandidate : upstreams.get(0);
+    }
+
+    private int keyHash(GatewayRequest req) {
+        switch (source) {
+            case HEADER -> {
+                String v = req.getHeaders().get(name);
+                if (v != null) {
+                    return hash(v, 0, v.length());
+                }
+            }
+            case COOKIE -> {
+                String cookie = req.getHeaders().get(HttpHeaderNames.COOKIE);
+                if (cookie != null) {
+                    int h = paramHash(cookie, 0, ';');
+                    if (h != 0) {
+                        return h;
+                    }
+                }
+            }
+            case QUERY -> {
+                String uri = req.getUri();
+                int q = uri.indexOf('?');
+                if (q >= 0) {
+                    int h = paramHash(uri, q + 1, '&');
+                    if (h != 0) {
+                        return h;
+                    }
+                }
+            }
+            case PATH -> {
+                return hash(req.getPath(), 0, req.getPath().length());
+            }
+            default -> {
+            }
+        }
+        String ip = req.getClientIp();
+        return ip == null ? 0 : hash(ip, 0, ip.length());
+    }
+
+    /**
+     * 在 name=value 列表里找到 name，对 value 的原始字符算哈希；找不到返回 0
+     */
+    private int paramHash(String s, int from, char sep) {
+        int len = s.length();
+        int i = from;
+        while (i < len) {
+            while (i < len && s.charAt(i) == ' ') {
+                i++;
+            }
+            int end = s.indexOf(sep, i);
+            if (end < 0) {
+                end = len;
+            }
+            int nameEnd = i + name.length();
+            if (nameEnd < end && s.charAt(nameEnd) == '=' && s.regionMatches(i, name, 0, name.length())) {
+                int h = hash(s, nameEnd + 1, end);
+                return h == 0 ? 1 : h;
+            }
+            i = end + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * FNV-1a + murmur3 fmix32 雪崩，直接在字符上计算，不转 byte[]
+     *
+     * @param to 小于 0 表示到结尾
+     */
+    static int hash(String s, int from, int to) {
+        if (to < 0) {
+            to = s.length();
+        }
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h ^= s.charAt(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
     }
 
-    private int hash(String s) {
-        CRC32 crc32 = new CRC32();
-        crc32.update(s.getBytes(StandardCharsets.UTF_8));
-        long v = crc32.getValue();
-        return (int) v;
+    private static Source parseSource(String on) {
+        if (on == null) {
+            return Source.IP;
+        }
+        return switch (on.toLowerCase(Locale.ROOT)) {
+            case "header" -> Source.HEADER;
+            case "cookie" -> Source.COOKIE;
+            case "query" -> Source.QUERY;
+            case "path" -> Source.PATH;
+            default -> Source.IP;
+        };
     }
 }
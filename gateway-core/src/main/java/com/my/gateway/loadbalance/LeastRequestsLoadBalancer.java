@@ -0,0 +1,49 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少请求数（Power of Two Choices）
+ *
+ * 随机取两个不同的候选，选 (inflight + 1) / weight 较小的那个：
+ * - 每次只看两个实例，O(1)，上百个 upstream 也不需要扫描；in-flight 计数在 upstream 上，选择过程不加锁
+ * - 按权重归一化负载，权重 2 的实例可以承担两倍的并发；预热中的实例按打折后的有效权重计算
+ * - 变慢的实例请求堆积、in-flight 上升，自然少分流量
+ *
+ * 状态都在 UpstreamLoad 上，实例本身无状态，所有路由共享一个
+ */
+public class LeastRequestsLoadBalancer implements LoadBalancer {
+
+    @Override
+    public RouteUpstream choose(List<RouteUpstream> upstreams, GatewayContext ctx) {
+        int n = upstreams.size();
+        if (n == 1) {
+            return upstreams.get(0);
+        }
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int i = rnd.nextInt(n);
+        int j = rnd.nextInt(n - 1);
+        if (j >= i) {
+            j++;
+        }
+        RouteUpstream a = upstreams.get(i);
+        RouteUpstream b = upstreams.get(j);
+        if (ctx.hasTried()) {
+            // 重试：避开已经试过的那个
+            if (ctx.isTried(a)) {
+                return b;
+            }
+            if (ctx.isTried(b)) {
+                return a;
+            }
+        }
+        // (ia + 1) / wa <= (ib + 1) / wb，交叉相乘避免除法；权重取预热后的有效权重
+        double ca = (a.getLoad().inflight() + 1) * b.effectiveWeight();
+        double cb = (b.getLoad().inflight() + 1) * a.effectiveWeight();
+        return ca <= cb ? a : b;
+    }
+}
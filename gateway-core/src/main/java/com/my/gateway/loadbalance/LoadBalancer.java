@@ -1,16 +1,24 @@
 package com.my.gateway.loadbalance;
 
+import com.my.gateway.container.RouteUpstream;
 import com.my.gateway.context.GatewayContext;
-import com.my.gateway.context.UpstreamInstance;
 
 import java.util.List;
 
 /**
  * 负载均衡接口
+ *
+ * 每条路由在快照发布时创建自己的实例（LoadBalancerFactory.create），有状态的实现不需要再按 routeId 区分。
  */
 public interface LoadBalancer {
 
-    String choose(List<UpstreamInstance> upstreams, GatewayContext ctx);
+    /**
+     * @param candidates 当前可用（熔断器非 OPEN）的实例，非空，按 RouteUpstream.getIndex()（在路由里的固定下标）升序排列；
+     *                   健康状态不变时是同一个 List 对象，可以按引用判断集合有没有变化。
+     *                   里面可能有本次请求已经试过的实例（ctx.isTried），能顺带避开的实现尽量避开，
+     *                   选中了也没关系，调用方会顺序找下一个
+     */
+    RouteUpstream choose(List<RouteUpstream> candidates, GatewayContext ctx);
 
     default String name() {
         return this.getClass().getSimpleName();
@@ -1,29 +1,35 @@
 package com.my.gateway.loadbalance;
 
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayRoute;
+
 import java.util.Locale;
 
 public class LoadBalancerFactory {
 
+    // 无状态的实现可以所有路由共享
     private static final LoadBalancer RANDOM = new RandomLoadBalancer();
-    private static final LoadBalancer RR = new RoundRobinLoadBalancer();
-    private static final LoadBalancer CH = new ConsistentHashLoadBalancer();
-    // 平滑加权轮询负载均衡器实现类，线程安全，可以共享实例
-    private static final SmoothWeightedRoundRobinLoadBalancer SWRR_IMPL = new SmoothWeightedRoundRobinLoadBalancer();
-
-    private static final LoadBalancer SWRR = (upstreams, ctx) -> SWRR_IMPL.choose(upstreams, ctx);
-
+    private static final LoadBalancer LEAST_REQUESTS = new LeastRequestsLoadBalancer();
+    private static final LoadBalancer PEAK_EWMA = new PeakEwmaLoadBalancer();
 
-    public static LoadBalancer get(String lb) {
+    /**
+     * 路由快照发布时调用，为一条路由创建负载均衡器（有状态的实现每条路由一个实例）
+     *
+     * @param upstreams 路由的全部 upstream，下标与 RouteUpstream.getIndex() 一致
+     */
+    public static LoadBalancer create(GatewayRoute route, RouteUpstream[] upstreams) {
+        String lb = route.getLb();
         if (lb == null) {
-            return RR; // 默认轮询更“像网关”
+            return new RoundRobinLoadBalancer(); // 默认轮询更“像网关”
         }
         String v = lb.toLowerCase(Locale.ROOT);
         return switch (v) {
             case "random" -> RANDOM;
-            case "consistent_hash", "ch" -> CH;
-            case "round_robin", "rr" -> RR;
-            case "smooth_wrr", "swrr", "weighted_rr" -> SWRR;
-            default -> RR;
+            case "consistent_hash", "ch" -> new ConsistentHashLoadBalancer(upstreams, route.getHash());
+            case "least_requests", "least_request", "p2c" -> LEAST_REQUESTS;
+            case "peak_ewma", "ewma" -> PEAK_EWMA;
+            case "smooth_wrr", "swrr", "weighted_rr" -> new SmoothWeightedRoundRobinLoadBalancer(upstreams);
+            default -> new RoundRobinLoadBalancer();
         };
     }
 }
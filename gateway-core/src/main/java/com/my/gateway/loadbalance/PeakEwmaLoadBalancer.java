@@ -0,0 +1,61 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 延迟感知（Peak EWMA + Power of Two Choices）
+ *
+ * 每个实例的代价 = RTT 估计值 × (inflight + 1) / 有效权重（预热中打折），随机取两个候选选代价小的：
+ * - RTT 估计值取峰值敏感的 EWMA（见 UpstreamLoad），实例变慢后立刻变贵，远早于熔断器的连续失败阈值
+ * - 乘上 in-flight 后，请求堆积的实例也会变贵
+ * - 还没有 RTT 采样的实例（新加入 / 刚恢复）：没有请求在途时代价为 0，先拿到探测流量；
+ *   有请求在途时按惩罚值计算，避免冷实例在第一批响应回来之前被灌满
+ *
+ * 状态都在 UpstreamLoad 上，实例本身无状态，所有路由共享一个；每次选择只读两个实例的原子变量，不加锁、不分配对象
+ */
+public class PeakEwmaLoadBalancer implements LoadBalancer {
+
+    // 没有 RTT 采样但有请求在途时的代价基数（1s）
+    private static final double PENALTY_NANOS = 1_000_000_000d;
+
+    @Override
+    public RouteUpstream choose(List<RouteUpstream> upstreams, GatewayContext ctx) {
+        int n = upstreams.size();
+        if (n == 1) {
+            return upstreams.get(0);
+        }
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int i = rnd.nextInt(n);
+        int j = rnd.nextInt(n - 1);
+        if (j >= i) {
+            j++;
+        }
+        RouteUpstream a = upstreams.get(i);
+        RouteUpstream b = upstreams.get(j);
+        if (ctx.hasTried()) {
+            // 重试：避开已经试过的那个
+            if (ctx.isTried(a)) {
+                return b;
+            }
+            if (ctx.isTried(b)) {
+                return a;
+            }
+        }
+        long now = System.nanoTime();
+        return cost(a, now) <= cost(b, now) ? a : b;
+    }
+
+    private static double cost(RouteUpstream u, long now) {
+        UpstreamLoad load = u.getLoad();
+        int inflight = load.inflight();
+        double rtt = load.ewmaNanos(now);
+        if (rtt == 0d && inflight > 0) {
+            rtt = PENALTY_NANOS;
+        }
+        return rtt * (inflight + 1) / u.effectiveWeight();
+    }
+}
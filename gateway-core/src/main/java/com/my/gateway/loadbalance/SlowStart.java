@@ -0,0 +1,51 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.config.SlowStartConfig;
+
+/**
+ * 慢启动策略（路由快照发布时由配置解析出来，只读）
+ */
+public final class SlowStart {
+
+    public static final SlowStart NONE = new SlowStart(0, 1, 1);
+
+    private final long windowMs;
+    // 1 / aggression
+    private final double exponent;
+    private final double minFactor;
+
+    private SlowStart(long windowMs, double aggression, double minFactor) {
+        this.windowMs = windowMs;
+        this.exponent = 1 / aggression;
+        this.minFactor = minFactor;
+    }
+
+    public static SlowStart of(SlowStartConfig cfg) {
+        if (cfg == null || cfg.getWindowMs() <= 0) {
+            return NONE;
+        }
+        double aggression = cfg.getAggression() > 0 ? cfg.getAggression() : 1.0;
+        double minFactor = Math.min(1, Math.max(0.01, cfg.getMinWeightPercent() / 100));
+        return new SlowStart(cfg.getWindowMs(), aggression, minFactor);
+    }
+
+    public boolean isEnabled() {
+        return windowMs > 0;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * 预热了 elapsedMs 之后的权重系数，(0, 1]
+     */
+    public double factor(long elapsedMs) {
+        if (elapsedMs >= windowMs) {
+            return 1;
+        }
+        double t = Math.max(0, elapsedMs) / (double) windowMs;
+        double f = exponent == 1 ? t : Math.pow(t, exponent);
+        return Math.max(minFactor, f);
+    }
+}
@@ -1,78 +1,194 @@
 package com.my.gateway.loadbalance;
 
+import com.my.gateway.container.RouteUpstream;
 import com.my.gateway.context.GatewayContext;
-import com.my.gateway.context.UpstreamInstance;
 
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Smooth Weighted Round Robin (Nginx 同款思路)
+ * Smooth Weighted Round Robin (Nginx 同款思路)，预计算调度序列 + 原子游标
  *
- * 每个实例维护 currentWeight：
+ * 经典 SWRR 每个实例维护 currentWeight：
  * 1) 每轮对所有实例 current += weight
  * 2) 选出 current 最大的实例作为本次结果
  * 3) 被选中实例 current -= totalWeight
+ * 这个过程每 totalWeight 次一个周期，所以直接把一个周期的选择结果预先算成 int[]（候选列表里的位置），
+ * 请求时只对游标做一次 getAndIncrement 取下一个，不加锁，序列与逐次计算完全一致（同样平滑、无突刺）。
+ *
+ * - 可用集合不变时 LoadBalanceFilter 传进来的是同一个 List 对象，按引用判断，集合变化（熔断 / 恢复）时才重算一份替换
+ * - 重试时沿着序列跳过本次请求已经试过的实例，不重算
+ * - 有实例在慢启动预热时，按有效权重（放大 WARMUP_SCALE 倍取整）算序列，每 WARMUP_REBUILD_MS 重算一次跟上爬坡
+ *
+ * 重算是 O(n × 序列长度)，不放在请求路径上：发现序列过期的请求只投递一个重算任务（同一个负载均衡器同时最多一个），
+ * 由后台线程算好后原子替换。算好之前，集合内容没变（预热到期 / 换了 List 对象）的继续用旧序列，集合变了的在新集合上按普通轮询选。
+ * 序列长度另外按 MAX_WORK / n 封顶，实例很多时单次重算的耗时也有上限。
  */
-public class SmoothWeightedRoundRobinLoadBalancer {
+public class SmoothWeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    // 序列长度上限，权重之和更大时按比例缩小
+    private static final int MAX_SCHEDULE = 1 << 16;
+    // 一次重算的模拟步数（n × 序列长度）上限
+    private static final long MAX_WORK = 1 << 22;
+
+    // 序列重算都在这个后台线程上做，请求路径只投递任务
+    private static final ExecutorService REBUILD = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "swrr-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
 
-    private static class Node {
-        final String url;
-        final int weight;
-        int current;
+    // 预热期间权重放大倍数（让打折后的权重保留一位小数的精度）和序列重算间隔
+    private static final int WARMUP_SCALE = 10;
+    private static final long WARMUP_REBUILD_MS = 500;
 
-        Node(String url, int weight) {
-            this.url = url;
-            this.weight = Math.max(1, weight);
-            this.current = 0;
+    /**
+     * 一个候选集合对应的调度序列
+     */
+    static final class Schedule {
+        // 算这份序列用的候选列表
+        final List<RouteUpstream> candidates;
+        // 一个周期的选择结果（在 candidates 里的位置）
+        final int[] seq;
+        // 有实例在预热时，过了这个时间要按新的有效权重重算；否则为 Long.MAX_VALUE
+        final long validUntilMs;
+
+        Schedule(List<RouteUpstream> candidates, int[] seq, long validUntilMs) {
+            this.candidates = candidates;
+            this.seq = seq;
+            this.validUntilMs = validUntilMs;
         }
     }
 
-    // routeId -> (url -> Node)
-    private final Map<String, Map<String, Node>> state = new ConcurrentHashMap<>();
-
-    public String choose(List<UpstreamInstance> upstreams, GatewayContext ctx) {
-        String routeId = (ctx.getRoute() != null && ctx.getRoute().getId() != null)
-                ? ctx.getRoute().getId()
-                : "default";
+    private final AtomicReference<Schedule> schedule;
+    private final AtomicInteger cursor = new AtomicInteger();
+    // 已经投递、还没执行完的重算任务
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
 
-        Map<String, Node> nodes = state.computeIfAbsent(routeId, k -> new ConcurrentHashMap<>());
+    public SmoothWeightedRoundRobinLoadBalancer(RouteUpstream[] upstreams) {
+        // 路由快照发布时算第一份，不在请求路径上
+        this.schedule = new AtomicReference<>(build(List.of(upstreams)));
+    }
 
-        // 同步一下节点集合（支持配置热更新时增删）
-        // 1) 加入新节点
-        for (UpstreamInstance ins : upstreams) {
-            nodes.computeIfAbsent(ins.getUrl(), u -> new Node(ins.getUrl(), ins.getWeight()));
+    @Override
+    public RouteUpstream choose(List<RouteUpstream> upstreams, GatewayContext ctx) {
+        Schedule s = schedule.get();
+        if (s.candidates != upstreams
+                || (s.validUntilMs != Long.MAX_VALUE && System.currentTimeMillis() >= s.validUntilMs)) {
+            requestRebuild(upstreams);
         }
-        // 2) 移除已不存在节点
-        nodes.keySet().removeIf(url -> upstreams.stream().noneMatch(i -> i.getUrl().equals(url)));
-
-        int total = 0;
-        Node best = null;
+        int start = cursor.getAndIncrement();
+        if (s.candidates != upstreams && !s.candidates.equals(upstreams)) {
+            // 新集合的序列还没算好：先按普通轮询（内容相同只是换了 List 对象时，位置一一对应，继续用旧序列）
+            return upstreams.get(Math.floorMod(start, upstreams.size()));
+        }
+        int[] seq = s.seq;
+        RouteUpstream u = upstreams.get(seq[Math.floorMod(start, seq.length)]);
+        if (!ctx.hasTried() || !ctx.isTried(u)) {
+            return u;
+        }
+        // 重试：沿序列找下一个没试过的
+        for (int i = 1; i < seq.length; i++) {
+            RouteUpstream next = upstreams.get(seq[Math.floorMod(start + i, seq.length)]);
+            if (!ctx.isTried(next)) {
+                return next;
+            }
+        }
+        return u;
+    }
 
-        //  关键：这里需要串行更新 current，否则并发下会乱
-        synchronized (nodes) {
-            for (UpstreamInstance ins : upstreams) {
-                Node n = nodes.get(ins.getUrl());
-                // 如果权重配置变了，简单处理：重建节点
-                if (n == null || n.weight != Math.max(1, ins.getWeight())) {
-                    nodes.put(ins.getUrl(), new Node(ins.getUrl(), ins.getWeight()));
-                    n = nodes.get(ins.getUrl());
+    /**
+     * 投递一次重算；已经有任务在排队 / 执行时什么都不做，任务结束后下一个发现过期的请求会再投递
+     */
+    private void requestRebuild(List<RouteUpstream> upstreams) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            REBUILD.execute(() -> {
+                try {
+                    schedule.set(build(upstreams));
+                } finally {
+                    rebuilding.set(false);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+        }
+    }
 
-                n.current += n.weight;
-                total += n.weight;
+    /**
+     * 测试用：等已经投递的重算执行完
+     */
+    void awaitRebuild() throws InterruptedException {
+        while (rebuilding.get()) {
+            Thread.sleep(1);
+        }
+    }
 
-                if (best == null || n.current > best.current) {
-                    best = n;
-                }
+    /**
+     * 按经典 SWRR 逐次模拟一个周期
+     */
+    static Schedule build(List<RouteUpstream> upstreams) {
+        int n = upstreams.size();
+        boolean warming = false;
+        for (int i = 0; i < n && !warming; i++) {
+            warming = upstreams.get(i).isWarmingUp();
+        }
+        int[] weights = new int[n];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            RouteUpstream u = upstreams.get(i);
+            weights[i] = warming ? (int) Math.max(1, Math.round(u.effectiveWeight() * WARMUP_SCALE)) : u.getWeight();
+            total += weights[i];
+        }
+        long validUntil = warming ? System.currentTimeMillis() + WARMUP_REBUILD_MS : Long.MAX_VALUE;
+        if (n == 0) {
+            return new Schedule(upstreams, new int[0], validUntil);
+        }
+        long limit = Math.max(n, Math.min(MAX_SCHEDULE, MAX_WORK / n));
+        if (total > limit) {
+            for (int i = 0; i < n; i++) {
+                weights[i] = (int) Math.max(1, weights[i] * limit / total);
             }
+        }
+        int g = 0;
+        for (int w : weights) {
+            g = gcd(g, w);
+        }
+        total = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] /= g;
+            total += weights[i];
+        }
 
-            if (best == null) {
-                return upstreams.get(0).getUrl();
+        int[] current = new int[n];
+        int[] seq = new int[(int) total];
+        for (int k = 0; k < seq.length; k++) {
+            int best = 0;
+            for (int i = 0; i < n; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
             }
-            best.current -= total;
-            return best.url;
+            current[best] -= (int) total;
+            seq[k] = best;
+        }
+        return new Schedule(upstreams, seq, validUntil);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
         }
+        return a;
     }
 }
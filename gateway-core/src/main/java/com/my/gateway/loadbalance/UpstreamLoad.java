@@ -0,0 +1,106 @@
+package com.my.gateway.loadbalance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个 upstream 实例的实时负载
+ *
+ * - in-flight：正在处理中的请求数。负载均衡选中实例时 +1（开了并发上限时按上限 CAS 预留），
+ *   该次尝试结束（响应完成 / 失败 / 改去重试 / 客户端断开）或选中后没有发出时 -1
+ * - Peak EWMA RTT：发出请求到收到响应头（或失败）的耗时。比当前估计值大时直接取新值（对变慢立即敏感），
+ *   否则按距上次采样的时间指数衰减地融合；长时间没有采样时估计值向 0 衰减，空闲实例会重新得到探测流量
+ *
+ * - 预热开始时间：熔断恢复 / 热更新新加入时记下，慢启动窗口内有效权重从低到高爬坡（见 RouteUpstream.effectiveWeight）
+ *
+ * 挂在 RouteUpstream 上，热更新时同 url 的实例沿用，不会因为换快照而清零。
+ * 全部基于原子变量，更新和读取都不加锁、不分配对象。
+ */
+public final class UpstreamLoad {
+
+    // 衰减时间常数：约 10s 前的采样权重降到 1/e
+    private static final double DECAY_NANOS = 10_000_000_000d;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    // EWMA 的 double 位表示，CAS 更新
+    private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0d));
+    // 上次采样时间（与 ewmaBits 不是原子的一对，并发下只影响衰减权重的一点误差）
+    private volatile long stamp = System.nanoTime();
+
+    // 预热开始时间（epoch ms），0 表示不在预热
+    private volatile long warmupStartMs;
+
+    public void onDispatch() {
+        inflight.incrementAndGet();
+    }
+
+    /**
+     * in-flight 小于 limit 时 +1：判断和预留是一次 CAS，多个 eventLoop 同时选中也不会超出上限
+     */
+    public boolean tryDispatch(int limit) {
+        for (;;) {
+            int cur = inflight.get();
+            if (cur >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(cur, cur + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void onComplete() {
+        inflight.decrementAndGet();
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    public void startWarmup(long nowMs) {
+        warmupStartMs = nowMs;
+    }
+
+    public long warmupStartMs() {
+        return warmupStartMs;
+    }
+
+    public void endWarmup() {
+        warmupStartMs = 0;
+    }
+
+    /**
+     * 记录一次 RTT 采样
+     */
+    public void observe(long rttNanos) {
+        long now = System.nanoTime();
+        double rtt = rttNanos;
+        while (true) {
+            long bits = ewmaBits.get();
+            double cur = Double.longBitsToDouble(bits);
+            double next;
+            if (rtt > cur) {
+                next = rtt;
+            } else {
+                double w = Math.exp(-Math.max(0, now - stamp) / DECAY_NANOS);
+                next = cur * w + rtt * (1 - w);
+            }
+            if (ewmaBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                stamp = now;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当前时刻的 RTT 估计值（纳秒），按距上次采样的时间向 0 衰减；还没有采样时为 0
+     */
+    public double ewmaNanos(long now) {
+        double cur = Double.longBitsToDouble(ewmaBits.get());
+        if (cur == 0d) {
+            return 0d;
+        }
+        return cur * Math.exp(-Math.max(0, now - stamp) / DECAY_NANOS);
+    }
+}
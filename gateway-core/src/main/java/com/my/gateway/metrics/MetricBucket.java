@@ -15,11 +15,14 @@ public class MetricBucket {
     public final LongAdder status4xx = new LongAdder();
     public final LongAdder status5xx = new LongAdder();
 
+    // 连续网关错误（502 / 503 / 504）次数，任何其他结果清零；离群检测读取
+    public final AtomicLong consecutiveGatewayErrors = new AtomicLong(0);
+
     public final LongAdder totalRtMs = new LongAdder();
     public final AtomicLong maxRtMs = new AtomicLong(0);
 
     // 近似分位：简单 log2 直方图（0~1ms,1~2ms,2~4ms...）
-    private static final int HIST_SIZE = 32;
+    public static final int HIST_SIZE = 32;
     public final LongAdder[] hist = new LongAdder[HIST_SIZE];
 
     public MetricBucket() {
@@ -45,6 +48,11 @@ public class MetricBucket {
         if (statusCode >= 500) {
             status5xx.increment();
         }
+        if (statusCode == 502 || statusCode == 503 || statusCode == 504) {
+            consecutiveGatewayErrors.incrementAndGet();
+        } else if (consecutiveGatewayErrors.get() != 0) {
+            consecutiveGatewayErrors.set(0);
+        }
 
         hist[bucket(rtMs)].increment();
     }
@@ -73,9 +81,27 @@ public class MetricBucket {
 
     // 近似 pxx：在直方图上做累计
     public long percentile(double p) {
+        long[] h = new long[HIST_SIZE];
+        histSnapshot(h);
+        return percentile(h, p);
+    }
+
+    /**
+     * 直方图当前的累计计数拷贝到 out（离群检测按周期做差）
+     */
+    public void histSnapshot(long[] out) {
+        for (int i = 0; i < HIST_SIZE; i++) {
+            out[i] = hist[i].sum();
+        }
+    }
+
+    /**
+     * 在给定的直方图计数上算近似 pxx
+     */
+    public static long percentile(long[] h, double p) {
         long total = 0;
-        for (LongAdder a : hist) {
-            total += a.sum();
+        for (long c : h) {
+            total += c;
         }
         if (total == 0) {
             return 0;
@@ -84,7 +110,7 @@ public class MetricBucket {
         long target = (long) Math.ceil(total * p);
         long cum = 0;
         for (int i = 0; i < HIST_SIZE; i++) {
-            cum += hist[i].sum();
+            cum += h[i];
             if (cum >= target) {
                 // 反推 bucket 上界：2^i
                 return 1L << i;
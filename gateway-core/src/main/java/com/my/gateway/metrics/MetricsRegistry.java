@@ -4,7 +4,10 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 用于往 MetricBucket 中记录指标数据的注册中心，提供全局访问点
+ * 指标桶的注册中心，提供全局访问点
+ *
+ * 路由快照发布时取好 route / upstream 的桶挂到 RouteRuntime / RouteUpstream 上，请求期间直接 record，不再拼 key 查表。
+ * 热更新删除的路由 / upstream 在这里注销，不会一直留在 /metrics 里。
  */
 public class MetricsRegistry {
 
@@ -21,18 +24,20 @@ public class MetricsRegistry {
         return INSTANCE;
     }
 
-    public void record(String routeId, String upstream, int statusCode, long rtMs) {
-        if (routeId == null) {
-            routeId = "default";
-        }
-        routeBuckets.computeIfAbsent(routeId, k -> new MetricBucket())
-                .record(statusCode, rtMs);
-
-        if (upstream != null) {
-            String key = routeId + "@" + upstream;
-            upstreamBuckets.computeIfAbsent(key, k -> new MetricBucket())
-                    .record(statusCode, rtMs);
-        }
+    public MetricBucket routeBucket(String routeId) {
+        return routeBuckets.computeIfAbsent(routeId, k -> new MetricBucket());
+    }
+
+    public MetricBucket upstreamBucket(String routeId, String upstream) {
+        return upstreamBuckets.computeIfAbsent(routeId + "@" + upstream, k -> new MetricBucket());
+    }
+
+    public void removeRoute(String routeId) {
+        routeBuckets.remove(routeId);
+    }
+
+    public void removeUpstream(String routeId, String upstream) {
+        upstreamBuckets.remove(routeId + "@" + upstream);
     }
 
     public Map<String, MetricBucket> routeView() {
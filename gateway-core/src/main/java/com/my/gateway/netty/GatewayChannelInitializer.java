@@ -0,0 +1,189 @@
+package com.my.gateway.netty;
+
+import com.my.gateway.config.ServerConfig;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.DefaultHttp2WindowUpdateFrame;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLException;
+import java.io.File;
+
+/**
+ * 入站连接的 pipeline 组装
+ *
+ * - 明文 + http2 关闭：HTTP/1.1
+ * - 明文 + http2 开启：HTTP/1.1，同时支持 h2c prior-knowledge 和 Upgrade: h2c
+ * - TLS：通过 ALPN 协商 h2 / http/1.1
+ *
+ * HTTP/2 下每个 stream 是一个子 channel，子 channel 里把 frame 转回 HttpObject，
+ * 后面仍然是 RouteAwareHttpObjectAggregator + NettyHttpServerHandler，过滤器链 / 转发逻辑与 HTTP/1.1 完全共用。
+ * 子 channel 和父连接在同一个 eventLoop 上；子 channel 的可写性 / autoRead 对应 stream 的流控窗口。
+ */
+@Slf4j
+public class GatewayChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private static final String HTTP1_AGGREGATOR = "http1Aggregator";
+    private static final String HTTP1_HANDLER = "http1Handler";
+
+    private final ServerConfig config;
+    private final int maxContentLength;
+    private final SslContext sslContext;
+
+    public GatewayChannelInitializer(ServerConfig config, int maxContentLength) throws SSLException {
+        this.config = config;
+        this.maxContentLength = maxContentLength;
+        this.sslContext = buildSslContext(config);
+    }
+
+    public boolean isSsl() {
+        return sslContext != null;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        ChannelPipeline p = ch.pipeline();
+        if (sslContext != null) {
+            p.addLast(sslContext.newHandler(ch.alloc()));
+            p.addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        configureHttp2(ctx.pipeline());
+                    } else {
+                        configureHttp1(ctx.pipeline());
+                    }
+                }
+            });
+            return;
+        }
+
+        if (!config.isHttp2()) {
+            configureHttp1(p);
+            return;
+        }
+
+        // h2c：先按 HTTP/1.1 处理；收到 HTTP/2 连接前言（prior-knowledge）或 Upgrade: h2c 时切换成 HTTP/2
+        HttpServerCodec codec = new HttpServerCodec();
+        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(codec, protocol ->
+                AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                        ? new Http2ServerUpgradeCodec(newFrameCodec(), newMultiplexHandler(), new Http2ParentHandler())
+                        : null,
+                maxContentLength);
+        p.addLast(new CleartextHttp2ServerUpgradeHandler(codec, upgradeHandler, new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel c) {
+                configureHttp2(c.pipeline());
+            }
+        }));
+        p.addLast(HTTP1_AGGREGATOR, new RouteAwareHttpObjectAggregator(maxContentLength));
+        p.addLast(HTTP1_HANDLER, new NettyHttpServerHandler());
+    }
+
+    private void configureHttp1(ChannelPipeline p) {
+        p.addLast(new HttpServerCodec()); // HTTP 编解码
+        // HTTP 消息聚合(解决大数据包拆分问题)；streaming 路由跳过聚合，body 边收边转发
+        p.addLast(HTTP1_AGGREGATOR, new RouteAwareHttpObjectAggregator(maxContentLength));
+        p.addLast(HTTP1_HANDLER, new NettyHttpServerHandler());
+    }
+
+    private void configureHttp2(ChannelPipeline p) {
+        p.addLast(newFrameCodec());
+        p.addLast(newMultiplexHandler());
+        p.addLast(new Http2ParentHandler());
+    }
+
+    private Http2FrameCodec newFrameCodec() {
+        Http2Settings settings = Http2Settings.defaultSettings()
+                .maxConcurrentStreams(config.getHttp2MaxConcurrentStreams())
+                .initialWindowSize(config.getHttp2InitialWindowSize());
+        return Http2FrameCodecBuilder.forServer()
+                .initialSettings(settings)
+                .build();
+    }
+
+    private Http2MultiplexHandler newMultiplexHandler() {
+        // 每个 stream 一个子 channel，走和 HTTP/1.1 相同的处理链
+        return new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+            @Override
+            protected void initChannel(Http2StreamChannel ch) {
+                ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                ch.pipeline().addLast(new RouteAwareHttpObjectAggregator(maxContentLength));
+                ch.pipeline().addLast(new NettyHttpServerHandler());
+            }
+        });
+    }
+
+    /**
+     * HTTP/2 父连接的末端处理器
+     *
+     * 加入时移除 HTTP/1.1 处理器（请求都在 stream 子 channel 里处理了）并放大连接级流控窗口；
+     * 之后兜底消费 SETTINGS 等连接级 frame，连接异常时直接关闭。
+     */
+    private final class Http2ParentHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            ChannelPipeline p = ctx.pipeline();
+            if (p.get(HTTP1_AGGREGATOR) != null) {
+                p.remove(HTTP1_AGGREGATOR);
+            }
+            if (p.get(HTTP1_HANDLER) != null) {
+                p.remove(HTTP1_HANDLER);
+            }
+            int delta = config.getHttp2ConnectionWindowSize() - Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+            if (delta > 0) {
+                ctx.writeAndFlush(new DefaultHttp2WindowUpdateFrame(delta));
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.debug("[Http2] connection error, closing {}: {}", ctx.channel(), cause.toString());
+            ctx.close();
+        }
+    }
+
+    private static SslContext buildSslContext(ServerConfig config) throws SSLException {
+        if (config.getSslCertFile() == null || config.getSslKeyFile() == null) {
+            return null;
+        }
+        SslContextBuilder builder = SslContextBuilder.forServer(new File(config.getSslCertFile()), new File(config.getSslKeyFile()));
+        if (config.isHttp2()) {
+            builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                    ApplicationProtocolConfig.Protocol.ALPN,
+                    ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                    ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                    ApplicationProtocolNames.HTTP_2,
+                    ApplicationProtocolNames.HTTP_1_1));
+        }
+        return builder.build();
+    }
+}
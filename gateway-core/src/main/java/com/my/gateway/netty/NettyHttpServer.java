@@ -1,17 +1,19 @@
 package com.my.gateway.netty;
 
+import com.my.gateway.config.ConfigLoader;
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.config.ServerConfig;
+import com.my.gateway.health.ActiveHealthChecker;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.NettyRuntime;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 public class NettyHttpServer {
@@ -25,37 +27,68 @@ public class NettyHttpServer {
     }
 
     public void start() {
-        // 1. 创建 Boss 和 Worker 线程组
-        // Boss 只负责处理连接，Worker 负责读写业务
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
+        GatewayConfig cfg = ConfigLoader.getInstance().getConfig();
+        int maxContentLength = cfg != null ? cfg.getMaxContentLength() : 65535;
+        ServerConfig sc = (cfg != null && cfg.getServer() != null) ? cfg.getServer() : new ServerConfig();
+
+        // 1. 选择传输实现，创建 Boss 和 Worker 线程组
+        NettyTransport transport = NettyTransport.select(sc.getTransport());
+        int workers = sc.getWorkerThreads() > 0 ? sc.getWorkerThreads() : NettyRuntime.availableProcessors() * 2;
+        ChannelOption<Boolean> reusePort = sc.isReusePort() ? transport.reusePortOption() : null;
+
+        workerGroup = transport.newEventLoopGroup(workers);
+        // SO_REUSEPORT：每个 worker eventLoop 自己 accept，不再需要单独的 Boss 线程
+        // 否则 Boss 只负责处理连接，Worker 负责读写业务
+        bossGroup = reusePort != null ? workerGroup : transport.newEventLoopGroup(1);
+        int acceptors = reusePort != null ? workers : 1;
 
         try {
+            GatewayChannelInitializer initializer = new GatewayChannelInitializer(sc, maxContentLength);
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.serverChannelClass())
                     .localAddress(new InetSocketAddress(port))
-                    // .option(ChannelOption.SO_BACKLOG, 1024) // 连接队列大小，以后优化再加
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            // 核心管道配置
-                            ch.pipeline().addLast(new HttpServerCodec()); // HTTP 编解码
-                            ch.pipeline().addLast(new HttpObjectAggregator(65535)); // HTTP 消息聚合(解决大数据包拆分问题)
-                            ch.pipeline().addLast(new NettyHttpServerHandler()); // 自定义业务逻辑
-                        }
-                    });
-
-            // 2. 启动服务
-            ChannelFuture f = b.bind().sync();
-            log.info("Gateway Server started on port: {}", port);
+                    .option(ChannelOption.SO_BACKLOG, sc.getBacklog())
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .childOption(ChannelOption.TCP_NODELAY, sc.isTcpNoDelay())
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // 核心管道配置：HTTP/1.1 / h2c / TLS + ALPN
+                    .childHandler(initializer);
+            if (reusePort != null) {
+                b.option(reusePort, true);
+            }
+            if (transport.isNative() && sc.getTcpFastOpen() > 0) {
+                b.option(ChannelOption.TCP_FASTOPEN, sc.getTcpFastOpen());
+            }
+            if (sc.getSoRcvBuf() > 0) {
+                // 监听 socket 上设置，accept 出来的连接继承（窗口扩大因子要在握手前确定）
+                b.option(ChannelOption.SO_RCVBUF, sc.getSoRcvBuf());
+                b.childOption(ChannelOption.SO_RCVBUF, sc.getSoRcvBuf());
+            }
+            if (sc.getSoSndBuf() > 0) {
+                b.childOption(ChannelOption.SO_SNDBUF, sc.getSoSndBuf());
+            }
+
+            // 2. 启动服务：reuseport 模式下绑定多次，每次落在 group 里的下一个 eventLoop 上
+            List<Channel> listeners = new ArrayList<>(acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                listeners.add(b.bind().sync().channel());
+            }
+            // 主动健康检查的定时探测跑在 worker eventLoop 上
+            ActiveHealthChecker.getInstance().start(workerGroup);
+            log.info("Gateway Server started on port: {}, transport={}, workers={}, acceptors={}, tls={}, http2={}",
+                    port, transport, workers, acceptors, initializer.isSsl(), sc.isHttp2());
 
             // 3. 阻塞主线程，直到 Channel 关闭
-            f.channel().closeFuture().sync();
-        } catch (InterruptedException e) {
+            for (Channel ch : listeners) {
+                ch.closeFuture().sync();
+            }
+        } catch (InterruptedException | javax.net.ssl.SSLException e) {
             log.error("Gateway start failed", e);
         } finally {
-            bossGroup.shutdownGracefully();
+            if (bossGroup != workerGroup) {
+                bossGroup.shutdownGracefully();
+            }
             workerGroup.shutdownGracefully();
         }
     }
@@ -1,49 +1,136 @@
 package com.my.gateway.netty;
 
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
 import com.my.gateway.context.GatewayContext;
 import com.my.gateway.context.GatewayRequest;
 import com.my.gateway.context.GatewayResponse;
+import com.my.gateway.context.RequestBodyStream;
+import com.my.gateway.filter.FilterFactory;
+import com.my.gateway.filter.GatewayFilterChain;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import io.netty.util.AttributeKey;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 
 @Slf4j
-public class NettyHttpServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+public class NettyHttpServerHandler extends SimpleChannelInboundHandler<HttpObject> {
+
+    // 客户端 channel 恢复可写时要执行的回调（流式响应背压用，一次性）
+    private static final AttributeKey<Runnable> ON_WRITABLE = AttributeKey.valueOf("gateway.onWritable");
+
+    // 流式路由：当前正在接收 body 的请求（HTTP/1.1 同一连接上请求体是串行到达的）
+    private RequestBodyStream streamingBody;
+
+    // 这个连接上还没结束的请求（HTTP/1.1 pipelining 时可能不止一个），客户端断开时统一释放
+    private final ArrayDeque<GatewayContext> pending = new ArrayDeque<>();
 
     public NettyHttpServerHandler() {
         super(false); // 关闭自动释放，交给 GatewayContext 管理
     }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) throws Exception {
-        // 1. 获取客户端 IP (简单的获取方式)
+    protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
+        // 聚合模式：RouteAwareHttpObjectAggregator 已经拼好完整请求
+        if (msg instanceof FullHttpRequest full) {
+            handleRequest(ctx, new GatewayRequest(clientIp(ctx), full));
+            return;
+        }
+
+        // 流式模式：先拿到请求头就开始走过滤器链，body 后续陆续转发
+        if (msg instanceof HttpRequest head) {
+            if (HttpUtil.is100ContinueExpected(head)) {
+                ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+                head.headers().remove(HttpHeaderNames.EXPECT);
+            }
+            streamingBody = new RequestBodyStream(ctx.channel());
+            handleRequest(ctx, new GatewayRequest(clientIp(ctx), head, streamingBody));
+            return;
+        }
+
+        if (msg instanceof HttpContent content) {
+            RequestBodyStream body = streamingBody;
+            if (body == null) {
+                ReferenceCountUtil.release(content);
+                return;
+            }
+            if (content instanceof LastHttpContent) {
+                streamingBody = null;
+            }
+            body.onContent(content);
+            return;
+        }
+
+        ReferenceCountUtil.release(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Runnable r = ctx.channel().attr(ON_WRITABLE).getAndSet(null);
+        if (r != null) {
+            // 客户端走了也要恢复 upstream 读取，让 upstream 连接能正常结束
+            r.run();
+        }
+        if (streamingBody != null) {
+            streamingBody.abort(new IOException("client connection closed before request body completed"));
+            streamingBody = null;
+        }
+        // 还在等 upstream / 重试退避中的请求：归还没发出的预留、执行后置阶段，之后的重试不会再发出
+        GatewayContext c;
+        while ((c = pending.poll()) != null) {
+            c.release();
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            Runnable r = ctx.channel().attr(ON_WRITABLE).getAndSet(null);
+            if (r != null) {
+                r.run();
+            }
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 注册一次性回调：客户端 channel 下次变为可写时执行
+     */
+    public static void onWritable(io.netty.channel.Channel channel, Runnable callback) {
+        channel.attr(ON_WRITABLE).set(callback);
+    }
+
+    private String clientIp(ChannelHandlerContext ctx) {
+        // 获取客户端 IP (简单的获取方式)
         InetSocketAddress socketAddress = (InetSocketAddress) ctx.channel().remoteAddress();
-        String clientIp = socketAddress.getAddress().getHostAddress();
-
-        // 2. 构建核心上下文 GatewayContext
-        // 注意：这里必须 retain 一下 msg，因为 SimpleChannelInboundHandler 会自动 release，
-        // 而 GatewayContext 需要持有它直到处理结束。
-        // 但为了简单演示，暂且认为 Context 生命周期就在这个方法内结束，先不 retain，
-        // 后面引入异步 Filter 时需要特别注意引用计数问题。
-        GatewayRequest request = new GatewayRequest(clientIp, msg);
+        return socketAddress.getAddress().getHostAddress();
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, GatewayRequest request) {
+        // 构建核心上下文 GatewayContext
+        // 聚合模式下 FullHttpRequest 由 GatewayContext 持有，直到 writeResponse 时释放
         GatewayContext gatewayContext = new GatewayContext(ctx, request);
 
-        // 3. 记录请求开始时间（用于后续日志和监控）
+        // 记录请求开始时间（用于后续日志和监控）
         gatewayContext.setStartNano(System.nanoTime());
+        pending.removeIf(GatewayContext::isCompleted);
+        pending.add(gatewayContext);
 
         try {
             // ============================================
-            // 核心：获取并执行过滤器链
+            // 核心：匹配路由，执行该路由预编译好的过滤器链
             // ============================================
-            com.my.gateway.filter.FilterFactory.getInstance()
-                    .buildFilterChain()
-                    .doFilter(gatewayContext);
+            route(gatewayContext).execute(gatewayContext);
 
             // ========================================================
             // 核心修改：删除了 writeResponse(gatewayContext)
@@ -62,13 +149,27 @@ public class NettyHttpServerHandler extends SimpleChannelInboundHandler<FullHttp
             errResponse.setJsonContent("{\"error\": \"" + e.getMessage() + "\"}");
             gatewayContext.writeResponse();
 
-        } finally {
-            // 4. 确保资源释放 (虽然后面 writeResponse 会消耗掉，但加个保险是个好习惯)
-            // 在这里如果是 SimpleChannelInboundHandler，它会在方法返回后自动 release msg。
-            // 如果把 msg 传给了异步线程，这里就不能用 SimpleChannelInboundHandler 了。
         }
     }
 
+    /**
+     * 取当前路由表快照匹配路由（整个请求用同一个快照，热更新不会半途换表），返回该路由的过滤器链
+     */
+    private GatewayFilterChain route(GatewayContext ctx) {
+        GatewayRequest req = ctx.getRequest();
+        // Host -> 前缀树最长前缀 -> method / header / query 条件（路由表发布时已编译好）
+        RouteRuntime runtime = RouteManager.getInstance().current().match(req.getHttpRequest(), req.getPath());
+        if (runtime == null) {
+            return FilterFactory.getInstance().noRouteChain();
+        }
+        ctx.setRoute(runtime.getRoute());
+        ctx.setRuntime(runtime);
+        if (runtime.hasPathParams()) {
+            ctx.setPathParams(runtime.pathParams(req.getPath()));
+        }
+        return runtime.getFilterChain();
+    }
+
     // 模拟业务逻辑
     private void handleBiz(GatewayContext context) {
         log.info("处理请求路径: " + context.getRequest().getPath());
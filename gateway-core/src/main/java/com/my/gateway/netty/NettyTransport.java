@@ -0,0 +1,200 @@
+package com.my.gateway.netty;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+
+/**
+ * 传输层实现选择：io_uring > epoll > nio
+ *
+ * io_uring 在 netty incubator 里，不作为编译依赖，classpath 上有 netty-incubator-transport-native-io_uring 时通过反射启用
+ */
+@Slf4j
+public enum NettyTransport {
+
+    IO_URING {
+        private static final String PKG = "io.netty.incubator.channel.uring.";
+
+        @Override
+        boolean isAvailable() {
+            try {
+                return (boolean) Class.forName(PKG + "IOUring").getMethod("isAvailable").invoke(null);
+            } catch (Throwable t) {
+                return false;
+            }
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            try {
+                return (EventLoopGroup) Class.forName(PKG + "IOUringEventLoopGroup")
+                        .getConstructor(int.class).newInstance(threads);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("io_uring event loop init failed", e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return (Class<? extends ServerChannel>) load(PKG + "IOUringServerSocketChannel");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return (Class<? extends SocketChannel>) load(PKG + "IOUringSocketChannel");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ChannelOption<Boolean> reusePortOption() {
+            try {
+                return (ChannelOption<Boolean>) Class.forName(PKG + "IOUringChannelOption")
+                        .getField("SO_REUSEPORT").get(null);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    },
+
+    EPOLL {
+        @Override
+        boolean isAvailable() {
+            try {
+                return Epoll.isAvailable();
+            } catch (Throwable t) {
+                return false;
+            }
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> reusePortOption() {
+            return io.netty.channel.epoll.EpollChannelOption.SO_REUSEPORT;
+        }
+    },
+
+    NIO {
+        @Override
+        boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> reusePortOption() {
+            return null;
+        }
+    };
+
+    abstract boolean isAvailable();
+
+    /**
+     * @param threads 0 表示 Netty 默认线程数
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    /**
+     * SO_REUSEPORT 选项，不支持时返回 null
+     */
+    public abstract ChannelOption<Boolean> reusePortOption();
+
+    /**
+     * 原生传输才支持 SO_REUSEPORT / TCP_FASTOPEN 等 Linux 专有选项
+     */
+    public boolean isNative() {
+        return this != NIO;
+    }
+
+    /**
+     * 按配置选择传输实现；指定的实现不可用时降级到 auto 顺序
+     */
+    public static NettyTransport select(String preferred) {
+        String v = preferred == null ? "auto" : preferred.toLowerCase(Locale.ROOT);
+        NettyTransport wanted = switch (v) {
+            case "io_uring", "iouring", "uring" -> IO_URING;
+            case "epoll" -> EPOLL;
+            case "nio" -> NIO;
+            default -> null;
+        };
+        if (wanted != null) {
+            if (wanted.isAvailable()) {
+                return wanted;
+            }
+            log.warn("[Transport] {} not available on this platform, falling back", wanted);
+        }
+        for (NettyTransport t : values()) {
+            if (t.isAvailable()) {
+                return t;
+            }
+        }
+        return NIO;
+    }
+
+    /**
+     * 推断某个 eventLoop 属于哪种传输实现（upstream 连接要和它注册在同一个 loop 上，channel 类型必须匹配）
+     */
+    public static NettyTransport forEventLoop(EventLoop loop) {
+        EventLoopGroup group = loop.parent();
+        if (group instanceof EpollEventLoopGroup) {
+            return EPOLL;
+        }
+        if (group != null && group.getClass().getName().startsWith("io.netty.incubator.channel.uring.")) {
+            return IO_URING;
+        }
+        return NIO;
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(name + " not on classpath", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.my.gateway.netty;
+
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * 按路由决定是否聚合请求体
+ *
+ * 命中 streaming 路由的请求不当作聚合起点，HttpRequest / HttpContent 原样透传给后面的 Handler；
+ * 其余请求保持原来的 HttpObjectAggregator 行为（FullHttpRequest）。
+ */
+public class RouteAwareHttpObjectAggregator extends HttpObjectAggregator {
+
+    public RouteAwareHttpObjectAggregator(int maxContentLength) {
+        super(maxContentLength);
+    }
+
+    @Override
+    protected boolean isStartMessage(HttpObject msg) throws Exception {
+        if (!super.isStartMessage(msg)) {
+            return false;
+        }
+        if (msg instanceof HttpRequest req) {
+            RouteRuntime runtime = RouteManager.getInstance().current().match(req);
+            return runtime == null || !runtime.getRoute().isStreaming();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+package com.my.gateway.netty;
+
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.filter.route.RouteFilter;
+import com.my.gateway.netty.upstream.UpstreamExchange;
+import com.my.gateway.netty.upstream.UpstreamResponseListener;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+
+/**
+ * 把 upstream 响应直接接力给客户端，不再经过 String 中转
+ *
+ * 1) 有 Content-Length 且不超过 responseBufferSize：body 分片以 CompositeByteBuf 拼起来一次写回（零拷贝、字节原样）；
+ *    没有 body 的响应（HEAD / 1xx / 204 / 304）也走这里，upstream 的 Content-Length 原样保留
+ * 2) 其他情况：收到响应头就写给客户端，body 分片原样转发；
+ *    客户端 channel 不可写时暂停读取 upstream 连接，可写后再恢复，慢客户端不会让网关缓存整个下载
+ *
+ * upstream 连接和入站连接在同一个 eventLoop 上，所有回调单线程执行
+ */
+public class UpstreamResponseRelay implements UpstreamResponseListener {
+
+    /**
+     * RouteFilter 通过它参与健康统计 / 重试 / 指标
+     */
+    public interface Listener {
+
+        /**
+         * 收到状态码；返回 false 表示放弃本次响应（例如改去重试），此后不再回调
+         */
+        boolean onStatus(int statusCode);
+
+        /**
+         * 响应已完整收到，紧接着写回客户端
+         */
+        void onFinish(int statusCode);
+
+        /**
+         * 请求失败
+         *
+         * @param committed 响应头是否已经写给客户端：false 时可以重试或返回 502，true 时连接会被直接断开
+         */
+        void onFailure(Throwable t, boolean committed);
+
+        /**
+         * 客户端已经断开，放弃本次响应（不算 upstream 的成功或失败），此后不再回调
+         */
+        void onCancel();
+    }
+
+    private final GatewayContext ctx;
+    private final String upstream;
+    private final Listener listener;
+    private final int bufferLimit;
+
+    private int statusCode;
+    private boolean abandoned;
+    private boolean streaming;
+    private HttpHeaders headers;
+    private CompositeByteBuf buffered;
+
+    /**
+     * @param bufferLimit 响应体不超过该值（且带 Content-Length）时整包写回
+     */
+    public UpstreamResponseRelay(GatewayContext ctx, String upstream, int bufferLimit, Listener listener) {
+        this.ctx = ctx;
+        this.upstream = upstream;
+        this.listener = listener;
+        this.bufferLimit = bufferLimit;
+    }
+
+    @Override
+    public void onResponseHead(UpstreamExchange exchange, HttpResponse head) {
+        statusCode = head.status().code();
+        if (!listener.onStatus(statusCode)) {
+            abandoned = true;
+            exchange.abort();
+            return;
+        }
+
+        HttpHeaders upstreamHeaders = head.headers();
+        headers = new DefaultHttpHeaders();
+        headers.add(upstreamHeaders);
+        // 逐跳头不透传，长度 / 分块由网关按实际写法重新生成
+        long contentLength = HttpUtil.isTransferEncodingChunked(head) ? -1 : HttpUtil.getContentLength(head, -1L);
+        // HEAD / 1xx / 204 / 304 没有 body：Content-Length 原样保留，走整包写回（不会改成 chunked 或 0）
+        boolean bodiless = ctx.isBodilessResponse(statusCode);
+        headers.remove(HttpHeaderNames.CONNECTION);
+        headers.remove(RouteFilter.KEEP_ALIVE);
+        headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        if (!bodiless) {
+            headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+        }
+        headers.set("X-Gateway-Upstream", upstream);
+
+        if (bodiless || (contentLength >= 0 && contentLength <= bufferLimit)) {
+            buffered = ctx.getNettyCtx().alloc().compositeBuffer(Integer.MAX_VALUE);
+        } else {
+            streaming = true;
+            ctx.writeResponseHead(head.status(), headers, contentLength);
+        }
+    }
+
+    @Override
+    public void onResponseContent(UpstreamExchange exchange, HttpContent content) {
+        ByteBuf buf = content.content();
+        if (abandoned || !buf.isReadable()) {
+            buf.release();
+            return;
+        }
+
+        if (!streaming) {
+            buffered.addComponent(true, buf);
+            return;
+        }
+
+        Channel inbound = ctx.getNettyCtx().channel();
+        if (!inbound.isActive()) {
+            // 客户端已经断开，不用再读 upstream
+            buf.release();
+            abandoned = true;
+            exchange.abort();
+            listener.onCancel();
+            ctx.release();
+            return;
+        }
+        ctx.writeContent(buf);
+        if (!inbound.isWritable()) {
+            exchange.pauseReading();
+            NettyHttpServerHandler.onWritable(inbound, exchange::resumeReading);
+            // 注册监听前客户端可能已经恢复可写，这里补一次，避免永远停读
+            if (inbound.isWritable()) {
+                exchange.resumeReading();
+            }
+        }
+    }
+
+    @Override
+    public void onError(UpstreamExchange exchange, Throwable t) {
+        if (abandoned) {
+            return;
+        }
+        abandoned = true;
+        if (buffered != null) {
+            buffered.release();
+            buffered = null;
+        }
+        listener.onFailure(t, streaming);
+        if (streaming) {
+            // 响应头已经发出去了，没法再改成 502，只能断开让客户端感知
+            ctx.getNettyCtx().close();
+            ctx.release();
+        }
+    }
+
+    @Override
+    public void onResponseEnd(UpstreamExchange exchange) {
+        if (abandoned) {
+            return;
+        }
+        abandoned = true;
+        // 先打点再写回：写回会触发过滤器后置阶段，那时最终状态码 / upstream 已经就绪
+        listener.onFinish(statusCode);
+
+        if (streaming) {
+            ctx.writeLastContent();
+        } else {
+            ctx.getResponse().setStatus(io.netty.handler.codec.http.HttpResponseStatus.valueOf(statusCode));
+            if (headers != null) {
+                // upstream 的同名头覆盖网关预设值
+                ctx.getResponse().getHeaders().setAll(headers);
+            }
+            ctx.getResponse().setBody(buffered);
+            buffered = null;
+            ctx.writeResponse();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.my.gateway.netty.upstream;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http2.DefaultHttp2WindowUpdateFrame;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2SettingsFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * 一条到 upstream 的 HTTP/2 连接，多个请求以 stream 的形式复用它
+ *
+ * 每个请求打开一个 stream 子 channel，子 channel 里用 Http2StreamFrameToHttpObjectCodec 把 frame 转成 HttpObject，
+ * UpstreamExchange 的收发逻辑与 HTTP/1.1 连接完全相同；子 channel 的可写性 / autoRead 对应 stream 的流控窗口。
+ *
+ * 并发 stream 数取本地上限和对端 SETTINGS_MAX_CONCURRENT_STREAMS 的较小值；收到 GOAWAY 后不再分配新 stream。
+ * 只在所属 eventLoop 上访问。
+ */
+@Slf4j
+final class Http2UpstreamConnection {
+
+    // 子 channel：frame <-> HttpObject，之后交给 UpstreamExchange
+    private static final ChannelHandler STREAM_INITIALIZER = new ChannelInitializer<Channel>() {
+        @Override
+        protected void initChannel(Channel ch) {
+            ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false));
+            ch.pipeline().addLast(new UpstreamChannelHandler());
+        }
+    };
+
+    // 客户端已关闭 server push，对端仍然推过来的 stream 直接关掉
+    private static final ChannelHandler REJECT_PUSH = new ChannelInboundHandlerAdapter() {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.close();
+        }
+
+        @Override
+        public boolean isSharable() {
+            return true;
+        }
+    };
+
+    private final UpstreamConnectionPool pool;
+    private final UpstreamAddress address;
+    private final UpstreamPoolStats stats;
+    private final Channel parent;
+    private final int localMaxStreams;
+
+    private Http2FrameCodec codec;
+    private Http2StreamChannelBootstrap streamBootstrap;
+
+    // 对端确认是 HTTP/2（收到 SETTINGS 或 ALPN 协商成功）之前，分配到这条连接上的请求先排队
+    private boolean ready;
+    private final ArrayDeque<UpstreamExchange> pending = new ArrayDeque<>();
+    private boolean goAway;
+
+    // 已分配（含排队）的 stream 数
+    private int streams;
+    private long totalStreams;
+    private long idleSinceNanos = System.nanoTime();
+
+    Http2UpstreamConnection(UpstreamConnectionPool pool, UpstreamAddress address, UpstreamPoolStats stats,
+                            Channel parent, int localMaxStreams) {
+        this.pool = pool;
+        this.address = address;
+        this.stats = stats;
+        this.parent = parent;
+        this.localMaxStreams = localMaxStreams;
+    }
+
+    /**
+     * 在父连接上装配 HTTP/2 客户端处理器（明文 h2c 在 channel 初始化时调用，TLS 在 ALPN 协商出 h2 后调用）
+     */
+    void install(ChannelPipeline p, int initialWindowSize) {
+        codec = Http2FrameCodecBuilder.forClient()
+                .initialSettings(Http2Settings.defaultSettings()
+                        .pushEnabled(false)
+                        .initialWindowSize(initialWindowSize))
+                .build();
+        p.addLast(codec);
+        p.addLast(new Http2MultiplexHandler(REJECT_PUSH));
+        p.addLast(new ParentHandler(initialWindowSize));
+        streamBootstrap = new Http2StreamChannelBootstrap(parent).handler(STREAM_INITIALIZER);
+    }
+
+    Channel parent() {
+        return parent;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    int streams() {
+        return streams;
+    }
+
+    long idleSinceNanos() {
+        return idleSinceNanos;
+    }
+
+    /**
+     * 还能不能再分配一个 stream
+     */
+    boolean hasCapacity() {
+        if (goAway || !parent.isActive()) {
+            return false;
+        }
+        int max = localMaxStreams;
+        if (ready && codec != null) {
+            max = Math.min(max, codec.connection().local().maxActiveStreams());
+        }
+        return streams < max;
+    }
+
+    /**
+     * 分配一个 stream 给 exchange（连接还没就绪时先排队）
+     */
+    void openStream(UpstreamExchange ex) {
+        streams++;
+        totalStreams++;
+        stats.streams.incrementAndGet();
+        if (!ready) {
+            pending.addLast(ex);
+            return;
+        }
+        doOpen(ex, totalStreams > 1);
+    }
+
+    private void doOpen(UpstreamExchange ex, boolean reused) {
+        streamBootstrap.open().addListener((Future<Http2StreamChannel> f) -> {
+            if (!f.isSuccess()) {
+                streamClosed();
+                ex.onConnectFailed(f.cause());
+                return;
+            }
+            Http2StreamChannel child = f.getNow();
+            child.closeFuture().addListener(cf -> streamClosed());
+            ex.onConnected(child, reused);
+        });
+    }
+
+    /**
+     * 确认对端支持 HTTP/2：放行排队的请求
+     */
+    void markReady() {
+        if (ready) {
+            return;
+        }
+        ready = true;
+        UpstreamExchange ex;
+        while ((ex = pending.pollFirst()) != null) {
+            doOpen(ex, false);
+        }
+        pool.onHttp2Ready(address, this);
+    }
+
+    /**
+     * 父连接关闭：取出还没真正发出的请求（由连接池决定改走 HTTP/1.1 还是失败）
+     */
+    ArrayDeque<UpstreamExchange> drainPending() {
+        int n = pending.size();
+        streams -= n;
+        stats.streams.addAndGet(-n);
+        ArrayDeque<UpstreamExchange> out = new ArrayDeque<>(pending);
+        pending.clear();
+        return out;
+    }
+
+    private void streamClosed() {
+        streams--;
+        stats.streams.decrementAndGet();
+        if (streams == 0) {
+            idleSinceNanos = System.nanoTime();
+            if (goAway) {
+                parent.close();
+                return;
+            }
+        }
+        pool.onHttp2StreamReleased(address);
+    }
+
+    /**
+     * 父连接末端：处理 SETTINGS / GOAWAY，消费其余连接级 frame
+     */
+    private final class ParentHandler extends ChannelInboundHandlerAdapter {
+
+        private final int initialWindowSize;
+
+        ParentHandler(int initialWindowSize) {
+            this.initialWindowSize = initialWindowSize;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            // 连接级窗口放大到 stream 窗口的 4 倍，避免多个 stream 并发下载时被连接窗口卡住
+            int delta = initialWindowSize * 4 - Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+            if (delta > 0 && ctx.channel().isActive()) {
+                ctx.writeAndFlush(new DefaultHttp2WindowUpdateFrame(delta));
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            handlerAdded(ctx);
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                if (msg instanceof Http2SettingsFrame) {
+                    markReady();
+                } else if (msg instanceof Http2GoAwayFrame) {
+                    goAway = true;
+                    if (streams == 0) {
+                        ctx.close();
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.debug("[UpstreamClient] http2 connection error {}: {}", address, cause.toString());
+            ctx.close();
+        }
+    }
+
+    static IOException notHttp2(UpstreamAddress address) {
+        return new IOException("upstream closed before HTTP/2 settings: " + address);
+    }
+}
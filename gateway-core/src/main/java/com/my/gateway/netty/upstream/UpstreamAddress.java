@@ -0,0 +1,60 @@
+package com.my.gateway.netty.upstream;
+
+import lombok.Getter;
+
+import java.net.URI;
+
+/**
+ * 解析后的 upstream 地址（scheme / host / port / 基础路径）
+ *
+ * 路由快照编译时解析，热更新时同 url 的 upstream 沿用上一个快照里的对象；不做全局缓存，
+ * 删掉的 upstream 随旧快照一起回收，不会在热更新之间越积越多。
+ *
+ * scheme 决定协议：http / https 走 HTTP/1.1；h2c 为明文 HTTP/2（prior-knowledge），h2 为 TLS + ALPN 协商 HTTP/2。
+ * HTTP/2 地址在对端不支持时自动退回 HTTP/1.1。
+ */
+@Getter
+public final class UpstreamAddress {
+
+    private final String url;
+    private final boolean ssl;
+    // 优先使用 HTTP/2 多路复用
+    private final boolean http2;
+    private final String host;
+    private final int port;
+    // url 自带的路径前缀（不以 / 结尾），例如 http://host/api -> /api
+    private final String basePath;
+    // 连接池 key：scheme://host:port
+    private final String key;
+    // 发给 upstream 的 Host 头：host:port
+    private final String hostHeader;
+
+    private UpstreamAddress(String url) {
+        URI u = URI.create(url);
+        String scheme = u.getScheme() == null ? "http" : u.getScheme().toLowerCase();
+        this.url = url;
+        this.ssl = "https".equals(scheme) || "h2".equals(scheme);
+        this.http2 = "h2c".equals(scheme) || "h2".equals(scheme);
+        this.host = u.getHost();
+        this.port = u.getPort() > 0 ? u.getPort() : (ssl ? 443 : 80);
+        String p = u.getRawPath() == null ? "" : u.getRawPath();
+        this.basePath = p.endsWith("/") ? p.substring(0, p.length() - 1) : p;
+        this.key = scheme + "://" + host + ":" + port;
+        this.hostHeader = host + ":" + port;
+        if (host == null) {
+            throw new IllegalArgumentException("invalid upstream url: " + url);
+        }
+    }
+
+    /**
+     * 解析 url，不合法时抛 IllegalArgumentException
+     */
+    public static UpstreamAddress of(String url) {
+        return new UpstreamAddress(url);
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
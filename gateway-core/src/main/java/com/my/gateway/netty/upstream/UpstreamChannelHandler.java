@@ -0,0 +1,69 @@
+package com.my.gateway.netty.upstream;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+
+/**
+ * upstream 连接上的事件分发：把读到的响应交给当前正在进行的 UpstreamExchange
+ *
+ * 一条 HTTP/1.1 连接同一时刻只服务一个 exchange，空闲在池子里时 exchange 为 null
+ */
+class UpstreamChannelHandler extends ChannelInboundHandlerAdapter {
+
+    private UpstreamExchange exchange;
+
+    // 放回空闲队列的时间（连接池回收空闲连接用）
+    long idleSinceNanos;
+
+    void attach(UpstreamExchange ex) {
+        this.exchange = ex;
+    }
+
+    void detach(UpstreamExchange ex) {
+        if (this.exchange == ex) {
+            this.exchange = null;
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        UpstreamExchange ex = exchange;
+        if (ex == null) {
+            // 空闲连接上不该有数据，协议状态已经不可信，直接关掉
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+            return;
+        }
+        ex.onRead(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        UpstreamExchange ex = exchange;
+        if (ex != null) {
+            ex.onConnectionLost(new IOException("upstream connection closed: " + ex.address()));
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        UpstreamExchange ex = exchange;
+        if (ex != null) {
+            ex.onWritabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        UpstreamExchange ex = exchange;
+        if (ex != null) {
+            ex.onConnectionLost(cause);
+        }
+        ctx.close();
+    }
+}
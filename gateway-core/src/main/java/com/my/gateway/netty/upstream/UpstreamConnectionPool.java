@@ -0,0 +1,553 @@
+package com.my.gateway.netty.upstream;
+
+import com.my.gateway.config.UpstreamClientConfig;
+import com.my.gateway.netty.NettyTransport;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个 eventLoop 独享的 upstream 连接池（keep-alive 复用）
+ *
+ * 只在所属 loop 上访问，内部用普通 HashMap / ArrayDeque，不加锁；
+ * 连接也注册在同一个 loop 上，请求从入站到 upstream 再回到入站全程不跨线程。
+ *
+ * 每个 upstream 的连接数有上限，达到上限后请求排队，等有连接归还时直接交接；空闲连接超时后定期回收。
+ *
+ * HTTP/2 upstream（h2c:// / h2://）：第一条连接探测协议，确认前后续请求排队等待；
+ * 对端支持 HTTP/2 时请求以 stream 复用少量连接，不支持（h2c 前言被拒 / ALPN 没选 h2）时该 upstream 改走 HTTP/1.1。
+ *
+ * 路由热更新删掉的 upstream（retain）：空闲连接立即关闭，使用中的连接用完关闭，连接全部关掉后从池子里移除。
+ */
+@Slf4j
+final class UpstreamConnectionPool {
+
+    private static final int PROTOCOL_UNKNOWN = 0;
+    private static final int PROTOCOL_HTTP1 = 1;
+    private static final int PROTOCOL_HTTP2 = 2;
+
+    private static volatile SslContext sslContext;
+    private static volatile SslContext alpnSslContext;
+
+    private final EventLoop loop;
+    private final Bootstrap bootstrap;
+    private final int maxConnections;
+    private final int maxPending;
+    private final long idleTimeoutNanos;
+    private final int http2MaxStreams;
+    private final int http2WindowSize;
+
+    // address key -> 该 upstream 在本 loop 上的连接
+    private final Map<String, HostPool> hosts = new HashMap<>();
+
+    /**
+     * 单个 upstream 在本 loop 上的连接状态
+     */
+    private static final class HostPool {
+        final UpstreamPoolStats stats;
+        // 空闲连接：尾部最近归还（后进先出，优先复用最热的连接），头部最老（回收从头部开始）
+        final ArrayDeque<Channel> idle = new ArrayDeque<>();
+        // 连接数已满时排队的请求
+        final ArrayDeque<UpstreamExchange> waiters = new ArrayDeque<>();
+        // HTTP/2 连接（多路复用，不进空闲队列）
+        final List<Http2UpstreamConnection> h2 = new ArrayList<>();
+        // 已打开 + 正在建立的连接数
+        int open;
+        // 协议：HTTP/1.1 地址固定为 PROTOCOL_HTTP1，HTTP/2 地址由第一条连接探测
+        int protocol;
+        // 协议未知时正在探测的连接数（探测期间不再新建连接，请求排队）
+        int probing;
+        // 已经不在任何路由里：连接不再放回池子，全部关闭后移除
+        boolean retired;
+
+        HostPool(UpstreamPoolStats stats, int protocol) {
+            this.stats = stats;
+            this.protocol = protocol;
+        }
+    }
+
+    UpstreamConnectionPool(EventLoop loop, UpstreamClientConfig cfg) {
+        this.loop = loop;
+        this.maxConnections = cfg.getMaxConnectionsPerUpstream() > 0 ? cfg.getMaxConnectionsPerUpstream() : Integer.MAX_VALUE;
+        this.maxPending = Math.max(0, cfg.getMaxPendingAcquires());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(cfg.getIdleTimeoutMs());
+        this.http2MaxStreams = Math.max(1, cfg.getHttp2MaxConcurrentStreams());
+        this.http2WindowSize = cfg.getHttp2InitialWindowSize();
+        this.bootstrap = new Bootstrap()
+                .group(loop)
+                .channel(NettyTransport.forEventLoop(loop).socketChannelClass())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, cfg.getConnectTimeoutMs())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true);
+
+        if (cfg.getIdleTimeoutMs() > 0) {
+            long period = Math.max(1000, cfg.getIdleTimeoutMs() / 2);
+            loop.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    EventLoop loop() {
+        return loop;
+    }
+
+    void acquire(UpstreamAddress address, UpstreamExchange ex) {
+        HostPool hp = host(address);
+        // 热更新又加回来了（或者删除前发出的重试）
+        hp.retired = false;
+        if (hp.protocol != PROTOCOL_HTTP1) {
+            acquireHttp2(address, hp, ex);
+            return;
+        }
+        Channel ch;
+        while ((ch = hp.idle.pollLast()) != null) {
+            hp.stats.idle.decrementAndGet();
+            if (ch.isActive()) {
+                hp.stats.reused.increment();
+                ex.onConnected(ch, true);
+                return;
+            }
+        }
+        if (hp.open < maxConnections) {
+            connect(address, ex);
+            return;
+        }
+        enqueue(address, hp, ex);
+    }
+
+    /**
+     * 复用的连接 / stream 发现已经失效，请求还没发出不可重放的数据：换一条重发
+     *
+     * HTTP/2 走正常的分配路径，优先在现有连接上开新 stream（一条连接断了不影响别的连接）；
+     * HTTP/1.1 直接新建连接，同一批空闲连接很可能都已经被 upstream 关掉了
+     */
+    void reacquire(UpstreamAddress address, UpstreamExchange ex) {
+        HostPool hp = host(address);
+        if (hp.protocol != PROTOCOL_HTTP1) {
+            acquireHttp2(address, hp, ex);
+            return;
+        }
+        connect(address, ex);
+    }
+
+    private void acquireHttp2(UpstreamAddress address, HostPool hp, UpstreamExchange ex) {
+        Http2UpstreamConnection c = available(hp);
+        if (c != null) {
+            hp.stats.reused.increment();
+            c.openStream(ex);
+            return;
+        }
+        if (hp.open < maxConnections && !(hp.protocol == PROTOCOL_UNKNOWN && hp.probing > 0)) {
+            connect(address, ex);
+            return;
+        }
+        enqueue(address, hp, ex);
+    }
+
+    private void enqueue(UpstreamAddress address, HostPool hp, UpstreamExchange ex) {
+        if (hp.waiters.size() < maxPending) {
+            hp.waiters.addLast(ex);
+            hp.stats.pending.incrementAndGet();
+            return;
+        }
+        hp.stats.rejected.increment();
+        ex.onConnectFailed(new RejectedExecutionException("upstream connection pool exhausted: " + address));
+    }
+
+    void connect(UpstreamAddress address, UpstreamExchange ex) {
+        HostPool hp = host(address);
+        boolean tryHttp2 = hp.protocol != PROTOCOL_HTTP1;
+        boolean probe = hp.protocol == PROTOCOL_UNKNOWN;
+        hp.open++;
+        if (probe) {
+            hp.probing++;
+        }
+        hp.stats.open.incrementAndGet();
+        hp.stats.created.increment();
+
+        Bootstrap b = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                if (address.isSsl()) {
+                    SslContext ctx = tryHttp2 ? alpnSslContext() : sslContext();
+                    SslHandler ssl = ctx.newHandler(ch.alloc(), address.getHost(), address.getPort());
+                    // 证书链之外还要校验证书里的主机名和 upstream 地址一致（SslContext 默认不校验）
+                    SSLEngine engine = ssl.engine();
+                    SSLParameters params = engine.getSSLParameters();
+                    params.setEndpointIdentificationAlgorithm("HTTPS");
+                    engine.setSSLParameters(params);
+                    ch.pipeline().addLast(ssl);
+                    if (!tryHttp2) {
+                        installHttp1(ch.pipeline());
+                    }
+                    // TLS + HTTP/2：握手完成后按 ALPN 结果装配
+                } else if (tryHttp2) {
+                    // h2c prior-knowledge：直接发 HTTP/2 前言
+                    installHttp2(address, hp, ch);
+                } else {
+                    installHttp1(ch.pipeline());
+                }
+            }
+        });
+        ChannelFuture cf = b.connect(address.getHost(), address.getPort());
+        Channel channel = cf.channel();
+        // 连接关闭（含建连失败）时归还名额，并让排队的请求补建连接
+        channel.closeFuture().addListener(f -> onClosed(address, hp, channel, probe));
+        cf.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                hp.stats.connectFailed.increment();
+                f.channel().close();
+                ex.onConnectFailed(f.cause());
+                return;
+            }
+            if (!tryHttp2) {
+                ex.onConnected(channel, false);
+            } else if (!address.isSsl()) {
+                http2(hp, channel).openStream(ex);
+            } else {
+                negotiate(address, hp, channel, ex);
+            }
+        });
+    }
+
+    /**
+     * TLS 握手完成后按 ALPN 结果选择 HTTP/2 或 HTTP/1.1
+     */
+    private void negotiate(UpstreamAddress address, HostPool hp, Channel ch, UpstreamExchange ex) {
+        SslHandler ssl = ch.pipeline().get(SslHandler.class);
+        ssl.handshakeFuture().addListener(f -> {
+            if (!f.isSuccess()) {
+                ch.close();
+                ex.onConnectFailed(f.cause());
+                return;
+            }
+            if (ApplicationProtocolNames.HTTP_2.equals(ssl.applicationProtocol())) {
+                Http2UpstreamConnection c = installHttp2(address, hp, ch);
+                c.openStream(ex);
+                c.markReady();
+                return;
+            }
+            installHttp1(ch.pipeline());
+            resolveProtocol(address, hp, PROTOCOL_HTTP1);
+            ex.onConnected(ch, false);
+            serveWaiters(address, hp);
+        });
+    }
+
+    private static void installHttp1(ChannelPipeline p) {
+        p.addLast(new HttpClientCodec());
+        p.addLast(new UpstreamChannelHandler());
+    }
+
+    private Http2UpstreamConnection installHttp2(UpstreamAddress address, HostPool hp, Channel ch) {
+        Http2UpstreamConnection c = new Http2UpstreamConnection(this, address, hp.stats, ch, http2MaxStreams);
+        c.install(ch.pipeline(), http2WindowSize);
+        hp.h2.add(c);
+        return c;
+    }
+
+    /**
+     * HTTP/2 连接收到对端 SETTINGS（或 ALPN 协商成功）
+     */
+    void onHttp2Ready(UpstreamAddress address, Http2UpstreamConnection c) {
+        HostPool hp = host(address);
+        resolveProtocol(address, hp, PROTOCOL_HTTP2);
+        serveWaiters(address, hp);
+    }
+
+    /**
+     * HTTP/2 连接上的某个 stream 结束，空出了并发名额
+     */
+    void onHttp2StreamReleased(UpstreamAddress address) {
+        HostPool hp = hosts.get(address.getKey());
+        if (hp == null) {
+            return;
+        }
+        if (!hp.waiters.isEmpty()) {
+            serveWaiters(address, hp);
+        }
+        if (hp.retired) {
+            closeIdle(hp, false);
+        }
+    }
+
+    private void resolveProtocol(UpstreamAddress address, HostPool hp, int protocol) {
+        if (hp.protocol != PROTOCOL_UNKNOWN) {
+            return;
+        }
+        hp.protocol = protocol;
+        if (protocol == PROTOCOL_HTTP1) {
+            log.warn("[UpstreamClient] {} does not speak HTTP/2, falling back to HTTP/1.1", address);
+        } else {
+            log.info("[UpstreamClient] {} negotiated HTTP/2", address);
+        }
+    }
+
+    /**
+     * 归还连接（调用方已确认响应完整结束且可以 keep-alive）：有排队的请求直接交接，否则放回空闲队列
+     */
+    void release(UpstreamAddress address, Channel ch) {
+        if (ch instanceof Http2StreamChannel) {
+            // stream 用完即关，名额在 Http2UpstreamConnection 里回收
+            ch.close();
+            return;
+        }
+        if (!ch.isActive()) {
+            return;
+        }
+        HostPool hp = hosts.get(address.getKey());
+        if (hp == null || hp.retired) {
+            ch.close();
+            return;
+        }
+        UpstreamExchange waiter = pollWaiter(hp);
+        if (waiter != null) {
+            hp.stats.reused.increment();
+            waiter.onConnected(ch, true);
+            return;
+        }
+        UpstreamChannelHandler h = ch.pipeline().get(UpstreamChannelHandler.class);
+        if (h != null) {
+            h.idleSinceNanos = System.nanoTime();
+        }
+        hp.idle.addLast(ch);
+        hp.stats.idle.incrementAndGet();
+    }
+
+    /**
+     * 排队中的请求提前结束（超时 / 被放弃）
+     */
+    void cancel(UpstreamAddress address, UpstreamExchange ex) {
+        HostPool hp = hosts.get(address.getKey());
+        if (hp != null && hp.waiters.remove(ex)) {
+            hp.stats.pending.decrementAndGet();
+        }
+    }
+
+    private void onClosed(UpstreamAddress address, HostPool hp, Channel ch, boolean probe) {
+        hp.open--;
+        hp.stats.open.decrementAndGet();
+        if (probe) {
+            hp.probing--;
+        }
+        if (hp.idle.remove(ch)) {
+            hp.stats.idle.decrementAndGet();
+        }
+
+        Http2UpstreamConnection c = http2(hp, ch);
+        if (c != null) {
+            hp.h2.remove(c);
+            ArrayDeque<UpstreamExchange> unsent = c.drainPending();
+            if (!c.isReady() && hp.protocol == PROTOCOL_UNKNOWN && !address.isSsl()) {
+                // h2c 前言被拒：这个 upstream 只支持 HTTP/1.1，还没发出去的请求改走 HTTP/1.1
+                resolveProtocol(address, hp, PROTOCOL_HTTP1);
+                for (UpstreamExchange ex : unsent) {
+                    if (!ex.isDone()) {
+                        acquire(address, ex);
+                    }
+                }
+            } else {
+                for (UpstreamExchange ex : unsent) {
+                    ex.onConnectFailed(Http2UpstreamConnection.notHttp2(address));
+                }
+            }
+        }
+        serveWaiters(address, hp);
+        if (hp.retired && hp.open == 0 && hp.waiters.isEmpty()) {
+            remove(address.getKey(), hp);
+        }
+    }
+
+    /**
+     * 路由热更新后调用：不在 liveKeys 里的 upstream 关闭空闲连接，没有连接了就移除（统计随最后一个 loop 的池子一起注销）
+     */
+    void retain(Set<String> liveKeys) {
+        List<Map.Entry<String, HostPool>> gone = new ArrayList<>();
+        for (Map.Entry<String, HostPool> e : hosts.entrySet()) {
+            if (!liveKeys.contains(e.getKey()) && !e.getValue().retired) {
+                gone.add(e);
+            }
+        }
+        for (Map.Entry<String, HostPool> e : gone) {
+            HostPool hp = e.getValue();
+            hp.retired = true;
+            // 关闭回调（onClosed）会扣减 open，最后一条关掉时移除
+            closeIdle(hp, false);
+            if (hp.open == 0 && hp.waiters.isEmpty()) {
+                remove(e.getKey(), hp);
+            }
+        }
+    }
+
+    private void remove(String key, HostPool hp) {
+        if (hosts.remove(key, hp)) {
+            UpstreamHttpClient.getInstance().releaseStats(key, hp.stats);
+        }
+    }
+
+    /**
+     * 关闭空闲连接（HTTP/1.1 空闲队列 + 没有 stream 的 HTTP/2 连接）
+     *
+     * @param expiredOnly 只关闭空闲超过 idleTimeoutMs 的
+     */
+    private void closeIdle(HostPool hp, boolean expiredOnly) {
+        long now = System.nanoTime();
+        Channel ch;
+        while ((ch = hp.idle.peekFirst()) != null) {
+            UpstreamChannelHandler h = ch.pipeline().get(UpstreamChannelHandler.class);
+            if (expiredOnly && h != null && now - h.idleSinceNanos < idleTimeoutNanos) {
+                break;
+            }
+            hp.idle.pollFirst();
+            hp.stats.idle.decrementAndGet();
+            hp.stats.evicted.increment();
+            ch.close();
+        }
+        for (int i = 0, n = hp.h2.size(); i < n; i++) {
+            Http2UpstreamConnection c = hp.h2.get(i);
+            if (c.isReady() && c.streams() == 0 && (!expiredOnly || now - c.idleSinceNanos() >= idleTimeoutNanos)) {
+                hp.stats.evicted.increment();
+                // 关闭回调里会从列表中移除
+                c.parent().close();
+            }
+        }
+    }
+
+    /**
+     * 有空出的连接 / stream 名额时，把排队的请求分配出去
+     */
+    private void serveWaiters(UpstreamAddress address, HostPool hp) {
+        while (!hp.waiters.isEmpty()) {
+            if (hp.protocol != PROTOCOL_HTTP1) {
+                Http2UpstreamConnection c = available(hp);
+                if (c != null) {
+                    UpstreamExchange w = pollWaiter(hp);
+                    if (w == null) {
+                        return;
+                    }
+                    hp.stats.reused.increment();
+                    c.openStream(w);
+                    continue;
+                }
+                if (hp.protocol == PROTOCOL_UNKNOWN && hp.probing > 0) {
+                    return;
+                }
+            }
+            if (hp.open >= maxConnections) {
+                return;
+            }
+            UpstreamExchange w = pollWaiter(hp);
+            if (w == null) {
+                return;
+            }
+            connect(address, w);
+        }
+    }
+
+    private UpstreamExchange pollWaiter(HostPool hp) {
+        UpstreamExchange ex;
+        while ((ex = hp.waiters.pollFirst()) != null) {
+            hp.stats.pending.decrementAndGet();
+            if (!ex.isDone()) {
+                return ex;
+            }
+        }
+        return null;
+    }
+
+    private static Http2UpstreamConnection available(HostPool hp) {
+        // 优先塞满前面的连接，让多余的连接能空闲下来被回收
+        for (int i = 0, n = hp.h2.size(); i < n; i++) {
+            Http2UpstreamConnection c = hp.h2.get(i);
+            if (c.hasCapacity()) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private static Http2UpstreamConnection http2(HostPool hp, Channel parent) {
+        for (int i = 0, n = hp.h2.size(); i < n; i++) {
+            Http2UpstreamConnection c = hp.h2.get(i);
+            if (c.parent() == parent) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private void evictIdle() {
+        // 关闭回调可能移除已退役的 HostPool，先拷一份
+        for (HostPool hp : new ArrayList<>(hosts.values())) {
+            closeIdle(hp, true);
+        }
+    }
+
+    private HostPool host(UpstreamAddress address) {
+        HostPool hp = hosts.get(address.getKey());
+        if (hp == null) {
+            hp = new HostPool(UpstreamHttpClient.getInstance().retainStats(address),
+                    address.isHttp2() ? PROTOCOL_UNKNOWN : PROTOCOL_HTTP1);
+            hosts.put(address.getKey(), hp);
+        }
+        return hp;
+    }
+
+    private static SslContext sslContext() throws SSLException {
+        SslContext ctx = sslContext;
+        if (ctx == null) {
+            synchronized (UpstreamConnectionPool.class) {
+                ctx = sslContext;
+                if (ctx == null) {
+                    ctx = SslContextBuilder.forClient().build();
+                    sslContext = ctx;
+                }
+            }
+        }
+        return ctx;
+    }
+
+    private static SslContext alpnSslContext() throws SSLException {
+        SslContext ctx = alpnSslContext;
+        if (ctx == null) {
+            synchronized (UpstreamConnectionPool.class) {
+                ctx = alpnSslContext;
+                if (ctx == null) {
+                    ctx = SslContextBuilder.forClient()
+                            .applicationProtocolConfig(new ApplicationProtocolConfig(
+                                    ApplicationProtocolConfig.Protocol.ALPN,
+                                    ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                                    ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                                    ApplicationProtocolNames.HTTP_2,
+                                    ApplicationProtocolNames.HTTP_1_1))
+                            .build();
+                    alpnSslContext = ctx;
+                }
+            }
+        }
+        return ctx;
+    }
+}
@@ -0,0 +1,308 @@
+package com.my.gateway.netty.upstream;
+
+import com.my.gateway.context.RequestBodyStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 一次 upstream 请求/响应交换
+ *
+ * 从发起到结束都在同一个 eventLoop 上（入站 channel 的 loop），状态字段不需要任何同步。
+ * 超时语义：都是空闲超时，按最近一次进展计时，大请求 / 大响应流式转发不会被总时长卡死。
+ * - 请求写完之前：每写出一段（请求头 / body chunk）算一次进展，慢速上传只要持续有数据就不会超时
+ * - 请求写完到收到响应头：首字节超时，从请求最后一段写完开始算
+ * - 收到响应头之后：读空闲超时
+ */
+public final class UpstreamExchange implements RequestBodyStream.Sink {
+
+    private final UpstreamConnectionPool pool;
+    private final UpstreamAddress address;
+    private final HttpRequest head;
+    // 聚合模式下的完整请求体（持有一个引用，结束时释放）
+    private ByteBuf body;
+    private final RequestBodyStream bodyStream;
+    private final UpstreamResponseListener listener;
+    private final long timeoutNanos;
+
+    private Channel channel;
+    private boolean reused;
+    // 已经因为复用的连接失效换过一次：再失效就直接失败，不会在同一条 HTTP/2 连接上反复重开 stream
+    private boolean reacquired;
+    // 流式 body 已经开始发送，连接断了也不能换连接重发
+    private boolean bodyStreamStarted;
+    private boolean requestSent;
+    private boolean responseStarted;
+    private boolean informational;
+    private boolean keepAlive;
+    private boolean done;
+
+    // 最近一次进展：请求写出一段 / 收到响应数据
+    private long lastActivityNanos;
+    private ScheduledFuture<?> timeoutTask;
+
+    private final ChannelFutureListener writeListener = f -> {
+        if (f.channel() != channel) {
+            // 换连接重发后，旧连接上迟到的结果不再算数
+            return;
+        }
+        if (f.isSuccess()) {
+            // 写进了 socket 才算进展：upstream 不读时写缓冲堆满、客户端被暂停，空闲计时照常走到超时
+            lastActivityNanos = System.nanoTime();
+        } else {
+            onConnectionLost(f.cause());
+        }
+    };
+
+    UpstreamExchange(UpstreamConnectionPool pool, UpstreamAddress address, HttpRequest head,
+                     ByteBuf body, RequestBodyStream bodyStream,
+                     UpstreamResponseListener listener, long timeoutMs) {
+        this.pool = pool;
+        this.address = address;
+        this.head = head;
+        this.body = body;
+        this.bodyStream = bodyStream;
+        this.listener = listener;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    void start() {
+        lastActivityNanos = System.nanoTime();
+        timeoutTask = loop().schedule(this::checkTimeout, timeoutNanos, TimeUnit.NANOSECONDS);
+        pool.acquire(address, this);
+    }
+
+    EventLoop loop() {
+        return pool.loop();
+    }
+
+    public UpstreamAddress address() {
+        return address;
+    }
+
+    /**
+     * 当前使用的 upstream 连接（未连上时为 null）
+     */
+    public Channel channel() {
+        return channel;
+    }
+
+    /**
+     * 下游（客户端）写不动时暂停读取 upstream
+     */
+    public void pauseReading() {
+        if (channel != null) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    public void resumeReading() {
+        if (channel != null && !channel.config().isAutoRead()) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * 调用方主动放弃（例如改去重试 / 客户端已断开）：关闭连接，不再有任何回调
+     */
+    public void abort() {
+        if (done) {
+            return;
+        }
+        done = true;
+        cleanup(false);
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    // ---------------- 连接池回调 ----------------
+
+    void onConnected(Channel ch, boolean reused) {
+        if (done) {
+            pool.release(address, ch);
+            return;
+        }
+        this.channel = ch;
+        this.reused = reused;
+        ch.pipeline().get(UpstreamChannelHandler.class).attach(this);
+        resumeReading();
+        send();
+    }
+
+    void onConnectFailed(Throwable cause) {
+        fail(cause);
+    }
+
+    private void send() {
+        if (bodyStream == null) {
+            ByteBuf content = body == null ? io.netty.buffer.Unpooled.EMPTY_BUFFER : body.retainedDuplicate();
+            FullHttpRequest req = new DefaultFullHttpRequest(head.protocolVersion(), head.method(), head.uri(),
+                    content, head.headers(), EmptyHttpHeaders.INSTANCE);
+            channel.writeAndFlush(req).addListener(writeListener);
+            requestSent = true;
+            return;
+        }
+        bodyStreamStarted = true;
+        channel.writeAndFlush(head).addListener(writeListener);
+        bodyStream.subscribe(this);
+    }
+
+    // ---------------- 流式请求体 ----------------
+
+    @Override
+    public void onChunk(ByteBuf chunk) {
+        if (done) {
+            chunk.release();
+            return;
+        }
+        channel.writeAndFlush(new DefaultHttpContent(chunk)).addListener(writeListener);
+        if (!channel.isWritable()) {
+            bodyStream.pause();
+        }
+    }
+
+    @Override
+    public void onEnd() {
+        if (done) {
+            return;
+        }
+        channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(writeListener);
+        requestSent = true;
+    }
+
+    @Override
+    public void onError(Throwable cause) {
+        fail(cause);
+    }
+
+    // ---------------- upstream 连接事件（UpstreamChannelHandler 调用） ----------------
+
+    void onRead(Object msg) {
+        if (done) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        lastActivityNanos = System.nanoTime();
+
+        if (msg instanceof HttpResponse resp) {
+            int code = resp.status().code();
+            if (code >= 100 && code < 200 && code != 101) {
+                // 100-continue 之类的中间响应不转发
+                informational = true;
+            } else {
+                responseStarted = true;
+                keepAlive = HttpUtil.isKeepAlive(resp);
+                listener.onResponseHead(this, resp);
+            }
+        }
+
+        if (msg instanceof HttpContent content) {
+            boolean last = content instanceof LastHttpContent;
+            if (informational || done) {
+                content.release();
+                if (last) {
+                    informational = false;
+                }
+                return;
+            }
+            listener.onResponseContent(this, content);
+            if (last && !done) {
+                done = true;
+                cleanup(keepAlive && requestSent);
+                listener.onResponseEnd(this);
+            }
+        }
+    }
+
+    void onWritabilityChanged() {
+        if (bodyStream != null && channel.isWritable()) {
+            bodyStream.resume();
+        }
+    }
+
+    void onConnectionLost(Throwable cause) {
+        if (done) {
+            return;
+        }
+        // 池里拿出来的空闲连接可能已经被 upstream 关掉了：没有发出不可重放的数据时换一条重发（只换一次）
+        if (reused && !reacquired && !responseStarted && !bodyStreamStarted) {
+            detach();
+            channel.close();
+            channel = null;
+            reused = false;
+            reacquired = true;
+            requestSent = false;
+            pool.reacquire(address, this);
+            return;
+        }
+        fail(cause != null ? cause : new IOException("upstream connection closed"));
+    }
+
+    private void checkTimeout() {
+        if (done) {
+            return;
+        }
+        long idle = System.nanoTime() - lastActivityNanos;
+        if (idle < timeoutNanos) {
+            timeoutTask = loop().schedule(this::checkTimeout, timeoutNanos - idle, TimeUnit.NANOSECONDS);
+            return;
+        }
+        fail(new TimeoutException("upstream request timeout after "
+                + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms: " + address));
+    }
+
+    private void fail(Throwable cause) {
+        if (done) {
+            return;
+        }
+        done = true;
+        cleanup(false);
+        listener.onError(this, cause);
+    }
+
+    /**
+     * @param reusable 连接是否可以放回池子
+     */
+    private void cleanup(boolean reusable) {
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+            timeoutTask = null;
+        }
+        if (body != null) {
+            body.release();
+            body = null;
+        }
+        if (bodyStream != null && !requestSent) {
+            bodyStream.abort(new IOException("upstream exchange finished before request body was sent"));
+        }
+        if (channel != null) {
+            detach();
+            if (reusable) {
+                resumeReading();
+                pool.release(address, channel);
+            } else {
+                channel.close();
+            }
+        } else {
+            // 还在排队等连接
+            pool.cancel(address, this);
+        }
+    }
+
+    private void detach() {
+        UpstreamChannelHandler h = channel.pipeline().get(UpstreamChannelHandler.class);
+        if (h != null) {
+            h.detach(this);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.my.gateway.netty.upstream;
+
+import com.my.gateway.config.ConfigLoader;
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.config.UpstreamClientConfig;
+import com.my.gateway.context.RequestBodyStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 基于 Netty HttpClientCodec 的 upstream 客户端
+ *
+ * 连接注册在调用方（入站 channel）的 eventLoop 上，每个 loop 一个连接池，
+ * 回调也在这个 loop 上执行，GatewayContext 始终只被一个线程访问；
+ * 请求 / 响应 body 以 ByteBuf 原样交接，不做 String / byte[] 转换。
+ */
+public class UpstreamHttpClient {
+
+    private static final UpstreamHttpClient INSTANCE = new UpstreamHttpClient();
+
+    // eventLoop -> 该 loop 独享的连接池
+    private final Map<EventLoop, UpstreamConnectionPool> pools = new ConcurrentHashMap<>();
+
+    // 当前 eventLoop 线程自己的连接池（FastThreadLocal 按下标取），请求期间不再查 pools
+    private final FastThreadLocal<UpstreamConnectionPool> localPool = new FastThreadLocal<>();
+
+    // address key -> 连接池统计（各 loop 合计）
+    private final Map<String, UpstreamPoolStats> stats = new ConcurrentHashMap<>();
+
+    private final UpstreamClientConfig config;
+
+    private UpstreamHttpClient() {
+        GatewayConfig cfg = ConfigLoader.getInstance().getConfig();
+        this.config = cfg != null && cfg.getUpstreamClient() != null ? cfg.getUpstreamClient() : new UpstreamClientConfig();
+    }
+
+    public static UpstreamHttpClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 发起一次 upstream 请求
+     *
+     * @param loop       入站 channel 的 eventLoop，upstream 连接与回调都在它上面
+     * @param head       已改写好的请求行 + 请求头
+     * @param body       聚合模式的完整 body（转移一个引用计数给客户端），流式模式传 null
+     * @param bodyStream 流式模式的 body，聚合模式传 null
+     */
+    public UpstreamExchange execute(EventLoop loop, UpstreamAddress address, HttpRequest head,
+                                    ByteBuf body, RequestBodyStream bodyStream,
+                                    UpstreamResponseListener listener) {
+        return execute(loop, address, head, body, bodyStream, listener, config.getRequestTimeoutMs());
+    }
+
+    /**
+     * @param timeoutMs 首字节 / 读空闲超时（路由级配置）
+     */
+    public UpstreamExchange execute(EventLoop loop, UpstreamAddress address, HttpRequest head,
+                                    ByteBuf body, RequestBodyStream bodyStream,
+                                    UpstreamResponseListener listener, long timeoutMs) {
+        UpstreamConnectionPool pool = pool(loop);
+        UpstreamExchange ex = new UpstreamExchange(pool, address, head, body, bodyStream, listener, timeoutMs);
+        if (loop.inEventLoop()) {
+            ex.start();
+        } else {
+            loop.execute(ex::start);
+        }
+        return ex;
+    }
+
+    private UpstreamConnectionPool pool(EventLoop loop) {
+        if (!loop.inEventLoop()) {
+            return pools.computeIfAbsent(loop, l -> new UpstreamConnectionPool(l, config));
+        }
+        UpstreamConnectionPool pool = localPool.get();
+        if (pool == null) {
+            pool = pools.computeIfAbsent(loop, l -> new UpstreamConnectionPool(l, config));
+            localPool.set(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * 各 upstream 的连接池统计（只读视图，/metrics 使用）
+     */
+    public Map<String, UpstreamPoolStats> statsView() {
+        return java.util.Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * 路由热更新后调用：不在 liveKeys（scheme://host:port）里的 upstream，各 loop 的连接池在自己的线程上关闭连接并移除
+     */
+    public void retain(Set<String> liveKeys) {
+        Set<String> live = Set.copyOf(liveKeys);
+        for (UpstreamConnectionPool pool : pools.values()) {
+            try {
+                pool.loop().execute(() -> pool.retain(live));
+            } catch (RejectedExecutionException e) {
+                // loop 已经关闭，连接也随之关闭了
+            }
+        }
+    }
+
+    /**
+     * 某个 loop 的池子开始使用这个 upstream：取（或新建）统计并计数
+     */
+    UpstreamPoolStats retainStats(UpstreamAddress address) {
+        return stats.compute(address.getKey(), (k, s) -> {
+            if (s == null) {
+                s = new UpstreamPoolStats();
+            }
+            s.pools++;
+            return s;
+        });
+    }
+
+    /**
+     * 某个 loop 的池子移除了这个 upstream：最后一个池子移除时注销统计
+     */
+    void releaseStats(String key, UpstreamPoolStats s) {
+        stats.computeIfPresent(key, (k, cur) -> cur == s && --cur.pools == 0 ? null : cur);
+    }
+}
@@ -0,0 +1,37 @@
+package com.my.gateway.netty.upstream;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某个 upstream 的连接池统计（所有 eventLoop 的池子合计），供 /metrics 输出
+ */
+public class UpstreamPoolStats {
+
+    // 当前打开的连接（使用中 + 空闲）
+    public final AtomicInteger open = new AtomicInteger();
+    // 当前空闲连接
+    public final AtomicInteger idle = new AtomicInteger();
+    // 当前 HTTP/2 连接上进行中的 stream
+    public final AtomicInteger streams = new AtomicInteger();
+    // 当前排队等待连接的请求
+    public final AtomicInteger pending = new AtomicInteger();
+
+    // 新建连接次数
+    public final LongAdder created = new LongAdder();
+    // 复用空闲连接次数
+    public final LongAdder reused = new LongAdder();
+    // 空闲超时被回收的连接
+    public final LongAdder evicted = new LongAdder();
+    // 建连失败次数
+    public final LongAdder connectFailed = new LongAdder();
+    // 排队已满被直接拒绝的请求
+    public final LongAdder rejected = new LongAdder();
+
+    // 使用这份统计的 eventLoop 池子数，只在 UpstreamHttpClient 的 stats.compute 里读写
+    int pools;
+
+    public int active() {
+        return Math.max(0, open.get() - idle.get());
+    }
+}
@@ -0,0 +1,27 @@
+package com.my.gateway.netty.upstream;
+
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * upstream 响应回调，全部在发起请求的 eventLoop（即入站 channel 的 loop）上执行
+ */
+public interface UpstreamResponseListener {
+
+    /**
+     * 收到响应行 + 响应头
+     */
+    void onResponseHead(UpstreamExchange exchange, HttpResponse head);
+
+    /**
+     * 收到一段 body（接管引用计数，LastHttpContent 之后紧跟 onResponseEnd）
+     */
+    void onResponseContent(UpstreamExchange exchange, HttpContent content);
+
+    void onResponseEnd(UpstreamExchange exchange);
+
+    /**
+     * 连接失败 / 超时 / 连接中途断开；之后不会再有其他回调
+     */
+    void onError(UpstreamExchange exchange, Throwable cause);
+}
@@ -0,0 +1,284 @@
+package com.my.gateway.ratelimit;
+
+import com.my.gateway.config.RateLimitConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群限流：多个网关实例共享一个全局令牌桶（CounterStore），每个实例按批领取令牌在本地消费
+ *
+ * 请求路径只扣本地令牌，不等存储：本地剩余不到半批时投递一个后台领取任务，领到后加到本地。
+ * 本地没有令牌、存储也没说「没了」时先放行一个请求（记成欠账，下次领取先还），冷 key 的第一个请求不会被误拒。
+ * 存储说没了之后，这个 key 在 syncIntervalMs（或全局桶回满一批的时间，取小）内不再去问，期间本地令牌用完就拒绝。
+ *
+ * 精度（N 个实例、每批 batch 个令牌）：
+ * - 令牌领取时就从全局桶里扣掉了，全局放行数不超过全局桶的额度 + 每个实例每个 key 最多 1 个欠账
+ * - 已经被别的实例领走但还没用完的令牌（每个实例每个 key 最多 batch 个）其他实例用不上，负载不均时会提前拒绝
+ * - 本地攒着的令牌随时能用，短时间突发最多到 burst + N × batch
+ * syncIntervalMs 越大，batch 越大，访问存储越少（每个 key 每秒约 rate / batch 次），上面两项误差越大。
+ *
+ * 存储出错时退化成单机限流（每个实例按完整的 rate 限），一秒后再试存储。
+ */
+@Slf4j
+public final class ClusterRateLimiter implements RateLimiter {
+
+    // 领取令牌都在这个后台线程上做，请求路径只投递任务
+    private static final ExecutorService SYNC = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ratelimit-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final long DEGRADE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 一个 key 在本实例的令牌
+     */
+    private final class Lease implements Runnable {
+        // 存储里的 key：路由 id + key
+        final String storeKey;
+        // 本地剩余令牌，负数表示欠存储的令牌
+        final AtomicLong tokens = new AtomicLong();
+        final AtomicBoolean syncing = new AtomicBoolean();
+        // 存储领不到令牌后，这个时刻之前不再去领
+        volatile long retryAtNanos;
+        // 只给清理用，不要求精确
+        long lastUsedNanos;
+
+        Lease(String storeKey, long now) {
+            this.storeKey = storeKey;
+            this.retryAtNanos = now;
+            this.lastUsedNanos = now;
+        }
+
+        @Override
+        public void run() {
+            sync(this);
+        }
+    }
+
+    private final String routeId;
+    private final RateLimitConfig config;
+    private final CounterStore store;
+    private final long intervalMicros;
+    private final long burstMicros;
+    private final long batch;
+    private final long lowWater;
+    private final long syncIntervalNanos;
+    // 存储领不到时的重试间隔：同步间隔和全局桶回满一批的时间取小
+    private final long retryNanos;
+    private final int maxKeys;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder storeErrors = new LongAdder();
+
+    // 存储出错后退化成单机限流，直到这个时刻
+    private volatile long degradedUntilNanos;
+    private volatile LocalRateLimiter fallback;
+
+    public ClusterRateLimiter(String routeId, RateLimitConfig config, CounterStore store) {
+        this.routeId = routeId;
+        this.config = config;
+        this.store = store;
+        double rate = Math.max(0.001, config.getRate());
+        this.intervalMicros = Math.max(1, (long) (1_000_000L / rate));
+        this.burstMicros = intervalMicros * config.effectiveBurst();
+        this.batch = config.effectiveBatch();
+        this.lowWater = batch / 2;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getSyncIntervalMs()));
+        this.retryNanos = Math.min(syncIntervalNanos, TimeUnit.MICROSECONDS.toNanos(batch * intervalMicros));
+        this.maxKeys = Math.max(1, config.getMaxKeys());
+        this.degradedUntilNanos = System.nanoTime();
+    }
+
+    @Override
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime();
+        if (now - degradedUntilNanos < 0) {
+            return fallback().tryAcquire(key);
+        }
+        Lease l = leases.get(key);
+        if (l == null) {
+            l = newLease(key, now);
+            if (l == null) {
+                // 本地 key 太多，清理完之前这个 key 按单机限
+                return fallback().tryAcquire(key);
+            }
+        }
+        l.lastUsedNanos = now;
+        for (;;) {
+            long t = l.tokens.get();
+            if (t > 0) {
+                if (l.tokens.compareAndSet(t, t - 1)) {
+                    if (t - 1 <= lowWater) {
+                        requestSync(l, now);
+                    }
+                    return true;
+                }
+                continue;
+            }
+            if (now - l.retryAtNanos < 0) {
+                // 存储刚说过没有令牌
+                rejected.increment();
+                return false;
+            }
+            if (t < 0) {
+                // 已经赊过，等后台领取
+                requestSync(l, now);
+                rejected.increment();
+                return false;
+            }
+            if (l.tokens.compareAndSet(0, -1)) {
+                // 先赊一个
+                requestSync(l, now);
+                return true;
+            }
+        }
+    }
+
+    private Lease newLease(String key, long now) {
+        if (leases.size() >= maxKeys) {
+            sweep(now);
+            return null;
+        }
+        Lease created = new Lease(routeId + '\n' + key, now);
+        Lease prev = leases.putIfAbsent(key, created);
+        return prev != null ? prev : created;
+    }
+
+    private void requestSync(Lease l, long now) {
+        // 存储说没了之后预取也要等，否则消费快的实例会一直抢先把全局桶领空
+        if (now - l.retryAtNanos >= 0 && l.syncing.compareAndSet(false, true)) {
+            SYNC.execute(l);
+        }
+    }
+
+    /**
+     * 后台线程：把本地令牌补到一批（先还欠账）
+     */
+    private void sync(Lease l) {
+        try {
+            long want = batch - l.tokens.get();
+            if (want <= 0) {
+                return;
+            }
+            long got;
+            try {
+                got = store.acquire(l.storeKey, want, intervalMicros, burstMicros);
+            } catch (Exception e) {
+                degrade(e);
+                return;
+            }
+            syncs.increment();
+            if (got > 0) {
+                l.tokens.addAndGet(got);
+            }
+            if (got < want) {
+                // 等全局桶大约回满一批再问，带 ±20% 抖动，各实例错开
+                long gap = (long) (retryNanos * (0.8 + 0.4 * ThreadLocalRandom.current().nextDouble()));
+                l.retryAtNanos = System.nanoTime() + gap;
+            }
+        } finally {
+            l.syncing.set(false);
+        }
+    }
+
+    private void degrade(Exception e) {
+        storeErrors.increment();
+        long now = System.nanoTime();
+        if (now - degradedUntilNanos >= 0) {
+            log.warn("[RateLimit] route {} cannot reach store {}, limiting per node for {}ms: {}",
+                    routeId, store.describe(), TimeUnit.NANOSECONDS.toMillis(DEGRADE_NANOS), e.toString());
+        }
+        degradedUntilNanos = now + DEGRADE_NANOS;
+    }
+
+    /**
+     * key 数到上限时清掉闲置的（超过 10 个同步间隔、至少 10 秒没用过）
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        long idle = Math.max(syncIntervalNanos * 10, TimeUnit.SECONDS.toNanos(10));
+        SYNC.execute(() -> {
+            try {
+                leases.values().removeIf(l -> {
+                    if (now - l.lastUsedNanos < idle || l.syncing.get()) {
+                        return false;
+                    }
+                    // 还攒着令牌的被清掉，这部分令牌作废（只会更严，不会多放）
+                    if (l.tokens.get() != 0) {
+                        evictions.increment();
+                    }
+                    return true;
+                });
+            } finally {
+                sweeping.set(false);
+            }
+        });
+    }
+
+    private LocalRateLimiter fallback() {
+        LocalRateLimiter f = fallback;
+        if (f == null) {
+            synchronized (this) {
+                f = fallback;
+                if (f == null) {
+                    f = new LocalRateLimiter(config);
+                    fallback = f;
+                }
+            }
+        }
+        return f;
+    }
+
+    @Override
+    public long rejected() {
+        LocalRateLimiter f = fallback;
+        return rejected.sum() + (f == null ? 0 : f.rejected());
+    }
+
+    @Override
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public RateLimitConfig getConfig() {
+        return config;
+    }
+
+    public CounterStore getStore() {
+        return store;
+    }
+
+    public long batch() {
+        return batch;
+    }
+
+    /**
+     * 访问存储的次数
+     */
+    public long syncs() {
+        return syncs.sum();
+    }
+
+    public long storeErrors() {
+        return storeErrors.sum();
+    }
+}
@@ -0,0 +1,26 @@
+package com.my.gateway.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * cluster 限流的共享计数存储：每个 key 一个全局令牌桶，各网关实例按批领取令牌
+ *
+ * 只在后台同步线程上调用，可以阻塞、可以做 I/O，实现必须线程安全（以及对共享它的其他进程安全）。
+ * 现有实现见 CounterStores；以后接网络存储（例如 Redis 脚本）只要实现同样的「按批领取」语义。
+ */
+public interface CounterStore {
+
+    /**
+     * 从 key 的全局令牌桶里最多领取 want 个令牌
+     *
+     * @param intervalMicros 一个令牌的时间
+     * @param burstMicros    桶容量对应的时间
+     * @return 实际领到的个数（0..want），桶空时为 0
+     */
+    long acquire(String key, long want, long intervalMicros, long burstMicros) throws IOException;
+
+    /**
+     * 存储描述（/metrics、日志使用）
+     */
+    String describe();
+}
@@ -0,0 +1,48 @@
+package com.my.gateway.ratelimit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按配置里的 store 取计数存储，同一个描述只打开一次，所有路由共用（key 带路由 id 前缀）
+ *
+ * <pre>
+ * memory         进程内（默认）
+ * memory:name    进程内，按名字区分
+ * file:/path     mmap 文件，同机多进程共享
+ * </pre>
+ */
+public final class CounterStores {
+
+    // 新建存储的槽位数：16 字节一个，默认 4 MiB，约 26 万个 key
+    static final int DEFAULT_SLOTS = 1 << 18;
+
+    private static final Map<String, CounterStore> STORES = new ConcurrentHashMap<>();
+
+    private CounterStores() {}
+
+    public static CounterStore open(String spec) {
+        String s = spec == null || spec.isBlank() ? "memory" : spec.trim();
+        return STORES.computeIfAbsent(s, CounterStores::create);
+    }
+
+    private static CounterStore create(String spec) {
+        if (spec.equals("memory")) {
+            return new MemoryCounterStore("default", DEFAULT_SLOTS);
+        }
+        if (spec.startsWith("memory:")) {
+            return new MemoryCounterStore(spec.substring(7), DEFAULT_SLOTS);
+        }
+        if (spec.startsWith("file:")) {
+            try {
+                return MappedCounterStore.open(Paths.get(spec.substring(5)), DEFAULT_SLOTS);
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot open rate limit store " + spec, e);
+            }
+        }
+        throw new IllegalArgumentException("unknown rate limit store: " + spec);
+    }
+}
@@ -0,0 +1,81 @@
+package com.my.gateway.ratelimit;
+
+import com.my.gateway.config.RateLimitConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单机令牌桶限流：每个 key 每秒 rate 个令牌，最多攒 burst 个
+ *
+ * 按路由限流（key = route）时只有一个桶，否则桶放在有界的 TokenBucketTable 里。
+ */
+public final class LocalRateLimiter implements RateLimiter {
+
+    // 相对时间起点：桶的初始值 0 表示「已经满了」，需要 now 始终为正
+    private static final long EPOCH = System.nanoTime();
+
+    private final RateLimitConfig config;
+    // 按 key 的桶，按路由限流时为 null
+    private final TokenBucketTable table;
+    // 按路由限流时的唯一一个桶（GCRA 的 tat，写法同 TokenBucketTable），否则为 null
+    private final AtomicLong single;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongAdder rejected = new LongAdder();
+
+    public LocalRateLimiter(RateLimitConfig config) {
+        this.config = config;
+        double rate = Math.max(0.001, config.getRate());
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / rate));
+        this.burstNanos = intervalNanos * config.effectiveBurst();
+        // 整条路由一个桶时不需要表（maxKeys 默认 10 万，表要占几 MB）
+        this.single = config.isPerRoute() ? new AtomicLong() : null;
+        this.table = single == null ? new TokenBucketTable(Math.max(1, config.getMaxKeys()), intervalNanos, burstNanos) : null;
+    }
+
+    @Override
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime() - EPOCH;
+        boolean ok = single != null ? take(now) : table.tryAcquire(key, now);
+        if (!ok) {
+            rejected.increment();
+        }
+        return ok;
+    }
+
+    private boolean take(long now) {
+        for (;;) {
+            long tat = single.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (single.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long evictions() {
+        return table == null ? 0 : table.evictions.sum();
+    }
+
+    @Override
+    public RateLimitConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 表的槽位数（2 × maxKeys 向上取 2 的幂），按路由限流时为 1
+     */
+    public int capacity() {
+        return table == null ? 1 : table.capacity();
+    }
+}
@@ -0,0 +1,66 @@
+package com.my.gateway.ratelimit;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * mmap 文件实现的计数存储：同一台机器上的多个网关进程映射同一个文件（放 /dev/shm 下就不落盘）
+ *
+ * 槽位直接在共享内存上做 CAS，进程之间不需要锁。文件已存在时按文件大小确定槽位数，
+ * 所以所有进程看到的布局一致；新建时按 slots 创建。
+ */
+final class MappedCounterStore extends SlotCounterStore {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path path;
+    private final MappedByteBuffer buf;
+
+    private MappedCounterStore(Path path, MappedByteBuffer buf, int slots) {
+        super(slots);
+        this.path = path;
+        this.buf = buf;
+    }
+
+    static MappedCounterStore open(Path path, int slots) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            if (size == 0) {
+                size = slots * 16L;
+            }
+            if (size % 16 != 0 || !validSlots(size / 16)) {
+                throw new IOException("rate limit store " + path + " has unexpected size " + size);
+            }
+            // 映射超过文件大小时文件会被扩展，多个进程同时新建也只会扩到同一个大小
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new MappedCounterStore(path, buf, (int) (size / 16));
+        }
+    }
+
+    @Override
+    long get(int i) {
+        return (long) LONGS.getVolatile(buf, i << 3);
+    }
+
+    @Override
+    boolean compareAndSet(int i, long expect, long update) {
+        return LONGS.compareAndSet(buf, i << 3, expect, update);
+    }
+
+    @Override
+    void set(int i, long value) {
+        LONGS.setVolatile(buf, i << 3, value);
+    }
+
+    @Override
+    public String describe() {
+        return "file:" + path;
+    }
+}
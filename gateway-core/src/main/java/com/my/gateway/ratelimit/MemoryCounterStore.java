@@ -0,0 +1,38 @@
+package com.my.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的计数存储：同一个 JVM 里的多个网关实例共享（测试 / 单进程多实例）
+ */
+final class MemoryCounterStore extends SlotCounterStore {
+
+    private final String name;
+    private final AtomicLongArray slots;
+
+    MemoryCounterStore(String name, int slots) {
+        super(slots);
+        this.name = name;
+        this.slots = new AtomicLongArray(slots * 2);
+    }
+
+    @Override
+    long get(int i) {
+        return slots.get(i);
+    }
+
+    @Override
+    boolean compareAndSet(int i, long expect, long update) {
+        return slots.compareAndSet(i, expect, update);
+    }
+
+    @Override
+    void set(int i, long value) {
+        slots.set(i, value);
+    }
+
+    @Override
+    public String describe() {
+        return "memory:" + name;
+    }
+}
@@ -0,0 +1,86 @@
+package com.my.gateway.ratelimit;
+
+import com.my.gateway.config.RateLimitConfig;
+import com.my.gateway.context.GatewayRoute;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各路由的限流器
+ *
+ * 路由编译过滤器链时取限流器：同一路由限流配置没变就沿用原来的实例，热更新不会把桶清零；
+ * 新快照发布后清掉已经不存在（或不再配置限流）的路由。
+ * mode: cluster 的路由用 ClusterRateLimiter，共享存储打不开时退回单机限流。
+ */
+@Slf4j
+public class RateLimitRegistry {
+
+    private static final RateLimitRegistry INSTANCE = new RateLimitRegistry();
+
+    private static final class Entry {
+        // 编译时的路由对象：路由被重新编译后对象会变，据此判断条目是否还在用
+        final GatewayRoute route;
+        final RateLimitConfig config;
+        final RateLimiter limiter;
+
+        Entry(GatewayRoute route, RateLimitConfig config, RateLimiter limiter) {
+            this.route = route;
+            this.config = config;
+            this.limiter = limiter;
+        }
+    }
+
+    // routeId -> 限流器
+    private final Map<String, Entry> limiters = new ConcurrentHashMap<>();
+
+    private RateLimitRegistry() {}
+
+    public static RateLimitRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public RateLimiter limiter(GatewayRoute route, RateLimitConfig config) {
+        String id = route == null || route.getId() == null ? "default" : route.getId();
+        Entry old = limiters.get(id);
+        RateLimiter limiter = old != null && old.config.equals(config) ? old.limiter : create(id, config);
+        limiters.put(id, new Entry(route, config, limiter));
+        return limiter;
+    }
+
+    private static RateLimiter create(String routeId, RateLimitConfig config) {
+        if (!config.isCluster()) {
+            return new LocalRateLimiter(config);
+        }
+        try {
+            return new ClusterRateLimiter(routeId, config, CounterStores.open(config.getStore()));
+        } catch (RuntimeException e) {
+            log.error("[RateLimit] route {} cannot open store {}, falling back to per-node limiting",
+                    routeId, config.getStore(), e);
+            return new LocalRateLimiter(config);
+        }
+    }
+
+    /**
+     * 新快照发布后调用：只保留这些路由对象编译出来的限流器
+     */
+    public void retain(List<GatewayRoute> live) {
+        Set<GatewayRoute> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(live);
+        limiters.values().removeIf(e -> !set.contains(e.route));
+    }
+
+    /**
+     * routeId -> 限流器（/metrics 使用）
+     */
+    public Map<String, RateLimiter> view() {
+        Map<String, RateLimiter> out = new java.util.TreeMap<>();
+        limiters.forEach((k, v) -> out.put(k, v.limiter));
+        return out;
+    }
+}
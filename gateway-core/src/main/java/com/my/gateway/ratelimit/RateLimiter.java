@@ -0,0 +1,28 @@
+package com.my.gateway.ratelimit;
+
+import com.my.gateway.config.RateLimitConfig;
+
+/**
+ * 限流器：按 key 取一个令牌，拿不到就拒绝
+ *
+ * tryAcquire 在 eventLoop 上调用，不能阻塞、不能做 I/O。
+ */
+public interface RateLimiter {
+
+    /**
+     * @param key 限流维度的取值（客户端 IP / header 值 / 路由），不能为 null
+     */
+    boolean tryAcquire(String key);
+
+    /**
+     * 累计拒绝次数
+     */
+    long rejected();
+
+    /**
+     * 有状态的 key 因为容量不够被挤掉的次数（挤掉的是还没回满的桶，那个 key 下次相当于拿到一个新桶）
+     */
+    long evictions();
+
+    RateLimitConfig getConfig();
+}
@@ -0,0 +1,92 @@
+package com.my.gateway.ratelimit;
+
+import java.time.Instant;
+
+/**
+ * 定长槽位表实现的计数存储，布局和 TokenBucketTable 相同：每个槽位两个 long（key 指纹 + tat），8 个槽位一组
+ *
+ * 子类只提供对 long 槽位的原子读写（进程内数组 / 多进程共享的 mmap 文件），查找、挤占和按批领取都在这里。
+ * tat 用墙上时间（微秒）：同一台机器上的多个进程共用一个时钟。时钟回拨会暂时少发令牌，向前跳会多出一次突发。
+ */
+abstract class SlotCounterStore implements CounterStore {
+
+    static final int WAYS = 8;
+
+    private final int setMask;
+
+    SlotCounterStore(int slots) {
+        this.setMask = (slots - 1) & ~(WAYS - 1);
+    }
+
+    /**
+     * 第 i 个 long（槽位 s 的指纹在 2s，tat 在 2s + 1）
+     */
+    abstract long get(int i);
+
+    abstract boolean compareAndSet(int i, long expect, long update);
+
+    abstract void set(int i, long value);
+
+    static boolean validSlots(long slots) {
+        return slots >= WAYS && slots <= (1 << 27) && (slots & (slots - 1)) == 0;
+    }
+
+    @Override
+    public long acquire(String key, long want, long intervalMicros, long burstMicros) {
+        if (want <= 0) {
+            return 0;
+        }
+        int idx = (slot(TokenBucketTable.fingerprint(key)) << 1) + 1;
+        for (;;) {
+            long now = nowMicros();
+            long tat = get(idx);
+            long base = Math.max(tat, now);
+            // 桶里还剩多少个令牌的时间
+            long n = Math.min(want, (now + burstMicros - base) / intervalMicros);
+            if (n <= 0) {
+                return 0;
+            }
+            if (compareAndSet(idx, tat, base + n * intervalMicros)) {
+                return n;
+            }
+        }
+    }
+
+    private int slot(long fp) {
+        int base = (int) (fp ^ (fp >>> 32)) & setMask;
+        for (;;) {
+            int victim = -1;
+            long victimFp = 0;
+            long victimTat = Long.MAX_VALUE;
+            for (int i = base; i < base + WAYS; i++) {
+                long f = get(i << 1);
+                if (f == fp) {
+                    return i;
+                }
+                if (f == 0) {
+                    if (victimTat != Long.MIN_VALUE) {
+                        victim = i;
+                        victimFp = 0;
+                        victimTat = Long.MIN_VALUE;
+                    }
+                    continue;
+                }
+                long tat = get((i << 1) + 1);
+                if (tat < victimTat) {
+                    victim = i;
+                    victimFp = f;
+                    victimTat = tat;
+                }
+            }
+            if (compareAndSet(victim << 1, victimFp, fp)) {
+                set((victim << 1) + 1, 0);
+                return victim;
+            }
+        }
+    }
+
+    static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1000;
+    }
+}
@@ -0,0 +1,118 @@
+package com.my.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界的令牌桶表：key -> 令牌桶，容量在创建时固定，不会被海量 key 撑爆堆
+ *
+ * 令牌桶用一个 long 表示（GCRA 写法）：记录「桶里令牌被预支到的时刻」tat。
+ * 取令牌 = tat 推后一个令牌间隔；推后之后超出 now + 突发容量 说明没令牌了。
+ * 回填是惰性的（时间流逝本身就是回填），没有定时任务，一次 CAS 完成。tat <= now 说明桶已经满了。
+ *
+ * 表是一个 long 数组，每个槽位两个 long：key 的 64 位指纹 + tat，8 个槽位一组（两条缓存行）。
+ * key 按指纹定位到一组，命中直接 CAS 同一条缓存行里的 tat；没命中时占空槽，否则替换组里 tat 最早的桶
+ * （已经回满的桶被替换不丢任何状态，相当于 LRU 里最闲的那个）。
+ * 每个 key 不创建对象、不保留 key 字符串，命中和插入都不分配内存、不加锁。
+ * 两个不同的 key 指纹相同（100 万个 key 时概率约 3e-8）会共用一个桶。
+ */
+final class TokenBucketTable {
+
+    private static final int WAYS = 8;
+
+    // [2i] = 指纹（0 表示空槽），[2i + 1] = tat
+    private final AtomicLongArray slots;
+    private final int setMask;
+    // 一个令牌的时间（纳秒）
+    private final long intervalNanos;
+    // 突发容量对应的时间（burst 个令牌）
+    private final long burstNanos;
+
+    final LongAdder evictions = new LongAdder();
+
+    TokenBucketTable(int maxKeys, long intervalNanos, long burstNanos) {
+        // 槽位数取 maxKeys 的 2 倍（向上取 2 的幂）：平均每组半满，key 数不超过 maxKeys 时几乎不会因为组满而互相挤占
+        int cap = WAYS;
+        while (cap < 2L * maxKeys && cap < (1 << 29)) {
+            cap <<= 1;
+        }
+        this.slots = new AtomicLongArray(cap * 2);
+        this.setMask = (cap - 1) & ~(WAYS - 1);
+        this.intervalNanos = intervalNanos;
+        this.burstNanos = burstNanos;
+    }
+
+    int capacity() {
+        return slots.length() / 2;
+    }
+
+    boolean tryAcquire(String key, long now) {
+        long fp = fingerprint(key);
+        int base = (int) (fp ^ (fp >>> 32)) & setMask;
+        for (;;) {
+            int victim = -1;
+            long victimFp = 0;
+            long victimTat = Long.MAX_VALUE;
+            for (int i = base; i < base + WAYS; i++) {
+                long f = slots.get(i << 1);
+                if (f == fp) {
+                    return take(i, now);
+                }
+                if (f == 0) {
+                    if (victimTat != Long.MIN_VALUE) {
+                        victim = i;
+                        victimFp = 0;
+                        victimTat = Long.MIN_VALUE;
+                    }
+                    continue;
+                }
+                long tat = slots.get((i << 1) + 1);
+                if (tat < victimTat) {
+                    victim = i;
+                    victimFp = f;
+                    victimTat = tat;
+                }
+            }
+            // 同一个新 key 并发插入时大家选中同一个槽，CAS 失败的一方重新查找会命中胜者
+            if (slots.compareAndSet(victim << 1, victimFp, fp)) {
+                if (victimFp != 0 && victimTat > now) {
+                    evictions.increment();
+                }
+                // 新 key 从满桶开始（被替换的 key 恰好在这一刻取令牌时可能少算 / 多算一个，可以接受）
+                slots.set((victim << 1) + 1, 0);
+                return take(victim, now);
+            }
+        }
+    }
+
+    private boolean take(int slot, long now) {
+        int idx = (slot << 1) + 1;
+        for (;;) {
+            long tat = slots.get(idx);
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (slots.compareAndSet(idx, tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * key 的 64 位指纹（FNV-1a + murmur3 fmix64），0 留给空槽
+     */
+    static long fingerprint(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
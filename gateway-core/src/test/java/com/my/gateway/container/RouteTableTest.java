@@ -0,0 +1,59 @@
+package com.my.gateway.container;
+
+import com.my.gateway.config.ConcurrencyLimitConfig;
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.context.UpstreamInstance;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 热更新 diff：路由配置没变但它继承的全局配置变了时，要重新编译并发布；重新编译时同 url 的地址沿用
+ */
+public class RouteTableTest extends TestCase {
+
+    private static GatewayConfig config(ConcurrencyLimitConfig limit) {
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setConcurrencyLimit(limit);
+        cfg.setRoutes(new ArrayList<>(List.of(GatewayRoute.builder()
+                .id("route-table-test")
+                .path("/route-table-test")
+                .upstreams(List.of(new UpstreamInstance("http://127.0.0.1:21101", 1)))
+                .build())));
+        return cfg;
+    }
+
+    private static ConcurrencyLimitConfig limit(int initial) {
+        ConcurrencyLimitConfig c = new ConcurrencyLimitConfig();
+        c.setInitialLimit(initial);
+        return c;
+    }
+
+    public void testGlobalConcurrencyLimitChangeIsPublished() {
+        RouteManager rm = RouteManager.getInstance();
+        RouteTable first = rm.refresh(config(limit(10)));
+        RouteRuntime before = first.getRuntimes().get(0);
+        assertEquals(10, before.getUpstreams()[0].getConcurrencyLimit().limit());
+
+        // 同样的配置：不发布，沿用原来的 runtime
+        assertSame(first, rm.refresh(config(limit(10))));
+
+        // 路由本身没变，只改了全局 concurrencyLimit
+        RouteTable second = rm.refresh(config(limit(30)));
+        assertNotSame(first, second);
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertEquals(1, second.getChanged());
+        assertEquals(0, second.getUnchanged());
+        RouteRuntime after = second.getRuntimes().get(0);
+        assertNotSame(before, after);
+        assertEquals(30, after.getUpstreams()[0].getConcurrencyLimit().limit());
+        // 重新编译的路由沿用同 url 已经解析好的地址
+        assertSame(before.getUpstreams()[0].getAddress(), after.getUpstreams()[0].getAddress());
+
+        // 关掉全局并发限制同样生效
+        RouteTable third = rm.refresh(config(null));
+        assertNull(third.getRuntimes().get(0).getUpstreams()[0].getConcurrencyLimit());
+    }
+}
@@ -0,0 +1,120 @@
+package com.my.gateway.container;
+
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.context.GatewayRoute;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路由前缀树：最长前缀、普通段 / 参数 / 通配的优先级、整段匹配
+ */
+public class RouteTrieTest extends TestCase {
+
+    private static GatewayRoute.GatewayRouteBuilder route(String id, String path) {
+        return GatewayRoute.builder().id(id).path(path).backendUrl("http://127.0.0.1:9000");
+    }
+
+    private static RouteTable table(GatewayRoute... routes) {
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setRoutes(new ArrayList<>(List.of(routes)));
+        return new RouteTable(1, cfg, null);
+    }
+
+    private static String match(RouteTable t, HttpRequest req, String path) {
+        RouteRuntime r = t.match(req, path);
+        return r == null ? null : r.getId();
+    }
+
+    private static String match(RouteTable t, String path) {
+        return match(t, null, path);
+    }
+
+    public void testLongestPrefixWins() {
+        RouteTable t = table(
+                route("api", "/api").build(),
+                route("user", "/api/user").build(),
+                route("profile", "/api/user/profile").build());
+        assertEquals("profile", match(t, "/api/user/profile/avatar"));
+        assertEquals("profile", match(t, "/api/user/profile"));
+        assertEquals("user", match(t, "/api/user/42"));
+        assertEquals("api", match(t, "/api/order"));
+        assertEquals("api", match(t, "/api"));
+        assertNull(match(t, "/other"));
+    }
+
+    public void testConfigOrderDoesNotAffectLongestPrefix() {
+        RouteTable t = table(
+                route("profile", "/api/user/profile").build(),
+                route("api", "/api").build());
+        assertEquals("profile", match(t, "/api/user/profile/x"));
+        assertEquals("api", match(t, "/api/user/x"));
+    }
+
+    public void testPrefixMatchesWholeSegmentsOnly() {
+        RouteTable t = table(route("a", "/a").build());
+        assertEquals("a", match(t, "/a"));
+        assertEquals("a", match(t, "/a/"));
+        assertEquals("a", match(t, "/a/b"));
+        // 旧的 startsWith 会让 /a 命中 /ab
+        assertNull(match(t, "/ab"));
+        assertNull(match(t, "/ab/c"));
+    }
+
+    public void testLiteralBeatsParamBeatsWildcardAtSameDepth() {
+        RouteTable t = table(
+                route("wildcard", "/u/*/info").build(),
+                route("param", "/u/{id}/info").build(),
+                route("literal", "/u/me/info").build());
+        assertEquals("literal", match(t, "/u/me/info"));
+        assertEquals("param", match(t, "/u/42/info"));
+        assertEquals("param", match(t, "/u/42/info/more"));
+    }
+
+    public void testWildcardUsedWhenParamBranchDoesNotMatch() {
+        RouteTable t = table(
+                route("param", "/u/:id/info").build(),
+                route("wildcard", "/u/*/orders").build());
+        assertEquals("param", match(t, "/u/7/info"));
+        assertEquals("wildcard", match(t, "/u/7/orders"));
+        assertNull(match(t, "/u/7/other"));
+    }
+
+    public void testDeeperWildcardBeatsShallowerLiteral() {
+        RouteTable t = table(
+                route("literal", "/u/me").build(),
+                route("wildcard", "/u/*/info").build());
+        assertEquals("wildcard", match(t, "/u/me/info"));
+        assertEquals("literal", match(t, "/u/me/other"));
+    }
+
+    public void testTrailingDoubleStarIsPrefix() {
+        RouteTable t = table(route("static", "/static/**").build());
+        assertEquals("static", match(t, "/static"));
+        assertEquals("static", match(t, "/static/js/app.js"));
+    }
+
+    public void testFallsBackToShallowerPrefixWhenConditionsFail() {
+        RouteTable t = table(
+                route("api", "/api").build(),
+                route("post-only", "/api/orders").methods(List.of("POST")).build());
+        HttpRequest post = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/api/orders/1");
+        HttpRequest get = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/api/orders/1");
+        assertEquals("post-only", match(t, post, "/api/orders/1"));
+        assertEquals("api", match(t, get, "/api/orders/1"));
+        // 没有请求头时只匹配不带条件的路由
+        assertEquals("api", match(t, "/api/orders/1"));
+    }
+
+    public void testPriorityOrdersRoutesOnSameNode() {
+        RouteTable t = table(
+                route("low", "/p").build(),
+                route("high", "/p").priority(10).build());
+        assertEquals("high", match(t, "/p/x"));
+    }
+}
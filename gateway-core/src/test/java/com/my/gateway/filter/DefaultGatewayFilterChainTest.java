@@ -0,0 +1,164 @@
+package com.my.gateway.filter;
+
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRequest;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 过滤器链 trampoline：同步 / 异步前置阶段按顺序执行且都回到请求所在的 eventLoop，后置阶段倒序且只执行一次
+ */
+public class DefaultGatewayFilterChainTest extends TestCase {
+
+    private EventLoopGroup group;
+    private Channel server;
+    private Channel client;
+    private ChannelHandlerContext nettyCtx;
+
+    // 各阶段的执行记录：名字 + 是否在 eventLoop 上
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        LocalAddress addr = new LocalAddress("filter-chain-test-" + System.nanoTime());
+        CompletableFuture<ChannelHandlerContext> accepted = new CompletableFuture<>();
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void handlerAdded(ChannelHandlerContext ctx) {
+                        accepted.complete(ctx);
+                    }
+                })
+                .bind(addr).sync().channel();
+        client = new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(addr).sync().channel();
+        nettyCtx = accepted.get(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    protected void tearDown() {
+        client.close().syncUninterruptibly();
+        server.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private final class Recording implements GatewayFilter {
+        final String name;
+        // null：同步；否则返回这个 stage
+        final Supplier<CompletionStage<?>> stage;
+        final boolean writes;
+        final boolean last;
+
+        Recording(String name, Supplier<CompletionStage<?>> stage, boolean writes, boolean last) {
+            this.name = name;
+            this.stage = stage;
+            this.writes = writes;
+            this.last = last;
+        }
+
+        @Override
+        public CompletionStage<?> onRequest(GatewayContext ctx) {
+            events.add("req:" + name + onLoop());
+            if (writes) {
+                ctx.writeResponse();
+                return null;
+            }
+            return stage == null ? null : stage.get();
+        }
+
+        @Override
+        public void onComplete(GatewayContext ctx) {
+            events.add("done:" + name + onLoop());
+            if (last) {
+                completed.countDown();
+            }
+        }
+
+        private String onLoop() {
+            return nettyCtx.executor().inEventLoop() ? "" : "@other-thread";
+        }
+    }
+
+    private static CompletionStage<?> later(long ms) {
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(ms, TimeUnit.MILLISECONDS, ForkJoinPool.commonPool()));
+    }
+
+    private GatewayContext run(GatewayFilter... filters) throws InterruptedException {
+        DefaultGatewayFilterChain chain = new DefaultGatewayFilterChain(filters, new Object[filters.length]);
+        GatewayContext ctx = new GatewayContext(nettyCtx,
+                new GatewayRequest("127.0.0.1", new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/t"), null));
+        nettyCtx.executor().execute(() -> chain.execute(ctx));
+        assertTrue("onComplete of the first filter never ran", completed.await(5, TimeUnit.SECONDS));
+        return ctx;
+    }
+
+    public void testSyncAndAsyncStagesRunInOrderOnTheEventLoop() throws Exception {
+        GatewayContext ctx = run(
+                new Recording("a", null, false, true),
+                new Recording("b", () -> later(50), false, false),
+                new Recording("c", () -> CompletableFuture.completedFuture(null), false, false),
+                new Recording("d", () -> later(20), false, false),
+                new Recording("e", null, true, false));
+
+        assertEquals(List.of("req:a", "req:b", "req:c", "req:d", "req:e",
+                "done:e", "done:d", "done:c", "done:b", "done:a"), events);
+
+        // 再次释放（例如连接关闭时）不会重复执行后置阶段
+        nettyCtx.executor().submit(ctx::release).sync();
+        assertEquals(10, events.size());
+    }
+
+    public void testFiltersAfterWriterAreSkippedAndOnlyExecutedOnesComplete() throws Exception {
+        run(
+                new Recording("a", null, false, true),
+                new Recording("b", () -> later(20), true, false),
+                new Recording("c", null, false, false));
+
+        assertEquals(List.of("req:a", "req:b", "done:b", "done:a"), events);
+    }
+
+    public void testFailedAsyncStageWrites500AndCompletesOnce() throws Exception {
+        CompletableFuture<Void> failing = new CompletableFuture<>();
+        GatewayContext ctx = run(
+                new Recording("a", null, false, true),
+                new Recording("b", () -> {
+                    ForkJoinPool.commonPool().execute(() -> failing.completeExceptionally(new IllegalStateException("boom")));
+                    return failing;
+                }, false, false),
+                new Recording("c", null, false, false));
+
+        assertEquals(List.of("req:a", "req:b", "done:b", "done:a"), events);
+        assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, ctx.getResponse().getStatus());
+        assertTrue(ctx.isWritten());
+    }
+}
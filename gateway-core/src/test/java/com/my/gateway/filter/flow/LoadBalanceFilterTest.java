@@ -0,0 +1,133 @@
+package com.my.gateway.filter.flow;
+
+import com.my.gateway.config.ConcurrencyLimitConfig;
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRequest;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.context.UpstreamInstance;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * chooseUpstream 的 in-flight 预留：到上限顺延 / 全满返回 null、没发出的请求在 release 时归还、并发选择不超上限
+ */
+public class LoadBalanceFilterTest extends TestCase {
+
+    private RouteRuntime runtime;
+
+    @Override
+    protected void setUp() {
+        ConcurrencyLimitConfig limit = new ConcurrencyLimitConfig();
+        limit.setInitialLimit(2);
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setRoutes(new ArrayList<>(List.of(GatewayRoute.builder()
+                .id("lb-reserve-" + getName())
+                .path("/lb-reserve")
+                .concurrencyLimit(limit)
+                .upstreams(List.of(new UpstreamInstance("http://127.0.0.1:21001", 1),
+                        new UpstreamInstance("http://127.0.0.1:21002", 1)))
+                .build())));
+        runtime = RouteManager.getInstance().refresh(cfg).getRuntimes().get(0);
+    }
+
+    private GatewayContext newContext() {
+        GatewayContext ctx = new GatewayContext(null,
+                new GatewayRequest("127.0.0.1", new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/lb-reserve"), null));
+        ctx.setRuntime(runtime);
+        return ctx;
+    }
+
+    private int inflight() {
+        int sum = 0;
+        for (RouteUpstream u : runtime.getUpstreams()) {
+            sum += u.getLoad().inflight();
+        }
+        return sum;
+    }
+
+    public void testPickReservesAndReleaseWithoutDispatchUndoes() {
+        GatewayContext ctx = newContext();
+        RouteUpstream u = LoadBalanceFilter.chooseUpstream(ctx);
+        assertNotNull(u);
+        assertEquals(1, u.getLoad().inflight());
+        // 例如后面的过滤器直接写了响应：没发出的预留归还
+        ctx.release();
+        assertEquals(0, inflight());
+        // 只归还一次
+        ctx.release();
+        assertEquals(0, inflight());
+    }
+
+    public void testClaimedReservationIsOwnedByTheAttempt() {
+        GatewayContext ctx = newContext();
+        RouteUpstream u = LoadBalanceFilter.chooseUpstream(ctx);
+        assertSame(u, ctx.claimReservation(u));
+        // 已经发出：release 不动 in-flight，由这次尝试结束时减
+        ctx.release();
+        assertEquals(1, u.getLoad().inflight());
+        u.getLoad().onComplete();
+        // 请求已结束后再接手（重试退避期间客户端断开）：拿不到
+        GatewayContext ended = newContext();
+        RouteUpstream v = LoadBalanceFilter.chooseUpstream(ended);
+        ended.release();
+        assertNull(ended.claimReservation(v));
+        assertEquals(0, inflight());
+    }
+
+    public void testFullUpstreamsAreSkippedThenRejected() {
+        List<GatewayContext> held = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            GatewayContext ctx = newContext();
+            assertNotNull(LoadBalanceFilter.chooseUpstream(ctx));
+            held.add(ctx);
+        }
+        for (RouteUpstream u : runtime.getUpstreams()) {
+            assertEquals(2, u.getLoad().inflight());
+        }
+        assertNull(LoadBalanceFilter.chooseUpstream(newContext()));
+        assertEquals(4, inflight());
+        for (GatewayContext ctx : held) {
+            ctx.release();
+        }
+        assertEquals(0, inflight());
+    }
+
+    public void testConcurrentPicksNeverOvershoot() throws Exception {
+        AtomicInteger picked = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (LoadBalanceFilter.chooseUpstream(newContext()) != null) {
+                        picked.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        // 2 个 upstream × 上限 2，预留都没有归还
+        assertEquals(4, picked.get());
+        assertEquals(4, inflight());
+    }
+}
@@ -0,0 +1,152 @@
+package com.my.gateway.health;
+
+import com.my.gateway.config.HealthConfig;
+import junit.framework.TestCase;
+
+/**
+ * 熔断滑动窗口：失败率 / 慢调用率触发、minimumCalls 门槛、按次数和按时间的过期，以及 16 位时间戳回绕
+ */
+public class CallWindowTest extends TestCase {
+
+    private static HealthConfig config(String type, int size, int minimumCalls) {
+        HealthConfig c = new HealthConfig();
+        c.setSlidingWindowType(type);
+        c.setSlidingWindowSize(size);
+        c.setMinimumCalls(minimumCalls);
+        c.setFailureRateThreshold(50);
+        c.setSlowCallRateThreshold(100);
+        return c;
+    }
+
+    public void testConsecutiveIsDefault() {
+        assertNull(CallWindow.of(new HealthConfig()));
+        assertNull(CallWindow.of(config("unknown", 10, 1)));
+    }
+
+    public void testFailureRateTripsOnlyAfterMinimumCalls() {
+        CallWindow w = CallWindow.of(config("count", 10, 6));
+        // 5 次全失败：失败率 100%，但调用数没到 minimumCalls
+        for (int i = 0; i < 5; i++) {
+            assertFalse(w.record(true, false));
+        }
+        // 第 6 次调用达到门槛，失败率 6/6
+        assertTrue(w.record(true, false));
+    }
+
+    public void testFailureRateBelowThresholdDoesNotTrip() {
+        CallWindow w = CallWindow.of(config("count", 10, 1));
+        for (int i = 0; i < 6; i++) {
+            w.record(false, false);
+        }
+        // 4 / 10 < 50%
+        for (int i = 0; i < 3; i++) {
+            assertFalse(w.record(true, false));
+        }
+        assertFalse(w.record(true, false));
+        // 窗口滑动：挤掉一次成功，5 / 10 = 50%
+        assertTrue(w.record(true, false));
+    }
+
+    public void testSuccessNeverTrips() {
+        CallWindow w = CallWindow.of(config("count", 4, 1));
+        for (int i = 0; i < 3; i++) {
+            w.record(true, false);
+        }
+        // 窗口里失败率已经超过阈值，成功调用本身也不触发
+        assertFalse(w.record(false, false));
+    }
+
+    public void testSlowCallRateTrips() {
+        HealthConfig c = config("count", 10, 4);
+        c.setSlowCallRateThreshold(75);
+        CallWindow w = CallWindow.of(c);
+        assertFalse(w.record(false, false));
+        assertFalse(w.record(false, true));
+        assertFalse(w.record(false, true));
+        // 3 / 4 慢调用 = 75%，都是成功的调用
+        assertTrue(w.record(false, true));
+    }
+
+    public void testCountWindowForgetsOldCalls() {
+        CallWindow w = CallWindow.of(config("count", 4, 4));
+        for (int i = 0; i < 3; i++) {
+            w.record(true, false);
+        }
+        for (int i = 0; i < 4; i++) {
+            w.record(false, false);
+        }
+        // 之前的失败都已经滑出窗口：1 / 4
+        assertFalse(w.record(true, false));
+        assertTrue(w.record(true, false));
+    }
+
+    public void testFreshWindowIsEmpty() {
+        CallWindow w = CallWindow.of(config("count", 4, 2));
+        w.record(true, false);
+        assertFalse(w.fresh().record(true, false));
+    }
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    public void testTimeWindowBucketsRollOver() {
+        CallWindow.TimeWindow w = new CallWindow.TimeWindow(10, config("time", 10, 4), T0);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(w.record(true, false, T0 + i * 1000L));
+        }
+        // 同一个窗口内：4 / 4
+        assertTrue(w.record(true, false, T0 + 9_000));
+
+        CallWindow.TimeWindow w2 = new CallWindow.TimeWindow(10, config("time", 10, 4), T0);
+        for (int i = 0; i < 3; i++) {
+            w2.record(true, false, T0 + i * 1000L);
+        }
+        // 前 3 秒的桶都过期了（其中第 0 个桶被复用），只剩这一次调用
+        assertFalse(w2.record(true, false, T0 + 10_000 + 2_000));
+        // 同一秒里的调用累加在一个桶里
+        CallWindow.TimeWindow w3 = new CallWindow.TimeWindow(10, config("time", 10, 4), T0);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(w3.record(true, false, T0 + 500));
+        }
+        assertTrue(w3.record(true, false, T0 + 900));
+    }
+
+    public void testTimeWindowIgnoresBucketsAfterStampWrapWhenIdle() {
+        CallWindow.TimeWindow w = new CallWindow.TimeWindow(10, config("time", 10, 4), T0);
+        for (int i = 0; i < 3; i++) {
+            w.record(true, false, T0 + i * 1000L);
+        }
+        // 65536 秒之后 16 位时间戳回绕到同样的值，旧的 3 次失败不能算进来
+        long wrapped = T0 + 65_536_000L + 2_000;
+        assertFalse(w.record(true, false, wrapped));
+        assertFalse(w.record(true, false, wrapped));
+        assertFalse(w.record(true, false, wrapped));
+        assertTrue(w.record(true, false, wrapped));
+    }
+
+    public void testTimeWindowIgnoresStaleBucketAfterWrapUnderSparseTraffic() {
+        CallWindow.TimeWindow w = new CallWindow.TimeWindow(10, config("time", 10, 4), T0);
+        // 第 3 秒的桶写了 3 次失败，之后一直没有再落到这个桶
+        for (int i = 0; i < 3; i++) {
+            w.record(true, false, T0 + 3_000);
+        }
+        // 其他桶每 10 分钟有一次成功调用（每次都落在第 0 个桶）
+        for (long t = T0 + 600_000; t < T0 + 65_536_000L; t += 600_000) {
+            w.record(false, false, t - (t - T0) % 10_000);
+        }
+        // 回绕后落到第 3 个桶的那一秒
+        long wrapped = T0 + 65_536_000L + 3_000;
+        assertFalse(w.record(true, false, wrapped));
+    }
+
+    public void testCircuitBreakerTripsOnFailureRate() {
+        HealthConfig c = config("count", 10, 4);
+        UpstreamCircuitBreaker cb = new UpstreamCircuitBreaker(c);
+        cb.onSuccess();
+        cb.onFailure();
+        cb.onFailure();
+        assertEquals(UpstreamState.CLOSED, cb.getState());
+        cb.onFailure();
+        assertEquals(UpstreamState.OPEN, cb.getState());
+        assertFalse(cb.tryAcquire());
+    }
+}
@@ -0,0 +1,163 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.config.ConcurrencyLimitConfig;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发上限：gradient / vegas 的窗口调整、失败退让、没压力时不上涨，以及并发预留不超上限
+ */
+public class AdaptiveConcurrencyLimitTest extends TestCase {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private long now;
+
+    @Override
+    protected void setUp() {
+        // 被测对象在这之后创建，窗口起点比这里晚一点：多留一个窗口，保证第一个窗口就能结算
+        now = System.nanoTime() + WINDOW;
+    }
+
+    private static ConcurrencyLimitConfig config(String algorithm) {
+        ConcurrencyLimitConfig c = new ConcurrencyLimitConfig();
+        c.setAlgorithm(algorithm);
+        return c;
+    }
+
+    /**
+     * 喂满一个窗口（minSamples 个样本），最后一个样本触发调整
+     */
+    private void window(AdaptiveConcurrencyLimit l, long rtt, int inflight, boolean drop) {
+        now += WINDOW;
+        for (int i = 0; i < 10; i++) {
+            l.onSample(now, rtt, inflight, drop);
+        }
+    }
+
+    public void testGradientGrowsWithoutQueueing() {
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(config("gradient"));
+        assertEquals(20, l.limit());
+        window(l, RTT, 20, false);
+        assertEquals(RTT, l.minRttNanos());
+        // 20 × 0.8 + (20 + sqrt(20)) × 0.2 = 20.89
+        assertEquals(20, l.limit());
+        int prev = l.limit();
+        for (int i = 0; i < 10; i++) {
+            window(l, RTT, l.limit(), false);
+            assertTrue(l.limit() >= prev);
+            prev = l.limit();
+        }
+        assertTrue("limit " + l.limit(), l.limit() > 25);
+    }
+
+    public void testGradientShrinksWhenRttRises() {
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(config("gradient"));
+        window(l, RTT, 20, false);
+        // RTT 涨到基线的 10 倍：gradient 取下限 0.5
+        window(l, RTT * 10, 20, false);
+        // 20.89 × 0.8 + (20.89 × 0.5 + sqrt(20.89)) × 0.2 = 19.72
+        assertEquals(19, l.limit());
+        for (int i = 0; i < 60; i++) {
+            window(l, RTT * 10, 20, false);
+        }
+        // 不动点 L = 0.5L + sqrt(L)，即 4
+        assertTrue("limit " + l.limit(), l.limit() >= 4 && l.limit() <= 5);
+    }
+
+    public void testDropsBackOff() {
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(config("gradient"));
+        window(l, RTT, 20, true);
+        // 20 × 0.9
+        assertEquals(18, l.limit());
+        window(l, RTT, 20, true);
+        assertEquals(16, l.limit());
+    }
+
+    public void testNoGrowthWhenAppLimited() {
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(config("gradient"));
+        for (int i = 0; i < 10; i++) {
+            // 实际并发不到上限一半
+            window(l, RTT, 5, false);
+        }
+        assertEquals(20, l.limit());
+
+        AdaptiveConcurrencyLimit v = new AdaptiveConcurrencyLimit(config("vegas"));
+        for (int i = 0; i < 10; i++) {
+            window(v, RTT, 5, false);
+        }
+        assertEquals(20, v.limit());
+    }
+
+    public void testVegasAddsAndRemovesLog10() {
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(config("vegas"));
+        window(l, RTT, 20, false);
+        // 排队数 0：+log10(20) = 21.3
+        assertEquals(21, l.limit());
+        window(l, RTT, 21, false);
+        // 22.6
+        assertEquals(22, l.limit());
+        // RTT 翻倍：排队数约 11 ≥ 6·log10 ≈ 8，-log10
+        window(l, RTT * 2, 22, false);
+        assertEquals(21, l.limit());
+        // 排队数在 3·log10 和 6·log10 之间：不变（RTT 1.3 倍时约 5.2）
+        window(l, RTT * 13 / 10, 21, false);
+        assertEquals(21, l.limit());
+    }
+
+    public void testLimitIsClamped() {
+        ConcurrencyLimitConfig c = config("gradient");
+        c.setMinLimit(3);
+        c.setMaxLimit(22);
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(c);
+        for (int i = 0; i < 20; i++) {
+            window(l, RTT, 22, false);
+        }
+        assertEquals(22, l.limit());
+        for (int i = 0; i < 40; i++) {
+            window(l, RTT, 22, true);
+        }
+        assertEquals(3, l.limit());
+    }
+
+    public void testConcurrentAcquireNeverOvershootsLimit() throws Exception {
+        ConcurrencyLimitConfig c = config("gradient");
+        c.setInitialLimit(5);
+        AdaptiveConcurrencyLimit l = new AdaptiveConcurrencyLimit(c);
+        UpstreamLoad load = new UpstreamLoad();
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    if (l.tryAcquire(load)) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        // 谁都没有结束请求：判断和预留是一次 CAS，只能放进 limit 个
+        assertEquals(5, admitted.get());
+        assertEquals(5, load.inflight());
+        assertEquals(80_000 - 5, l.rejected());
+
+        load.onComplete();
+        assertTrue(l.tryAcquire(load));
+        assertFalse(l.tryAcquire(load));
+    }
+}
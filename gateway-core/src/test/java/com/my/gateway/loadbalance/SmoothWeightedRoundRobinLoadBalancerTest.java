@@ -0,0 +1,145 @@
+package com.my.gateway.loadbalance;
+
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayContext;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.context.UpstreamInstance;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预计算的 SWRR 序列与经典逐次计算一致；可用集合变化时请求路径不重算，后台算好后切换
+ */
+public class SmoothWeightedRoundRobinLoadBalancerTest extends TestCase {
+
+    private static RouteRuntime route(String id, int... weights) {
+        List<UpstreamInstance> list = new ArrayList<>();
+        for (int i = 0; i < weights.length; i++) {
+            list.add(new UpstreamInstance("http://127.0.0.1:" + (20000 + i), weights[i]));
+        }
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setRoutes(new ArrayList<>(List.of(
+                GatewayRoute.builder().id(id).path("/" + id).lb("swrr").upstreams(list).build())));
+        return RouteManager.getInstance().refresh(cfg).getRuntimes().get(0);
+    }
+
+    /**
+     * 经典 SWRR：每次选择都对全部实例 current += weight，选最大的（相同时取靠前的），再减去总权重
+     */
+    private static int[] classic(int[] weights, int picks) {
+        int total = 0;
+        for (int w : weights) {
+            total += w;
+        }
+        int[] current = new int[weights.length];
+        int[] out = new int[picks];
+        for (int k = 0; k < picks; k++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            out[k] = best;
+        }
+        return out;
+    }
+
+    private static void assertMatchesClassic(String id, int... weights) {
+        RouteRuntime r = route(id, weights);
+        List<RouteUpstream> candidates = List.of(r.getUpstreams());
+        LoadBalancer lb = r.getLoadBalancer();
+        GatewayContext ctx = new GatewayContext(null, null);
+        int total = 0;
+        for (int w : weights) {
+            total += w;
+        }
+        int[] expected = classic(weights, total * 3);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(id + " pick " + k, expected[k], lb.choose(candidates, ctx).getIndex());
+        }
+    }
+
+    public void testNginxExample() {
+        RouteRuntime r = route("swrr-nginx", 5, 1, 1);
+        List<RouteUpstream> candidates = List.of(r.getUpstreams());
+        GatewayContext ctx = new GatewayContext(null, null);
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < 7; k++) {
+            sb.append((char) ('a' + r.getLoadBalancer().choose(candidates, ctx).getIndex()));
+        }
+        assertEquals("aabacaa", sb.toString());
+    }
+
+    public void testScheduleMatchesClassicSequence() {
+        assertMatchesClassic("swrr-321", 3, 2, 1);
+        assertMatchesClassic("swrr-equal", 4, 4);
+        assertMatchesClassic("swrr-gcd", 10, 20, 30);
+        assertMatchesClassic("swrr-mixed", 7, 3, 1, 1);
+        assertMatchesClassic("swrr-single", 9);
+    }
+
+    public void testRetrySkipsTriedAlongSchedule() {
+        RouteRuntime r = route("swrr-retry", 5, 1, 1);
+        List<RouteUpstream> candidates = List.of(r.getUpstreams());
+        GatewayContext ctx = new GatewayContext(null, null);
+        ctx.markTried(r.getUpstreams()[0]);
+        // 序列 a a b a c a a：跳过 a 后依次是 b、c
+        assertEquals(1, r.getLoadBalancer().choose(candidates, ctx).getIndex());
+        assertEquals(1, r.getLoadBalancer().choose(candidates, ctx).getIndex());
+        assertEquals(1, r.getLoadBalancer().choose(candidates, ctx).getIndex());
+        assertEquals(2, r.getLoadBalancer().choose(candidates, ctx).getIndex());
+    }
+
+    public void testCandidateChangeIsRebuiltOffTheRequestPath() throws Exception {
+        RouteRuntime r = route("swrr-change", 5, 1, 3);
+        RouteUpstream[] all = r.getUpstreams();
+        SmoothWeightedRoundRobinLoadBalancer lb = (SmoothWeightedRoundRobinLoadBalancer) r.getLoadBalancer();
+        GatewayContext ctx = new GatewayContext(null, null);
+
+        // 第一个实例熔断：新的可用集合，序列还没算好时也只在新集合里选
+        List<RouteUpstream> without0 = List.of(all[1], all[2]);
+        for (int k = 0; k < 4; k++) {
+            assertNotSame(all[0], lb.choose(without0, ctx));
+        }
+        lb.awaitRebuild();
+        // 可能在等待期间被后续的 choose 又投递了一次，再等一轮保证新序列已发布
+        lb.choose(without0, ctx);
+        lb.awaitRebuild();
+
+        // 新序列按剩下两个实例的权重 1:3 分配
+        int[] counts = new int[3];
+        for (int k = 0; k < 400; k++) {
+            counts[lb.choose(without0, ctx).getIndex()]++;
+        }
+        assertEquals(0, counts[0]);
+        assertEquals(100, counts[1]);
+        assertEquals(300, counts[2]);
+    }
+
+    public void testScheduleLengthIsCappedForManyUpstreams() {
+        int n = 200;
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = 1000 + i;
+        }
+        RouteRuntime r = route("swrr-many", weights);
+        int[] seq = SmoothWeightedRoundRobinLoadBalancer.build(List.of(r.getUpstreams())).seq;
+        assertTrue("schedule too long: " + seq.length, (long) seq.length * n <= (1 << 22) + (long) n * n);
+        // 缩小后每个实例仍然至少出现一次
+        boolean[] seen = new boolean[n];
+        for (int i : seq) {
+            seen[i] = true;
+        }
+        for (int i = 0; i < n; i++) {
+            assertTrue(seen[i]);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.my.gateway.netty;
+
+import com.my.gateway.config.GatewayConfig;
+import com.my.gateway.config.RetryConfig;
+import com.my.gateway.config.ServerConfig;
+import com.my.gateway.container.RouteManager;
+import com.my.gateway.container.RouteRuntime;
+import com.my.gateway.container.RouteUpstream;
+import com.my.gateway.context.GatewayRoute;
+import com.my.gateway.context.UpstreamInstance;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import junit.framework.TestCase;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 入站处理：
+ * - 客户端断开：还在重试退避中的聚合请求随连接一起释放，退避结束后不再发给 upstream，预留的 in-flight 归还
+ * - 没有 body 的响应（HEAD / 304）：upstream 的 Content-Length 原样透传
+ */
+public class NettyHttpServerHandlerTest extends TestCase {
+
+    private static final long BACKOFF_MS = 400;
+
+    private EventLoopGroup group;
+    private final List<Channel> servers = new ArrayList<>();
+    // 两个 upstream 累计收到的请求数
+    private final AtomicInteger received = new AtomicInteger();
+
+    @Override
+    protected void setUp() {
+        group = new NioEventLoopGroup(1);
+    }
+
+    @Override
+    protected void tearDown() {
+        for (Channel c : servers) {
+            c.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private int bind(ChannelInitializer<SocketChannel> init) throws InterruptedException {
+        Channel ch = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(init)
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        servers.add(ch);
+        return ((InetSocketAddress) ch.localAddress()).getPort();
+    }
+
+    private int backend(Function<FullHttpRequest, FullHttpResponse> responder) throws InterruptedException {
+        return bind(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024 * 1024),
+                        new SimpleChannelInboundHandler<FullHttpRequest>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) {
+                                received.incrementAndGet();
+                                ctx.writeAndFlush(responder.apply(req));
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * 每个请求都回 503（触发重试）
+     */
+    private int unavailableBackend() throws InterruptedException {
+        return backend(req -> {
+            FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.SERVICE_UNAVAILABLE);
+            HttpUtil.setContentLength(resp, 0);
+            return resp;
+        });
+    }
+
+    private static GatewayConfig route(String id, RetryConfig retry, int... ports) {
+        List<UpstreamInstance> upstreams = new ArrayList<>();
+        for (int port : ports) {
+            upstreams.add(new UpstreamInstance("http://127.0.0.1:" + port, 1));
+        }
+        GatewayConfig cfg = new GatewayConfig();
+        cfg.setRoutes(new ArrayList<>(List.of(GatewayRoute.builder()
+                .id(id)
+                .path("/" + id)
+                .retry(retry)
+                .upstreams(upstreams)
+                .build())));
+        return cfg;
+    }
+
+    private int gateway() throws Exception {
+        ServerConfig server = new ServerConfig();
+        server.setHttp2(false);
+        GatewayChannelInitializer gateway = new GatewayChannelInitializer(server, 1024 * 1024);
+        return bind(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(gateway);
+            }
+        });
+    }
+
+    private Channel connect(int port, ChannelHandler... handlers) throws InterruptedException {
+        return new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpClientCodec());
+                        ch.pipeline().addLast(handlers);
+                    }
+                })
+                .connect("127.0.0.1", port).sync().channel();
+    }
+
+    private static boolean waitFor(AtomicInteger counter, int expected, long ms) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+        while (counter.get() < expected) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public void testClientGoneDuringRetryBackoffIsNotDispatched() throws Exception {
+        int a = unavailableBackend();
+        int b = unavailableBackend();
+
+        RetryConfig retry = new RetryConfig();
+        retry.setMaxRetries(1);
+        retry.setBackoffMs(BACKOFF_MS);
+        RouteRuntime runtime = RouteManager.getInstance().refresh(route("handler-disconnect", retry, a, b)).getRuntimes().get(0);
+
+        Channel client = connect(gateway(), new ChannelInboundHandlerAdapter());
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/handler-disconnect");
+        req.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+        client.writeAndFlush(req).sync();
+
+        // 第一次尝试拿到 503，网关选好下一个实例进入退避；这时客户端断开
+        assertTrue(waitFor(received, 1, 5000));
+        Thread.sleep(BACKOFF_MS / 4);
+        client.close().sync();
+
+        Thread.sleep(BACKOFF_MS * 2);
+        assertEquals("retry was dispatched after the client left", 1, received.get());
+        for (RouteUpstream u : runtime.getUpstreams()) {
+            assertEquals(u.getUrl(), 0, u.getLoad().inflight());
+        }
+    }
+
+    /**
+     * 发一个请求，等聚合后的响应（调用方负责 release）
+     */
+    private FullHttpResponse exchange(Channel client, BlockingQueue<FullHttpResponse> responses, HttpMethod method, String uri)
+            throws InterruptedException {
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+        req.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+        client.writeAndFlush(req).sync();
+        FullHttpResponse resp = responses.poll(5, TimeUnit.SECONDS);
+        assertNotNull("no response for " + method + " " + uri, resp);
+        return resp;
+    }
+
+    public void testBodilessResponsesKeepUpstreamContentLength() throws Exception {
+        int port = backend(req -> {
+            boolean notModified = req.uri().endsWith("/304");
+            FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    notModified ? HttpResponseStatus.NOT_MODIFIED : HttpResponseStatus.OK);
+            // 对应 GET / 200 响应的长度，本身不带 body
+            HttpUtil.setContentLength(resp, 1234);
+            return resp;
+        });
+        RouteManager.getInstance().refresh(route("handler-bodiless", new RetryConfig(), port));
+
+        BlockingQueue<FullHttpResponse> responses = new LinkedBlockingQueue<>();
+        Channel client = connect(gateway(), new HttpObjectAggregator(1024 * 1024), new SimpleChannelInboundHandler<FullHttpResponse>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse resp) {
+                responses.add(resp.retainedDuplicate());
+            }
+        });
+        try {
+            FullHttpResponse head = exchange(client, responses, HttpMethod.HEAD, "/handler-bodiless/file");
+            assertEquals(200, head.status().code());
+            assertEquals("1234", head.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+            assertFalse(head.headers().contains(HttpHeaderNames.TRANSFER_ENCODING));
+            head.release();
+
+            FullHttpResponse notModified = exchange(client, responses, HttpMethod.GET, "/handler-bodiless/304");
+            assertEquals(304, notModified.status().code());
+            assertEquals("1234", notModified.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+            assertEquals(0, notModified.content().readableBytes());
+            notModified.release();
+        } finally {
+            client.close().sync();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.my.gateway.netty.upstream;
+
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.CharsetUtil;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录一次 upstream 交换的结果，测试线程 await 等结束
+ */
+final class RecordingListener implements UpstreamResponseListener {
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final StringBuilder body = new StringBuilder();
+    volatile int status;
+    volatile Throwable error;
+    volatile int callbacksAfterEnd;
+    private volatile boolean ended;
+
+    @Override
+    public void onResponseHead(UpstreamExchange exchange, HttpResponse head) {
+        status = head.status().code();
+    }
+
+    @Override
+    public void onResponseContent(UpstreamExchange exchange, HttpContent content) {
+        body.append(content.content().toString(CharsetUtil.UTF_8));
+        content.release();
+    }
+
+    @Override
+    public void onResponseEnd(UpstreamExchange exchange) {
+        end();
+    }
+
+    @Override
+    public void onError(UpstreamExchange exchange, Throwable cause) {
+        error = cause;
+        end();
+    }
+
+    private void end() {
+        if (ended) {
+            callbacksAfterEnd++;
+        }
+        ended = true;
+        finished.countDown();
+    }
+
+    /**
+     * 等交换结束（响应完成或出错），超时返回 false
+     */
+    boolean await(long ms) throws InterruptedException {
+        return finished.await(ms, TimeUnit.MILLISECONDS);
+    }
+
+    String body() {
+        return body.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.my.gateway.netty.upstream;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.CharsetUtil;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用 upstream：聚合完整请求后回 200，body 为 "received {请求体字节数}"
+ *
+ * 默认 HTTP/1.1 keep-alive；h2c 模式只接受 prior-knowledge 的 HTTP/2 连接，每个 stream 一个请求。
+ *
+ * - /stall：不回响应
+ * - /close：直接关闭连接（h2c 下是重置这个 stream）
+ * - /close-once：第一次同 /close，之后正常响应
+ * - 其他路径带 ?delayMs=N 时延迟 N 毫秒再回
+ */
+final class TestBackend implements AutoCloseable {
+
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final Channel server;
+    // 累计建立的连接数（验证 keep-alive 复用）
+    final AtomicInteger connections = new AtomicInteger();
+    private final AtomicBoolean closedOnce = new AtomicBoolean();
+
+    TestBackend() throws InterruptedException {
+        this(false);
+    }
+
+    TestBackend(boolean h2c) throws InterruptedException {
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        connections.incrementAndGet();
+                        if (h2c) {
+                            ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().build());
+                            ch.pipeline().addLast(new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+                                @Override
+                                protected void initChannel(Http2StreamChannel stream) {
+                                    stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                                    stream.pipeline().addLast(new HttpObjectAggregator(16 * 1024 * 1024));
+                                    stream.pipeline().addLast(new Handler(closedOnce));
+                                }
+                            }));
+                            return;
+                        }
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(16 * 1024 * 1024));
+                        ch.pipeline().addLast(new Handler(closedOnce));
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    }
+
+    int port() {
+        return ((InetSocketAddress) server.localAddress()).getPort();
+    }
+
+    UpstreamAddress address() {
+        return address("http");
+    }
+
+    UpstreamAddress address(String scheme) {
+        return UpstreamAddress.of(scheme + "://127.0.0.1:" + port());
+    }
+
+    @Override
+    public void close() {
+        server.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private static final class Handler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        private final AtomicBoolean closedOnce;
+
+        Handler(AtomicBoolean closedOnce) {
+            this.closedOnce = closedOnce;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) {
+            QueryStringDecoder q = new QueryStringDecoder(req.uri());
+            if (q.path().equals("/stall")) {
+                return;
+            }
+            if (q.path().equals("/close") || (q.path().equals("/close-once") && closedOnce.compareAndSet(false, true))) {
+                ctx.close();
+                return;
+            }
+            FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer("received " + req.content().readableBytes(), CharsetUtil.UTF_8));
+            HttpUtil.setContentLength(resp, resp.content().readableBytes());
+            long delay = q.parameters().containsKey("delayMs") ? Long.parseLong(q.parameters().get("delayMs").get(0)) : 0;
+            if (delay > 0) {
+                ctx.executor().schedule(() -> ctx.writeAndFlush(resp), delay, TimeUnit.MILLISECONDS);
+            } else {
+                ctx.writeAndFlush(resp);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.my.gateway.netty.upstream;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.http.*;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池：keep-alive 复用、h2c 多路复用 / 退回 HTTP/1.1 / 复用的 stream 失效后在原连接上重发、建连失败和连接中途断开、热更新删除 upstream 后的清理
+ */
+public class UpstreamConnectionPoolTest extends TestCase {
+
+    private EventLoopGroup group;
+    private EventLoop loop;
+
+    @Override
+    protected void setUp() {
+        group = new NioEventLoopGroup(1);
+        loop = group.next();
+    }
+
+    @Override
+    protected void tearDown() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private RecordingListener send(UpstreamAddress address, String uri) {
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        head.headers().set(HttpHeaderNames.HOST, address.getHostHeader());
+        RecordingListener listener = new RecordingListener();
+        loop.execute(() -> UpstreamHttpClient.getInstance().execute(loop, address, head, null, null, listener, 2000));
+        return listener;
+    }
+
+    private static void assertOk(RecordingListener l) throws InterruptedException {
+        assertTrue("exchange did not finish", l.await(5000));
+        assertNull(String.valueOf(l.error), l.error);
+        assertEquals(200, l.status);
+        assertEquals("received 0", l.body());
+        assertEquals(0, l.callbacksAfterEnd);
+    }
+
+    public void testKeepAliveReusesConnection() throws Exception {
+        try (TestBackend backend = new TestBackend()) {
+            UpstreamAddress address = backend.address();
+            for (int i = 0; i < 5; i++) {
+                assertOk(send(address, "/ping"));
+            }
+            UpstreamPoolStats stats = UpstreamHttpClient.getInstance().statsView().get(address.getKey());
+            assertEquals(1, backend.connections.get());
+            assertEquals(1, stats.created.sum());
+            assertEquals(4, stats.reused.sum());
+            assertEquals(1, stats.idle.get());
+        }
+    }
+
+    public void testH2cMultiplexesConcurrentRequestsOnOneConnection() throws Exception {
+        try (TestBackend backend = new TestBackend(true)) {
+            UpstreamAddress address = backend.address("h2c");
+            List<RecordingListener> calls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                calls.add(send(address, "/slow?delayMs=100"));
+            }
+            for (RecordingListener l : calls) {
+                assertOk(l);
+            }
+            assertEquals(1, backend.connections.get());
+            assertEquals(0, UpstreamHttpClient.getInstance().statsView().get(address.getKey()).streams.get());
+        }
+    }
+
+    public void testH2cResetStreamOnReusedConnectionRetriesOnSameConnection() throws Exception {
+        try (TestBackend backend = new TestBackend(true)) {
+            UpstreamAddress address = backend.address("h2c");
+            assertOk(send(address, "/ping"));
+            // 复用连接上的 stream 被重置：在同一条连接上开新 stream 重发，不为这一个请求新建 TCP 连接
+            assertOk(send(address, "/close-once"));
+            assertEquals(1, backend.connections.get());
+            assertEquals(1, UpstreamHttpClient.getInstance().statsView().get(address.getKey()).created.sum());
+            // 每个请求只换一次：一直被重置的 stream 最终失败，不会循环
+            RecordingListener l = send(address, "/close");
+            assertTrue(l.await(5000));
+            assertNotNull(l.error);
+            assertEquals(1, backend.connections.get());
+        }
+    }
+
+    public void testH2cFallsBackToHttp1WhenUpstreamDoesNotSpeakHttp2() throws Exception {
+        try (TestBackend backend = new TestBackend()) {
+            UpstreamAddress address = backend.address("h2c");
+            assertOk(send(address, "/ping"));
+            assertOk(send(address, "/ping"));
+        }
+    }
+
+    public void testConnectFailureIsReported() throws Exception {
+        int port;
+        try (ServerSocket s = new ServerSocket()) {
+            s.bind(new InetSocketAddress("127.0.0.1", 0));
+            port = s.getLocalPort();
+        }
+        UpstreamAddress address = UpstreamAddress.of("http://127.0.0.1:" + port);
+        RecordingListener l = send(address, "/ping");
+        assertTrue(l.await(5000));
+        assertNotNull(l.error);
+        assertEquals(0, l.status);
+        assertEquals(1, UpstreamHttpClient.getInstance().statsView().get(address.getKey()).connectFailed.sum());
+    }
+
+    public void testConnectionClosedBeforeResponseFails() throws Exception {
+        try (TestBackend backend = new TestBackend()) {
+            UpstreamAddress address = backend.address();
+            RecordingListener l = send(address, "/close");
+            assertTrue(l.await(5000));
+            assertTrue(String.valueOf(l.error), l.error instanceof IOException);
+            assertEquals(0, l.callbacksAfterEnd);
+            // 断开的连接不会回到池子里，下一个请求新建连接
+            assertOk(send(address, "/ping"));
+            assertEquals(2, backend.connections.get());
+        }
+    }
+
+    private static boolean awaitStatsGone(UpstreamAddress address) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (!UpstreamHttpClient.getInstance().statsView().containsKey(address.getKey())) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    public void testRetainClosesIdleConnectionsOfRemovedUpstream() throws Exception {
+        try (TestBackend backend = new TestBackend()) {
+            UpstreamAddress address = backend.address();
+            assertOk(send(address, "/ping"));
+            assertEquals(1, UpstreamHttpClient.getInstance().statsView().get(address.getKey()).idle.get());
+
+            UpstreamHttpClient.getInstance().retain(Set.of("http://127.0.0.1:1"));
+            assertTrue(awaitStatsGone(address));
+
+            // 又加回来时重新建池
+            assertOk(send(address, "/ping"));
+            assertEquals(2, backend.connections.get());
+            assertEquals(1, UpstreamHttpClient.getInstance().statsView().get(address.getKey()).open.get());
+        }
+    }
+
+    public void testRetainLetsInFlightRequestFinishThenCloses() throws Exception {
+        try (TestBackend backend = new TestBackend()) {
+            UpstreamAddress address = backend.address();
+            RecordingListener slow = send(address, "/slow?delayMs=300");
+            Thread.sleep(100);
+            UpstreamHttpClient.getInstance().retain(Set.of());
+            Thread.sleep(50);
+            // 使用中的连接不受影响
+            assertTrue(UpstreamHttpClient.getInstance().statsView().containsKey(address.getKey()));
+            assertOk(slow);
+            // 用完不再放回池子，关闭后统计注销
+            assertTrue(awaitStatsGone(address));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.my.gateway.netty.upstream;
+
+import com.my.gateway.context.RequestBodyStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.http.*;
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UpstreamExchange 的超时语义：请求写出过程中按写入进度计时，写完后才是首字节超时
+ */
+public class UpstreamExchangeTest extends TestCase {
+
+    private EventLoopGroup group;
+    private EventLoop loop;
+    private TestBackend backend;
+
+    @Override
+    protected void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        loop = group.next();
+        backend = new TestBackend();
+    }
+
+    @Override
+    protected void tearDown() {
+        backend.close();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    public void testSlowStreamingUploadLongerThanTimeoutSucceeds() throws Exception {
+        long timeoutMs = 300;
+        int chunks = 6;
+        long gapMs = 150;
+        byte[] chunk = new byte[1024];
+
+        RequestBodyStream body = new RequestBodyStream(new EmbeddedChannel());
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        head.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+        HttpUtil.setTransferEncodingChunked(head, true);
+
+        RecordingListener listener = new RecordingListener();
+        loop.execute(() -> UpstreamHttpClient.getInstance()
+                .execute(loop, backend.address(), head, null, body, listener, timeoutMs));
+        // 上传总时长约 1s，远超超时时间，但每段之间都不到超时
+        for (int i = 1; i <= chunks; i++) {
+            loop.schedule(() -> body.onContent(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk))),
+                    gapMs * i, TimeUnit.MILLISECONDS);
+        }
+        loop.schedule(() -> body.onContent(LastHttpContent.EMPTY_LAST_CONTENT),
+                gapMs * (chunks + 1), TimeUnit.MILLISECONDS);
+
+        assertTrue(listener.await(5000));
+        assertNull(String.valueOf(listener.error), listener.error);
+        assertEquals(200, listener.status);
+        assertEquals("received " + chunks * chunk.length, listener.body());
+    }
+
+    public void testFirstByteTimeoutStartsAfterRequestIsWritten() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/stall");
+        head.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+        long start = System.nanoTime();
+        loop.execute(() -> UpstreamHttpClient.getInstance()
+                .execute(loop, backend.address(), head, null, null, listener, 200));
+
+        assertTrue(listener.await(5000));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(String.valueOf(listener.error), listener.error instanceof java.util.concurrent.TimeoutException);
+        assertTrue("timed out after " + elapsedMs + "ms", elapsedMs >= 200);
+    }
+}
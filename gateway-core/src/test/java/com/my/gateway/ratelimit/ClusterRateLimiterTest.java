@@ -0,0 +1,94 @@
+package com.my.gateway.ratelimit;
+
+import com.my.gateway.config.RateLimitConfig;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群限流精度：多个实例共享一个 memory 存储，全局放行数不超过 rate × t + burst + N（每个实例最多赊 1 个）
+ */
+public class ClusterRateLimiterTest extends TestCase {
+
+    private static RateLimitConfig config(double rate, long burst) {
+        RateLimitConfig c = new RateLimitConfig();
+        c.setRate(rate);
+        c.setBurst(burst);
+        c.setKey("route");
+        c.setMode("cluster");
+        c.setSyncIntervalMs(50);
+        return c;
+    }
+
+    /**
+     * 每个实例一个线程不停地取令牌，跑 durationMs，返回全局放行数和实际耗时（秒）
+     */
+    private static double[] hammer(ClusterRateLimiter[] nodes, String key, long durationMs) throws InterruptedException {
+        LongAdder admitted = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(nodes.length);
+        long start = System.nanoTime();
+        for (ClusterRateLimiter node : nodes) {
+            Thread t = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        if (node.tryAcquire(key)) {
+                            admitted.increment();
+                        }
+                        Thread.yield();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+        Thread.sleep(durationMs);
+        stop.set(true);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new double[]{admitted.sum(), seconds};
+    }
+
+    public void testSharedStoreBoundsGlobalAdmits() throws Exception {
+        double rate = 400;
+        long burst = 40;
+        int n = 4;
+        CounterStore store = CounterStores.open("memory:cluster-accuracy-" + System.nanoTime());
+        ClusterRateLimiter[] nodes = new ClusterRateLimiter[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = new ClusterRateLimiter("r", config(rate, burst), store);
+        }
+
+        double[] r = hammer(nodes, "k", 1500);
+        double admitted = r[0];
+        double bound = rate * r[1] + burst + n;
+        assertTrue("admitted " + admitted + " > bound " + bound, admitted <= bound);
+        // 也不会因为实例之间抢令牌而明显少放
+        assertTrue("admitted only " + admitted + " of " + rate * r[1], admitted >= rate * r[1] * 0.5);
+
+        long syncs = 0;
+        for (ClusterRateLimiter node : nodes) {
+            assertEquals(0, node.storeErrors());
+            syncs += node.syncs();
+        }
+        // 按批领取：访问存储的次数远小于放行数
+        assertTrue("syncs " + syncs, syncs > 0 && syncs < admitted);
+    }
+
+    public void testNodesWithSeparateStoresEachGetFullRate() throws Exception {
+        double rate = 200;
+        long burst = 20;
+        ClusterRateLimiter[] nodes = {
+                new ClusterRateLimiter("r", config(rate, burst), CounterStores.open("memory:cluster-a-" + System.nanoTime())),
+                new ClusterRateLimiter("r", config(rate, burst), CounterStores.open("memory:cluster-b-" + System.nanoTime())),
+        };
+        double[] r = hammer(nodes, "k", 1000);
+        // 两个独立的全局桶：合计明显超过单个桶的额度，说明上面的上界来自共享存储
+        assertTrue("admitted " + r[0], r[0] > rate * r[1] + burst + 2);
+    }
+}
@@ -0,0 +1,53 @@
+package com.my.gateway.ratelimit;
+
+import com.my.gateway.config.RateLimitConfig;
+import junit.framework.TestCase;
+
+/**
+ * 单机令牌桶：突发容量、按 key 独立计数，key: route 时只有一个桶、不建表
+ */
+public class LocalRateLimiterTest extends TestCase {
+
+    private static RateLimitConfig config(String key, double rate, long burst) {
+        RateLimitConfig c = new RateLimitConfig();
+        c.setKey(key);
+        c.setRate(rate);
+        c.setBurst(burst);
+        c.setMaxKeys(1000);
+        return c;
+    }
+
+    public void testPerRouteUsesSingleBucketWithoutTable() {
+        // rate 很低，测试期间不会回填
+        LocalRateLimiter l = new LocalRateLimiter(config("route", 0.01, 3));
+        assertEquals(1, l.capacity());
+        assertTrue(l.tryAcquire("a"));
+        assertTrue(l.tryAcquire("b"));
+        assertTrue(l.tryAcquire(null));
+        // 不同 key 共用一个桶
+        assertFalse(l.tryAcquire("c"));
+        assertEquals(1, l.rejected());
+        assertEquals(0, l.evictions());
+    }
+
+    public void testPerKeyBucketsAreIndependent() {
+        LocalRateLimiter l = new LocalRateLimiter(config("ip", 0.01, 2));
+        assertEquals(2048, l.capacity());
+        assertTrue(l.tryAcquire("10.0.0.1"));
+        assertTrue(l.tryAcquire("10.0.0.1"));
+        assertFalse(l.tryAcquire("10.0.0.1"));
+        assertTrue(l.tryAcquire("10.0.0.2"));
+        assertTrue(l.tryAcquire("10.0.0.2"));
+        assertFalse(l.tryAcquire("10.0.0.2"));
+        assertEquals(2, l.rejected());
+    }
+
+    public void testTokensRefillOverTime() throws InterruptedException {
+        LocalRateLimiter l = new LocalRateLimiter(config("route", 50, 1));
+        assertTrue(l.tryAcquire(null));
+        assertFalse(l.tryAcquire(null));
+        // 20ms 一个令牌
+        Thread.sleep(60);
+        assertTrue(l.tryAcquire(null));
+    }
+}
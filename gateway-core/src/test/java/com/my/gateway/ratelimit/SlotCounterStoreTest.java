@@ -0,0 +1,103 @@
+package com.my.gateway.ratelimit;
+
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 计数存储的按批领取：桶容量封顶、按时间回填、key 互相独立、组满时挤掉最闲的桶，mmap 文件跨实例共享
+ */
+public class SlotCounterStoreTest extends TestCase {
+
+    // 1 秒一个令牌，测试期间不会回填
+    private static final long SLOW = 1_000_000;
+
+    public void testAcquireIsCappedByBurst() {
+        MemoryCounterStore s = new MemoryCounterStore("t", 64);
+        assertEquals(0, s.acquire("k", 0, SLOW, 5 * SLOW));
+        // 新 key 从满桶开始
+        assertEquals(3, s.acquire("k", 3, SLOW, 5 * SLOW));
+        assertEquals(2, s.acquire("k", 10, SLOW, 5 * SLOW));
+        assertEquals(0, s.acquire("k", 1, SLOW, 5 * SLOW));
+        // 别的 key 不受影响
+        assertEquals(5, s.acquire("other", 10, SLOW, 5 * SLOW));
+    }
+
+    public void testTokensRefillOverTime() throws InterruptedException {
+        MemoryCounterStore s = new MemoryCounterStore("t", 64);
+        long interval = 10_000;
+        assertEquals(10, s.acquire("k", 100, interval, 10 * interval));
+        assertEquals(0, s.acquire("k", 100, interval, 10 * interval));
+        Thread.sleep(55);
+        long got = s.acquire("k", 100, interval, 10 * interval);
+        assertTrue("refilled " + got, got >= 4 && got <= 10);
+    }
+
+    public void testFullSetEvictsTheIdlestBucket() {
+        // 8 个槽位：只有一组
+        MemoryCounterStore s = new MemoryCounterStore("t", 8);
+        // k0 只用了一个令牌，桶最满（tat 最早）
+        assertEquals(1, s.acquire("k0", 1, SLOW, 5 * SLOW));
+        for (int i = 1; i < 8; i++) {
+            assertEquals(5, s.acquire("k" + i, 5, SLOW, 5 * SLOW));
+        }
+        // 第 9 个 key 挤掉 k0，领空了的桶都还在
+        assertEquals(1, s.acquire("k8", 1, SLOW, 5 * SLOW));
+        for (int i = 1; i < 8; i++) {
+            assertEquals("k" + i, 0, s.acquire("k" + i, 1, SLOW, 5 * SLOW));
+        }
+        // k0 回来时重新从满桶开始（被挤掉前它还剩 4 个令牌，这里领到 5 个）
+        assertEquals(5, s.acquire("k0", 5, SLOW, 5 * SLOW));
+        // 它挤掉的是 k8（同样只用了一个令牌），k1..k7 仍然是空的
+        for (int i = 1; i < 8; i++) {
+            assertEquals("k" + i, 0, s.acquire("k" + i, 1, SLOW, 5 * SLOW));
+        }
+    }
+
+    public void testConcurrentAcquireNeverExceedsBucket() throws InterruptedException {
+        MemoryCounterStore s = new MemoryCounterStore("t", 64);
+        long[] got = new long[4];
+        Thread[] threads = new Thread[got.length];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    got[id] += s.acquire("k", 3, SLOW, 100 * SLOW);
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long sum = 0;
+        for (long g : got) {
+            sum += g;
+        }
+        assertEquals(100, sum);
+    }
+
+    public void testMappedStoreIsSharedThroughTheFile() throws Exception {
+        Path file = Files.createTempFile("ratelimit", ".store");
+        try {
+            MappedCounterStore a = MappedCounterStore.open(file, 64);
+            MappedCounterStore b = MappedCounterStore.open(file, 64);
+            assertEquals(3, a.acquire("k", 3, SLOW, 5 * SLOW));
+            // 另一个实例（同机的另一个进程）看到的是同一个桶
+            assertEquals(2, b.acquire("k", 5, SLOW, 5 * SLOW));
+            assertEquals(0, a.acquire("k", 1, SLOW, 5 * SLOW));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testStoresAreOpenedOncePerSpec() {
+        CounterStore a = CounterStores.open("memory:slot-store-test");
+        assertSame(a, CounterStores.open("memory:slot-store-test"));
+        assertNotSame(a, CounterStores.open("memory:slot-store-test-2"));
+        assertEquals("memory:slot-store-test", a.describe());
+    }
+}